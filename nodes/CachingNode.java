@@ -0,0 +1,223 @@
+package nodes;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link CachingNode} wraps a pure {@link Node}, a {@link Node} whose
+ * outputs and {@link ReturnCode} only depend on the values of its inputs (like
+ * a {@link Node} that adds two numbers).
+ *
+ * The {@link CachingNode} takes over all inputs and outputs of the wrapped
+ * {@link Node} under the same names, so it is added to a graph instead of the
+ * wrapped {@link Node}. Before each run the values of all inputs are compared
+ * with the ones of earlier runs. If they were seen before, the remembered
+ * output values are written and the remembered {@link ReturnCode} is returned
+ * without running the wrapped {@link Node}. Only the outputs the wrapped
+ * {@link Node} wrote in the remembered run are written again, the others keep
+ * their values like they would if the {@link Node} ran.
+ *
+ * The input values are compared with equals(), so they must not be changed
+ * after they were written. The cache keeps the most recently used entries up
+ * to a fixed capacity.
+ */
+public class CachingNode extends Node {
+
+	private final Node node;
+
+	private final NodeInputInterface[] inputs;
+	private final NodeOutputInterface[] outputs;
+
+	private final LinkedHashMap<Key, Entry> cache;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param node
+	 *            the pure {@link Node}, its interfaces must be registered
+	 *            already
+	 * @param capacity
+	 *            the maximum number of cached results (>= 1)
+	 * @throws IllegalArgumentException
+	 *             if capacity is less than 1
+	 */
+	public CachingNode(Node node, final int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("The capacity must be at least 1.");
+
+		this.node = node;
+		this.inputs = new NodeInputInterface[node.getInputs().size()];
+		this.outputs = new NodeOutputInterface[node.getOutputs().size()];
+
+		int i = 0;
+		for (Map.Entry<String, NodeInputInterface> e : node.getInputs().entrySet()) {
+			this.registerInput(e.getKey(), e.getValue());
+			this.inputs[i++] = e.getValue();
+		}
+		i = 0;
+		for (Map.Entry<String, NodeOutputInterface> e : node.getOutputs().entrySet()) {
+			this.registerOutput(e.getKey(), e.getValue());
+			this.outputs[i++] = e.getValue();
+		}
+
+		this.cache = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				if (this.size() > capacity) {
+					evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Marks an output that was not written in the remembered run.
+	 */
+	private static final Object UNWRITTEN = new Object();
+
+	@Override
+	public ReturnCode run() {
+		Object[] values = new Object[this.inputs.length];
+		for (int i = 0; i < values.length; ++i) {
+			values[i] = this.inputs[i].getValue();
+		}
+		Key key = new Key(values);
+
+		Entry e;
+		synchronized (this.cache) {
+			e = this.cache.get(key);
+		}
+
+		if (e != null) {
+			this.hits.increment();
+			for (int i = 0; i < this.outputs.length; ++i) {
+				if (e.outputs[i] != UNWRITTEN)
+					this.outputs[i].setValue(e.outputs[i]);
+			}
+			return e.ret;
+		}
+
+		this.misses.increment();
+		long[] writes = new long[this.outputs.length];
+		for (int i = 0; i < writes.length; ++i) {
+			writes[i] = this.outputs[i].writes;
+		}
+		ReturnCode ret = this.node.run();
+
+		Object[] results = new Object[this.outputs.length];
+		for (int i = 0; i < results.length; ++i) {
+			results[i] = this.outputs[i].writes != writes[i] ? this.outputs[i].getValue() : UNWRITTEN;
+		}
+		synchronized (this.cache) {
+			this.cache.put(key, new Entry(ret, results));
+		}
+		return ret;
+	}
+
+	/**
+	 * The wrapped {@link Node} must be pure, so this one is too.
+	 */
+	@Override
+	public boolean isPure() {
+		return true;
+	}
+
+	/**
+	 * Returns the wrapped {@link Node}.
+	 */
+	public Node getNode() {
+		return this.node;
+	}
+
+	/**
+	 * Destroys the wrapped {@link Node} too and removes all cached results.
+	 */
+	@Override
+	public void destroy() {
+		super.destroy();
+		this.node.destroy();
+		this.clear();
+	}
+
+	/**
+	 * Removes all cached results.
+	 */
+	public void clear() {
+		synchronized (this.cache) {
+			this.cache.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (this.cache) {
+			return this.cache.size();
+		}
+	}
+
+	/**
+	 * Returns the number of runs that were answered from the cache.
+	 */
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	/**
+	 * Returns the number of runs of the wrapped {@link Node}.
+	 */
+	public long getMisses() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * Returns the number of results that were removed to make room for new
+	 * ones.
+	 */
+	public long getEvictions() {
+		return this.evictions.sum();
+	}
+
+	/**
+	 * The input values of one run.
+	 */
+	private static final class Key {
+		private final Object[] values;
+		private final int hash;
+
+		Key(Object[] values) {
+			this.values = values;
+			this.hash = Arrays.hashCode(values);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && Arrays.equals(this.values, ((Key) o).values);
+		}
+	}
+
+	/**
+	 * The result of one run.
+	 */
+	private static final class Entry {
+		private final ReturnCode ret;
+		private final Object[] outputs;
+
+		Entry(ReturnCode ret, Object[] outputs) {
+			this.ret = ret;
+			this.outputs = outputs;
+		}
+	}
+
+}
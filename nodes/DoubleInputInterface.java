@@ -0,0 +1,31 @@
+package nodes;
+
+/**
+ * A {@link NodeInputInterface} for <code>double</code> values. It reads a
+ * {@link DoubleOutputInterface} without boxing and unboxes any other source of
+ * type {@link Double}.
+ */
+public class DoubleInputInterface extends PrimitiveInputInterface {
+
+	/**
+	 * @param defaultValue
+	 *            the value that is returned as long as no connection is
+	 *            established
+	 */
+	public DoubleInputInterface(double defaultValue) {
+		super(Double.class, defaultValue, Double.doubleToRawLongBits(defaultValue));
+	}
+
+	/**
+	 * Returns the current value of this interface.
+	 */
+	public double getDouble() {
+		return Double.longBitsToDouble(this.getBits());
+	}
+
+	@Override
+	protected long unbox(Object value) {
+		return Double.doubleToRawLongBits(((Number) value).doubleValue());
+	}
+
+}
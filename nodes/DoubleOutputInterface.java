@@ -0,0 +1,37 @@
+package nodes;
+
+/**
+ * A {@link NodeOutputInterface} for <code>double</code> values that does not box
+ * them. Its type is {@link Double}.
+ */
+public class DoubleOutputInterface extends PrimitiveOutputInterface {
+
+	public DoubleOutputInterface(double value) {
+		super(Double.class, value, Double.doubleToRawLongBits(value));
+	}
+
+	/**
+	 * Returns the value in the current {@link ExecutionContext}.
+	 */
+	public double getDouble() {
+		return Double.longBitsToDouble(this.getBits());
+	}
+
+	/**
+	 * Sets the value in the current {@link ExecutionContext}.
+	 */
+	public void setDouble(double value) {
+		this.setBits(Double.doubleToRawLongBits(value));
+	}
+
+	@Override
+	protected Object box(long bits) {
+		return Double.valueOf(Double.longBitsToDouble(bits));
+	}
+
+	@Override
+	protected long unbox(Object value) {
+		return Double.doubleToRawLongBits(((Number) value).doubleValue());
+	}
+
+}
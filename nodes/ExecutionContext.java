@@ -0,0 +1,276 @@
+package nodes;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import nodes.compositor.Compositor;
+import nodes.signals.Signal;
+
+/**
+ * An {@link ExecutionContext} represents one run through a graph of
+ * {@link Node}s. Every {@link Signal} of the run carries it.
+ * 
+ * While a {@link Node} handles a {@link Signal} the context of the
+ * {@link Signal} is the current context of the thread. All values written to
+ * a {@link NodeOutputInterface} are then stored in the value frame of the
+ * context instead of the interface itself, and all reads look into the frame
+ * first. So one {@link Compositor} can process many runs concurrently without
+ * them overwriting each other's values.
+ * 
+ * The frame only holds the values written during the run and is freed
+ * together with the context. Reads of values that were not written during the
+ * run fall back to the value stored in the interface.
+ * 
+ * A context that is created for a compiled plan stores the values of all
+ * interfaces that are bound to the plan in a flat array instead. Values of
+ * {@link PrimitiveOutputInterface}s are kept in a second array without
+ * boxing, other contexts keep them in a holder per interface that is reused
+ * by every write.
+ * 
+ * A {@link Signal} without a context uses the values stored in the interfaces
+ * directly.
+ * 
+ * The slots are written with release and read with acquire semantics, like
+ * the values stored in the interfaces (see {@link NodeOutputInterface}).
+ */
+public class ExecutionContext {
+
+	private static final AtomicLong nextId = new AtomicLong();
+
+	private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Object[].class);
+
+	private static final VarHandle PRIMITIVES = MethodHandles.arrayElementVarHandle(long[].class);
+
+	private static final ThreadLocal<ExecutionContext> current = new ThreadLocal<>();
+
+	/**
+	 * Placeholder for <code>null</code>, which cannot be stored in the frame.
+	 */
+	private static final Object NULL = new Object();
+
+	/**
+	 * The bits of a {@link PrimitiveOutputInterface} in the map of the frame.
+	 * Only the {@link Node} of the interface writes it, one run at a time.
+	 */
+	private static final class Bits {
+		volatile long value;
+
+		Bits(long value) {
+			this.value = value;
+		}
+	}
+
+	private final long id;
+
+	private final ConcurrentHashMap<NodeOutputInterface, Object> values;
+
+	private final ConcurrentHashMap<Object, Object> attachments;
+
+	/**
+	 * The layout of the slots or <code>null</code>.
+	 */
+	final SlotLayout layout;
+
+	/**
+	 * The values of all interfaces that are bound to the layout.
+	 */
+	final Object[] slots;
+
+	/**
+	 * The bits of the values of all {@link PrimitiveOutputInterface}s that are
+	 * bound to the layout.
+	 */
+	final long[] primitives;
+
+	public ExecutionContext() {
+		this(null, null);
+	}
+
+	/**
+	 * Creates a context with a flat value frame for a compiled plan (see
+	 * {@link SlotLayout#newContext()}).
+	 * 
+	 * @param layout
+	 *            the layout the interfaces are bound to
+	 * @param slotPorts
+	 *            the interface of each slot, their current values are the
+	 *            initial values of the frame
+	 */
+	ExecutionContext(SlotLayout layout, NodeOutputInterface[] slotPorts) {
+		this.id = nextId.incrementAndGet();
+		this.values = new ConcurrentHashMap<>();
+		this.attachments = new ConcurrentHashMap<>(4);
+
+		this.layout = layout;
+		if (slotPorts == null) {
+			this.slots = null;
+			this.primitives = null;
+		} else {
+			this.slots = new Object[slotPorts.length];
+			this.primitives = new long[slotPorts.length];
+			for (int i = 0; i < slotPorts.length; ++i) {
+				if (slotPorts[i] instanceof PrimitiveOutputInterface) {
+					this.primitives[i] = ((PrimitiveOutputInterface) slotPorts[i]).getSharedBits();
+				} else {
+					this.slots[i] = slotPorts[i].getSharedValue();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the slot of the interface if its value is stored in the flat
+	 * frame of this context, -1 otherwise.
+	 */
+	private int slotOf(NodeInterface i) {
+		SlotLayout.Binding b = i.binding;
+		return b != null && b.layout == this.layout ? b.index : -1;
+	}
+
+	/**
+	 * Returns an id that is unique for every context of this JVM.
+	 */
+	public long getId() {
+		return this.id;
+	}
+
+	/**
+	 * Returns the value of the given {@link NodeOutputInterface} in this
+	 * context.
+	 * 
+	 * @param o
+	 *            the interface
+	 * @return the value written during this run or the value stored in the
+	 *         interface if no value was written
+	 */
+	public Object getValue(NodeOutputInterface o) {
+		if (o instanceof PrimitiveOutputInterface) {
+			PrimitiveOutputInterface p = (PrimitiveOutputInterface) o;
+			return p.box(this.getBits(p));
+		}
+		int slot = this.slotOf(o);
+		if (slot >= 0) {
+			return this.getSlot(slot);
+		}
+
+		Object v = this.values.get(o);
+		if (v == null) {
+			return o.getSharedValue();
+		}
+		return v == NULL ? null : v;
+	}
+
+	/**
+	 * Returns the value in the given slot of the flat frame.
+	 */
+	Object getSlot(int slot) {
+		return (Object) SLOTS.getAcquire(this.slots, slot);
+	}
+
+	/**
+	 * Stores a value of a {@link NodeOutputInterface} in this context. No type
+	 * checks are done.
+	 */
+	void setValue(NodeOutputInterface o, Object value) {
+		int slot = this.slotOf(o);
+		if (slot >= 0) {
+			SLOTS.setRelease(this.slots, slot, value);
+		} else {
+			this.values.put(o, value == null ? NULL : value);
+		}
+	}
+
+	/**
+	 * Returns the bits of the value of a {@link PrimitiveOutputInterface} in
+	 * this context.
+	 */
+	long getBits(PrimitiveOutputInterface o) {
+		int slot = this.slotOf(o);
+		if (slot >= 0) {
+			return (long) PRIMITIVES.getAcquire(this.primitives, slot);
+		}
+
+		Object v = this.values.get(o);
+		if (v instanceof Bits)
+			return ((Bits) v).value;
+		return v == null ? o.getSharedBits() : o.unbox(v);
+	}
+
+	/**
+	 * Stores the bits of the value of a {@link PrimitiveOutputInterface} in
+	 * this context. Outside of a flat frame the first value of an interface
+	 * allocates a holder, later ones are written into it.
+	 */
+	void setBits(PrimitiveOutputInterface o, long bits) {
+		int slot = this.slotOf(o);
+		if (slot >= 0) {
+			PRIMITIVES.setRelease(this.primitives, slot, bits);
+			return;
+		}
+
+		Object v = this.values.get(o);
+		if (v instanceof Bits) {
+			((Bits) v).value = bits;
+		} else {
+			this.values.put(o, new Bits(bits));
+		}
+	}
+
+	/**
+	 * Returns the object that is attached to this context for the given key.
+	 * This is used by components that keep per-run state, e.g. the tokens of a
+	 * syncronizer.
+	 * 
+	 * @param key
+	 *            the owner of the attachment
+	 * @param factory
+	 *            creates the attachment if there is none yet
+	 * @return the attachment
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getAttachment(Object key, Function<Object, T> factory) {
+		return (T) this.attachments.computeIfAbsent(key, factory);
+	}
+
+	/**
+	 * Returns the context of the run the current thread is working on, or
+	 * <code>null</code> if there is none.
+	 */
+	public static ExecutionContext current() {
+		return current.get();
+	}
+
+	/**
+	 * Makes the given context the current context of this thread.
+	 * 
+	 * @param ctx
+	 *            the new context (<code>null</code> is allowed!)
+	 * @return the previous context that must be passed to restore()
+	 */
+	public static ExecutionContext enter(ExecutionContext ctx) {
+		ExecutionContext prev = current.get();
+		if (prev != ctx)
+			current.set(ctx);
+		return prev;
+	}
+
+	/**
+	 * Restores the context that was returned by enter().
+	 * 
+	 * @param prev
+	 *            the previous context
+	 */
+	public static void restore(ExecutionContext prev) {
+		if (current.get() != prev)
+			current.set(prev);
+	}
+
+	@Override
+	public String toString() {
+		return "ExecutionContext#" + this.id;
+	}
+
+}
@@ -0,0 +1,31 @@
+package nodes;
+
+/**
+ * A {@link NodeInputInterface} for <code>int</code> values. It reads a
+ * {@link IntOutputInterface} without boxing and unboxes any other source of
+ * type {@link Integer}.
+ */
+public class IntInputInterface extends PrimitiveInputInterface {
+
+	/**
+	 * @param defaultValue
+	 *            the value that is returned as long as no connection is
+	 *            established
+	 */
+	public IntInputInterface(int defaultValue) {
+		super(Integer.class, defaultValue, defaultValue);
+	}
+
+	/**
+	 * Returns the current value of this interface.
+	 */
+	public int getInt() {
+		return (int) this.getBits();
+	}
+
+	@Override
+	protected long unbox(Object value) {
+		return ((Number) value).intValue();
+	}
+
+}
@@ -0,0 +1,37 @@
+package nodes;
+
+/**
+ * A {@link NodeOutputInterface} for <code>int</code> values that does not box
+ * them. Its type is {@link Integer}.
+ */
+public class IntOutputInterface extends PrimitiveOutputInterface {
+
+	public IntOutputInterface(int value) {
+		super(Integer.class, value, value);
+	}
+
+	/**
+	 * Returns the value in the current {@link ExecutionContext}.
+	 */
+	public int getInt() {
+		return (int) this.getBits();
+	}
+
+	/**
+	 * Sets the value in the current {@link ExecutionContext}.
+	 */
+	public void setInt(int value) {
+		this.setBits(value);
+	}
+
+	@Override
+	protected Object box(long bits) {
+		return Integer.valueOf((int) bits);
+	}
+
+	@Override
+	protected long unbox(Object value) {
+		return ((Number) value).intValue();
+	}
+
+}
@@ -0,0 +1,31 @@
+package nodes;
+
+/**
+ * A {@link NodeInputInterface} for <code>long</code> values. It reads a
+ * {@link LongOutputInterface} without boxing and unboxes any other source of
+ * type {@link Long}.
+ */
+public class LongInputInterface extends PrimitiveInputInterface {
+
+	/**
+	 * @param defaultValue
+	 *            the value that is returned as long as no connection is
+	 *            established
+	 */
+	public LongInputInterface(long defaultValue) {
+		super(Long.class, defaultValue, defaultValue);
+	}
+
+	/**
+	 * Returns the current value of this interface.
+	 */
+	public long getLong() {
+		return this.getBits();
+	}
+
+	@Override
+	protected long unbox(Object value) {
+		return ((Number) value).longValue();
+	}
+
+}
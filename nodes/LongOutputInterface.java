@@ -0,0 +1,37 @@
+package nodes;
+
+/**
+ * A {@link NodeOutputInterface} for <code>long</code> values that does not box
+ * them. Its type is {@link Long}.
+ */
+public class LongOutputInterface extends PrimitiveOutputInterface {
+
+	public LongOutputInterface(long value) {
+		super(Long.class, value, value);
+	}
+
+	/**
+	 * Returns the value in the current {@link ExecutionContext}.
+	 */
+	public long getLong() {
+		return this.getBits();
+	}
+
+	/**
+	 * Sets the value in the current {@link ExecutionContext}.
+	 */
+	public void setLong(long value) {
+		this.setBits(value);
+	}
+
+	@Override
+	protected Object box(long bits) {
+		return Long.valueOf(bits);
+	}
+
+	@Override
+	protected long unbox(Object value) {
+		return ((Number) value).longValue();
+	}
+
+}
@@ -5,6 +5,7 @@ import java.util.HashMap;
 import nodes.signals.Signal;
 import nodes.signals.NodeSignalInputInterface;
 import nodes.signals.SignalOutputInterface;
+import nodes.signals.scheduler.SignalScheduler;
 import utils.Logging;
 import utils.Logging.LogLevel;
 
@@ -25,6 +26,9 @@ import utils.Logging.LogLevel;
  * <li>Code that is executed, when a {@link Signal} is recieved.</li>
  * </ul>
  * 
+ * The code is executed by the {@link SignalScheduler} the {@link Node} is
+ * bound to, so {@link Node}s do not own a thread.
+ * 
  * @author Roland Wallner
  *
  */
@@ -36,13 +40,25 @@ public abstract class Node {
 	private HashMap<String, NodeInputInterface> inputs;
 	private HashMap<String, NodeOutputInterface> outputs;
 
+	private volatile boolean batchExecution = false;
+
+	private volatile boolean inlineExecution = false;
+
+	private final NodeMetrics metrics = new NodeMetrics();
+
+	/**
+	 * The {@link Signal} that is handled by the current thread.
+	 */
+	private static final ThreadLocal<Signal> currentSignal = new ThreadLocal<>();
+
 	public Node() {
 		this.sig_in = new NodeSignalInputInterface(this);
 		this.sig_out = new SignalOutputInterface();
 		this.ex_out = new SignalOutputInterface();
 
-		this.inputs = new HashMap<>();
-		this.outputs = new HashMap<>();
+		// most nodes have only a few interfaces, a large graph holds many maps
+		this.inputs = new HashMap<>(4);
+		this.outputs = new HashMap<>(4);
 	}
 
 	/**
@@ -50,24 +66,52 @@ public abstract class Node {
 	 * NodeInputInterface(s) and write to NodeOutputInterface(s)
 	 * 
 	 * This method gets called when a Signal is given to the Node.
+	 * 
+	 * Runs of different {@link ExecutionContext}s may call this method one
+	 * after another, so any state that belongs to a run has to be kept in the
+	 * interfaces and not in fields of the {@link Node}.
 	 */
 	public ReturnCode run() {
 		return ReturnCode.SUCCESS;
 	};
 
+	/**
+	 * Executes the code of this {@link Node} within the
+	 * {@link ExecutionContext} of the {@link Signal} and passes the
+	 * {@link Signal} on.
+	 * 
+	 * @param s
+	 *            the {@link Signal} that triggered the execution
+	 * @param caller
+	 *            the interface that recieved the {@link Signal}
+	 */
 	public void start(Signal s, NodeSignalInputInterface caller) {
-		Logging.log(LogLevel.INFO, "Started", this.getClass().getName());
-		ReturnCode ret = this.run();
-		Logging.log(LogLevel.INFO, "Finished with " + ret.name(), this.getClass().getName());
+		ReturnCode ret;
+		ExecutionContext prev = ExecutionContext.enter(s.getContext());
+		Signal prevSignal = currentSignal.get();
+		currentSignal.set(s);
+		try {
+			ret = this.execute();
+			s = currentSignal.get();
+		} finally {
+			currentSignal.set(prevSignal);
+			ExecutionContext.restore(prev);
+		}
 
 		switch (ret) {
 		case NOSIGNAL:
 			break;
 		case SUCCESS:
-			this.sig_out.passSignal(s);
+			if (this.inlineExecution)
+				this.sig_out.passSignalInline(s);
+			else
+				this.sig_out.passSignal(s);
 			break;
 		case EXCEPTION:
-			this.ex_out.passSignal(s);
+			if (this.inlineExecution)
+				this.ex_out.passSignalInline(s);
+			else
+				this.ex_out.passSignal(s);
 			break;
 		default:
 			assert(false);
@@ -75,6 +119,147 @@ public abstract class Node {
 
 	}
 
+	/**
+	 * Executes the code of this {@link Node} once for several {@link Signal}s
+	 * of the same {@link ExecutionContext} and passes all of them on.
+	 * getSignal() returns the first one, a {@link Signal} that is set with
+	 * setSignal() takes its place.
+	 * 
+	 * @param signals
+	 *            the {@link Signal}s that triggered the execution
+	 * @param caller
+	 *            the interface that recieved the {@link Signal}s
+	 */
+	public void startBatch(Signal[] signals, NodeSignalInputInterface caller) {
+		ReturnCode ret;
+		ExecutionContext prev = ExecutionContext.enter(signals[0].getContext());
+		Signal prevSignal = currentSignal.get();
+		currentSignal.set(signals[0]);
+		try {
+			ret = this.execute();
+			signals[0] = currentSignal.get();
+		} finally {
+			currentSignal.set(prevSignal);
+			ExecutionContext.restore(prev);
+		}
+
+		switch (ret) {
+		case NOSIGNAL:
+			break;
+		case SUCCESS:
+			this.sig_out.passSignals(signals);
+			break;
+		case EXCEPTION:
+			this.ex_out.passSignals(signals);
+			break;
+		default:
+			assert(false);
+		}
+	}
+
+	/**
+	 * Returns the {@link Signal} that triggered the current execution of run()
+	 * with its attributes, or <code>null</code> if run() was not triggered by
+	 * a {@link Signal} (e.g. in an {@link nodes.compositor.ExecutionPlan}).
+	 */
+	protected Signal getSignal() {
+		return currentSignal.get();
+	}
+
+	/**
+	 * Replaces the {@link Signal} that is passed on after the current
+	 * execution of run(), usually by one that was created with
+	 * {@link Signal#with(String, Object)} from getSignal().
+	 * 
+	 * @param s
+	 *            the new {@link Signal}
+	 * @throws IllegalArgumentException
+	 *             if s is <code>null</code>
+	 * @throws IllegalStateException
+	 *             if run() was not triggered by a {@link Signal}
+	 */
+	protected void setSignal(Signal s) {
+		if (s == null)
+			throw new IllegalArgumentException("The signal must not be null.");
+		if (currentSignal.get() == null)
+			throw new IllegalStateException("There is no signal to replace.");
+		currentSignal.set(s);
+	}
+
+	/**
+	 * Enables inline execution: the {@link Node} a {@link Signal} is passed to
+	 * is executed directly on the current thread if it is idle, instead of
+	 * queueing the {@link Signal} and waking up its handler. This saves the
+	 * queue and the thread switch on every hop of a chain, but the successor
+	 * no longer runs in parallel to anything else on this thread.
+	 */
+	public void setInlineExecution(boolean inline) {
+		this.inlineExecution = inline;
+	}
+
+	public boolean isInlineExecution() {
+		return this.inlineExecution;
+	}
+
+	/**
+	 * Enables batch execution: run() is called only once for all
+	 * {@link Signal}s of the same {@link ExecutionContext} that are queued at
+	 * that time, instead of once per {@link Signal}. All of them are passed on
+	 * afterwards.
+	 * 
+	 * This is meant for {@link Node}s that recieve many {@link Signal}s whose
+	 * executions would produce the same result.
+	 * 
+	 * @param batch
+	 *            <code>true</code> to enable batch execution
+	 */
+	public void setBatchExecution(boolean batch) {
+		this.batchExecution = batch;
+	}
+
+	public boolean isBatchExecution() {
+		return this.batchExecution;
+	}
+
+	/**
+	 * Returns <code>true</code> if the outputs and the {@link ReturnCode} of
+	 * this {@link Node} only depend on the values of its inputs (like a
+	 * {@link Node} that adds two numbers). Only such {@link Node}s are skipped
+	 * by ExecutionPlan.executeIncremental() when their inputs did not change.
+	 * 
+	 * Returns <code>false</code> unless it is overridden.
+	 */
+	public boolean isPure() {
+		return false;
+	}
+
+	/**
+	 * Executes the code of this {@link Node} within the current
+	 * {@link ExecutionContext} without passing any {@link Signal}.
+	 * 
+	 * @return the result of run()
+	 */
+	public ReturnCode execute() {
+		Logging.log(LogLevel.INFO, "Started", this.getClass().getName());
+		ReturnCode ret;
+		if (NodeMetrics.isEnabled()) {
+			long start = System.nanoTime();
+			ret = this.run();
+			this.metrics.recordRun(ret, System.nanoTime() - start);
+		} else {
+			ret = this.run();
+		}
+		Logging.logf(LogLevel.INFO, this.getClass().getName(), "Finished with {}", ret);
+		return ret;
+	}
+
+	/**
+	 * Returns the counters of the executions of this {@link Node}.
+	 */
+	public NodeMetrics getMetrics() {
+		return this.metrics;
+	}
+
 	public SignalOutputInterface getSignalOutput() {
 		return this.sig_out;
 	}
@@ -87,6 +272,23 @@ public abstract class Node {
 		return this.ex_out;
 	}
 
+	/**
+	 * Binds this {@link Node} to a {@link SignalScheduler} which executes its
+	 * code from now on.
+	 * 
+	 * @param scheduler
+	 *            the new scheduler
+	 * @throws IllegalArgumentException
+	 *             if scheduler is <code>null</code>
+	 */
+	public void setScheduler(SignalScheduler scheduler) {
+		this.sig_in.setScheduler(scheduler);
+	}
+
+	public SignalScheduler getScheduler() {
+		return this.sig_in.getScheduler();
+	}
+
 	/**
 	 * This method registers a new {@link NodeInputInterface} in the node.
 	 * 
@@ -193,12 +395,19 @@ public abstract class Node {
 
 	/**
 	 * This method stops the {@link NodeSignalInputInterface}, so no new
-	 * {@link Signal}s can be received.
+	 * {@link Signal}s can be received, and removes all data edges of this
+	 * {@link Node}.
 	 * 
 	 * This method has to be called when this node is freed!
 	 */
 	public void destroy() {
 		this.sig_in.destroy();
+		for (NodeInputInterface i : this.inputs.values()) {
+			i.destroy();
+		}
+		for (NodeOutputInterface o : this.outputs.values()) {
+			o.destroy();
+		}
 	}
 
 	/**
@@ -5,6 +5,11 @@ public class NodeInputInterface extends NodeInterface {
 	private NodeOutputInterface source = null;
 	private final Object defaultValue;
 
+	/**
+	 * The index of this interface in the connections of its source.
+	 */
+	int connectionIndex = -1;
+
 	/**
 	 * Each {@link NodeInputInterface} needs to have a type and a default value
 	 * that is given to the Parent-{@link Node} as long as no connection to
@@ -35,12 +40,26 @@ public class NodeInputInterface extends NodeInterface {
 	 */
 	public Object getValue() {
 		if (this.source != null) {
-			return this.source.getValue();
+			ExecutionContext ctx = ExecutionContext.current();
+			SlotLayout.Binding b = this.binding;
+			if (ctx != null && b != null && b.layout == ctx.layout) {
+				return b.primitive == null ? ctx.getSlot(b.index) : b.primitive.getValue();
+			}
+			return (b != null && b.source != null ? b.source : this.source).getValue();
 		} else {
 			return this.defaultValue;
 		}
 	}
 
+	/**
+	 * Returns the output the value is read from outside of the frames of a
+	 * plan: the resolved source if there is one, the source otherwise.
+	 */
+	NodeOutputInterface getResolvedSource() {
+		SlotLayout.Binding b = this.binding;
+		return b != null && b.source != null ? b.source : this.source;
+	}
+
 	/**
 	 * Specifies where the {@link NodeInputInterface} gets its Information from.
 	 * 
@@ -60,6 +79,8 @@ public class NodeInputInterface extends NodeInterface {
 		}
 
 		this.source = nSource;
+		// the binding belonged to the old connection
+		this.binding = null;
 
 		if (this.source != null)
 			nSource.registerConnection(this);
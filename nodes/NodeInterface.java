@@ -8,12 +8,23 @@ package nodes;
  * input. To validate this precondition a type must be specified for each
  * {@link NodeInterface}.
  * 
+ * A compiled plan can bind an interface to a slot of its value frames (see
+ * {@link SlotLayout}), so values are read and written by array index while the
+ * plan runs.
+ * 
  * @author Roland Wallner
  *
  */
 public abstract class NodeInterface {
 	private Class<?> clazz;
 
+	/**
+	 * The slot of this interface in the value frames of a compiled plan,
+	 * <code>null</code> if it is not bound. For inputs this is the slot of
+	 * the value they read.
+	 */
+	volatile SlotLayout.Binding binding = null;
+
 	public NodeInterface(Class<?> c) {
 		this.clazz = c;
 	}
@@ -21,4 +32,13 @@ public abstract class NodeInterface {
 	public Class<?> getType() {
 		return this.clazz;
 	}
+
+	/**
+	 * Returns the slot of this interface in the frames of the plan it is bound
+	 * to, -1 if it is not bound.
+	 */
+	public int getSlot() {
+		SlotLayout.Binding b = this.binding;
+		return b == null ? -1 : b.index;
+	}
 }
@@ -0,0 +1,168 @@
+package nodes;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import nodes.signals.NodeSignalInputInterface;
+import nodes.signals.Signal;
+
+/**
+ * The {@link NodeMetrics} count how often and how long the code of a
+ * {@link Node} is executed and how long its {@link Signal}s wait in the
+ * {@link NodeSignalInputInterface}.
+ * 
+ * The counters are striped ({@link LongAdder}), so recording is cheap even if
+ * a {@link Node} is executed by several threads. The run times are collected
+ * in a histogram with one bucket per power of two nanoseconds.
+ * 
+ * Recording is disabled by default, since it calls System.nanoTime() twice per
+ * execution and once per queued {@link Signal}. Enable it globally with
+ * setEnabled() before the executions that should be measured.
+ */
+public class NodeMetrics {
+
+	/**
+	 * The number of histogram buckets, the last one collects everything above
+	 * 2^(BUCKETS - 1) nanoseconds.
+	 */
+	public static final int BUCKETS = 40;
+
+	private static volatile boolean enabled = false;
+
+	/**
+	 * The counters, created by the first recorded value, as most {@link Node}s
+	 * are never measured (recording is disabled or they never run). A large
+	 * graph then does not pay for them when it is built.
+	 */
+	private volatile Counters counters = null;
+
+	/**
+	 * The histogram, created by the first recorded run.
+	 */
+	private volatile AtomicLongArray runTimes = null;
+
+	/**
+	 * Enables or disables recording for all {@link Node}s, it is disabled by
+	 * default.
+	 */
+	public static void setEnabled(boolean enable) {
+		enabled = enable;
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Records one execution of run().
+	 * 
+	 * @param ret
+	 *            the result of run()
+	 * @param nanos
+	 *            how long run() took
+	 */
+	public void recordRun(ReturnCode ret, long nanos) {
+		Counters c = this.counters();
+		switch (ret) {
+		case SUCCESS:
+			c.successes.increment();
+			break;
+		case EXCEPTION:
+			c.exceptions.increment();
+			break;
+		default:
+			c.noSignals.increment();
+			break;
+		}
+		c.runNanos.add(nanos);
+		AtomicLongArray histogram = this.runTimes;
+		if (histogram == null) {
+			histogram = this.createHistogram();
+		}
+		histogram.incrementAndGet(bucket(nanos));
+	}
+
+	private Counters counters() {
+		Counters c = this.counters;
+		if (c == null) {
+			c = this.createCounters();
+		}
+		return c;
+	}
+
+	private synchronized Counters createCounters() {
+		if (this.counters == null) {
+			this.counters = new Counters();
+		}
+		return this.counters;
+	}
+
+	private synchronized AtomicLongArray createHistogram() {
+		if (this.runTimes == null) {
+			this.runTimes = new AtomicLongArray(BUCKETS);
+		}
+		return this.runTimes;
+	}
+
+	/**
+	 * Records how long a {@link Signal} waited in the queue.
+	 */
+	public void recordWait(long nanos) {
+		Counters c = this.counters();
+		c.waits.increment();
+		c.waitNanos.add(nanos);
+	}
+
+	/**
+	 * Records the number of queued {@link Signal}s after a {@link Signal} was
+	 * added.
+	 */
+	public void recordQueueDepth(int depth) {
+		AtomicInteger maxQueueDepth = this.counters().maxQueueDepth;
+		int max;
+		while (depth > (max = maxQueueDepth.get())) {
+			if (maxQueueDepth.compareAndSet(max, depth))
+				return;
+		}
+	}
+
+	/**
+	 * Returns the histogram bucket of a run time.
+	 */
+	static int bucket(long nanos) {
+		if (nanos <= 1)
+			return 0;
+		return Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(nanos));
+	}
+
+	/**
+	 * Returns the current values of all counters. The values are read one
+	 * after another, so they may be slightly inconsistent while the
+	 * {@link Node} runs.
+	 */
+	public NodeMetricsSnapshot snapshot() {
+		long[] histogram = new long[BUCKETS];
+		AtomicLongArray runTimes = this.runTimes;
+		for (int i = 0; runTimes != null && i < BUCKETS; ++i) {
+			histogram[i] = runTimes.get(i);
+		}
+		Counters c = this.counters;
+		if (c == null) {
+			return new NodeMetricsSnapshot(0, 0, 0, 0, histogram, 0, 0, 0);
+		}
+		return new NodeMetricsSnapshot(c.successes.sum(), c.exceptions.sum(), c.noSignals.sum(), c.runNanos.sum(),
+				histogram, c.waits.sum(), c.waitNanos.sum(), c.maxQueueDepth.get());
+	}
+
+	private static final class Counters {
+		private final LongAdder successes = new LongAdder();
+		private final LongAdder exceptions = new LongAdder();
+		private final LongAdder noSignals = new LongAdder();
+		private final LongAdder runNanos = new LongAdder();
+		private final LongAdder waits = new LongAdder();
+		private final LongAdder waitNanos = new LongAdder();
+		private final AtomicInteger maxQueueDepth = new AtomicInteger();
+	}
+
+}
@@ -0,0 +1,138 @@
+package nodes;
+
+/**
+ * An immutable copy of the {@link NodeMetrics} of one {@link Node} or the sum
+ * of the {@link NodeMetrics} of several {@link Node}s.
+ */
+public class NodeMetricsSnapshot {
+
+	/**
+	 * A snapshot without any recorded values.
+	 */
+	public static final NodeMetricsSnapshot EMPTY = new NodeMetricsSnapshot(0, 0, 0, 0,
+			new long[NodeMetrics.BUCKETS], 0, 0, 0);
+
+	private final long successes, exceptions, noSignals;
+	private final long runNanos;
+	private final long[] runTimes;
+	private final long waits, waitNanos;
+	private final int maxQueueDepth;
+
+	NodeMetricsSnapshot(long successes, long exceptions, long noSignals, long runNanos, long[] runTimes, long waits,
+			long waitNanos, int maxQueueDepth) {
+		this.successes = successes;
+		this.exceptions = exceptions;
+		this.noSignals = noSignals;
+		this.runNanos = runNanos;
+		this.runTimes = runTimes;
+		this.waits = waits;
+		this.waitNanos = waitNanos;
+		this.maxQueueDepth = maxQueueDepth;
+	}
+
+	/**
+	 * Returns the sum of this and the given snapshot. The maximum queue depth
+	 * is the larger one of both.
+	 */
+	public NodeMetricsSnapshot add(NodeMetricsSnapshot o) {
+		long[] histogram = new long[this.runTimes.length];
+		for (int i = 0; i < histogram.length; ++i) {
+			histogram[i] = this.runTimes[i] + o.runTimes[i];
+		}
+		return new NodeMetricsSnapshot(this.successes + o.successes, this.exceptions + o.exceptions,
+				this.noSignals + o.noSignals, this.runNanos + o.runNanos, histogram, this.waits + o.waits,
+				this.waitNanos + o.waitNanos, Math.max(this.maxQueueDepth, o.maxQueueDepth));
+	}
+
+	/**
+	 * Returns how often run() was executed.
+	 */
+	public long getInvocations() {
+		return this.successes + this.exceptions + this.noSignals;
+	}
+
+	public long getSuccesses() {
+		return this.successes;
+	}
+
+	public long getExceptions() {
+		return this.exceptions;
+	}
+
+	public long getNoSignals() {
+		return this.noSignals;
+	}
+
+	/**
+	 * Returns the time spent in run() in nanoseconds.
+	 */
+	public long getTotalRunNanos() {
+		return this.runNanos;
+	}
+
+	/**
+	 * Returns the average time of run() in nanoseconds.
+	 */
+	public double getMeanRunNanos() {
+		long n = this.getInvocations();
+		return n == 0 ? 0 : this.runNanos / (double) n;
+	}
+
+	/**
+	 * Returns an upper bound of the given percentile of the run times in
+	 * nanoseconds, taken from the histogram.
+	 * 
+	 * @param percentile
+	 *            between 0 and 100
+	 */
+	public long getRunNanosPercentile(double percentile) {
+		long n = this.getInvocations();
+		if (n == 0)
+			return 0;
+
+		long rank = (long) Math.ceil(n * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < this.runTimes.length; ++i) {
+			seen += this.runTimes[i];
+			if (seen >= rank)
+				return 1L << (i + 1);
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Returns a copy of the run time histogram. Bucket i counts the runs that
+	 * took between 2^i and 2^(i+1) nanoseconds.
+	 */
+	public long[] getRunTimeHistogram() {
+		return this.runTimes.clone();
+	}
+
+	/**
+	 * Returns the average time a {@link nodes.signals.Signal} waited in the
+	 * queue in nanoseconds.
+	 */
+	public double getMeanQueueWaitNanos() {
+		return this.waits == 0 ? 0 : this.waitNanos / (double) this.waits;
+	}
+
+	public long getTotalQueueWaitNanos() {
+		return this.waitNanos;
+	}
+
+	/**
+	 * Returns the highest number of queued {@link nodes.signals.Signal}s.
+	 */
+	public int getMaxQueueDepth() {
+		return this.maxQueueDepth;
+	}
+
+	@Override
+	public String toString() {
+		return "invocations=" + this.getInvocations() + " (success=" + this.successes + ", exception="
+				+ this.exceptions + ", nosignal=" + this.noSignals + "), meanRun=" + (long) this.getMeanRunNanos()
+				+ "ns, p99Run<=" + this.getRunNanosPercentile(99) + "ns, meanWait="
+				+ (long) this.getMeanQueueWaitNanos() + "ns, maxQueueDepth=" + this.maxQueueDepth;
+	}
+
+}
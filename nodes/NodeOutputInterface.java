@@ -1,12 +1,70 @@
 package nodes;
 
-import java.util.LinkedList;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Objects;
 
+import nodes.signals.Signal;
+
+/**
+ * An output of a {@link Node} that holds a value for the connected
+ * {@link NodeInputInterface}s.
+ * 
+ * Memory model: a value is written with release semantics and read with
+ * acquire semantics, no matter if it is stored in the interface or in the
+ * frame of an {@link ExecutionContext}. Passing a {@link Signal} on
+ * (through a queue, a syncronizer or a plan) publishes everything the
+ * {@link Node} wrote before: every write of a {@link Node} happens-before
+ * the runs of the {@link Node}s that are triggered by its {@link Signal}.
+ * A reader that does not wait for a {@link Signal} sees the last released
+ * value or a newer one, never a partly written one (this includes the
+ * <code>long</code> and <code>double</code> values of
+ * {@link PrimitiveOutputInterface}s).
+ * 
+ * Writes are not atomic read-modify-write operations: if two runs without
+ * an {@link ExecutionContext} write the same interface at once, one of the
+ * values is kept.
+ */
 public class NodeOutputInterface extends NodeInterface {
 
+	private static final VarHandle VALUE;
+
+	static {
+		try {
+			VALUE = MethodHandles.lookup().findVarHandle(NodeOutputInterface.class, "value", Object.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
 	private Object startValue;
+
+	/**
+	 * Only accessed with release/acquire semantics after the construction.
+	 */
 	private Object value;
-	private LinkedList<NodeInputInterface> connections;
+	/**
+	 * The connected inputs. Each input stores its index in this array, so a
+	 * connection is removed by moving the last one into its place.
+	 */
+	private NodeInputInterface[] connections;
+	private int connectionCount;
+
+	/**
+	 * Raised whenever the value stored in this interface changes. Writes of
+	 * the stored value are not synchronized anyway; if two of them race, the
+	 * stamp still differs from the one before.
+	 */
+	private volatile long version = 0;
+
+	/**
+	 * Raised by every write, within an {@link ExecutionContext} or not. It is
+	 * only compared by the thread that runs the {@link Node} of this
+	 * interface, before and after a run, to find out which outputs the run
+	 * wrote (see {@link CachingNode}).
+	 */
+	long writes = 0;
 
 	/**
 	 * Each {@link NodeOutputInterface} needs to have a type and a default value
@@ -25,11 +83,28 @@ public class NodeOutputInterface extends NodeInterface {
 		super(type);
 		this.value = this.startValue = value;
 
-		this.connections = new LinkedList<>();
+		this.connections = new NodeInputInterface[2];
+		this.connectionCount = 0;
 	}
 
+	/**
+	 * Returns the value of this interface in the current
+	 * {@link ExecutionContext}.
+	 */
 	public Object getValue() {
-		return this.value;
+		ExecutionContext ctx = ExecutionContext.current();
+		if (ctx != null) {
+			return ctx.getValue(this);
+		}
+		return (Object) VALUE.getAcquire(this);
+	}
+
+	/**
+	 * Returns the value that is stored in this interface, ignoring any
+	 * {@link ExecutionContext}.
+	 */
+	Object getSharedValue() {
+		return (Object) VALUE.getAcquire(this);
 	}
 
 	/**
@@ -37,6 +112,10 @@ public class NodeOutputInterface extends NodeInterface {
 	 * connected {@link NodeInputInterface} will recieve it until this method is
 	 * called with a different {@link Object}.
 	 * 
+	 * If the current thread runs within an {@link ExecutionContext}, the value
+	 * is only visible within this context. Otherwise the version of this
+	 * interface is raised if the value is not equal to the stored one.
+	 * 
 	 * @param value
 	 *            The curent value for this interface (<code>null</code> is
 	 *            allowed!)
@@ -45,18 +124,58 @@ public class NodeOutputInterface extends NodeInterface {
 	 */
 	public void setValue(Object value) {
 		if (value == null || this.getType().isInstance(value)) {
-			this.value = value;
+			this.writes++;
+			ExecutionContext ctx = ExecutionContext.current();
+			if (ctx != null) {
+				ctx.setValue(this, value);
+			} else if (!Objects.equals(VALUE.getAcquire(this), value)) {
+				VALUE.setRelease(this, value);
+				this.changed();
+			}
 		} else {
 			throw new IllegalArgumentException("Invalid Type");
 		}
 	}
 
+	/**
+	 * Returns the version stamp of the value stored in this interface. The
+	 * stamp changes whenever a different value is stored, values written
+	 * within an {@link ExecutionContext} do not change it.
+	 */
+	public long getVersion() {
+		return this.version;
+	}
+
+	void changed() {
+		this.version++;
+	}
+
 	public void registerConnection(NodeInputInterface i) {
-		this.connections.add(i);
+		if (this.connectionCount == this.connections.length) {
+			this.connections = Arrays.copyOf(this.connections, this.connectionCount * 2);
+		}
+		i.connectionIndex = this.connectionCount;
+		this.connections[this.connectionCount++] = i;
 	}
 
 	public void removeConnection(NodeInputInterface i) {
-		this.connections.remove(i);
+		int index = i.connectionIndex;
+		if (index < 0 || index >= this.connectionCount || this.connections[index] != i) {
+			return;
+		}
+
+		NodeInputInterface last = this.connections[--this.connectionCount];
+		this.connections[index] = last;
+		last.connectionIndex = index;
+		this.connections[this.connectionCount] = null;
+		i.connectionIndex = -1;
+	}
+
+	/**
+	 * Returns the number of connected {@link NodeInputInterface}s.
+	 */
+	public int getConnectionCount() {
+		return this.connectionCount;
 	}
 
 	/**
@@ -66,10 +185,10 @@ public class NodeOutputInterface extends NodeInterface {
 	 * object!
 	 */
 	public void destroy() {
-		for (NodeInputInterface i : this.connections) {
-			i.setConnection(null);
+		// setConnection() removes the connection from the array
+		while (this.connectionCount > 0) {
+			this.connections[this.connectionCount - 1].setConnection(null);
 		}
-		this.connections.clear();
 	}
 
 	/**
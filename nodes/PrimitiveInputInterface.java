@@ -0,0 +1,63 @@
+package nodes;
+
+/**
+ * A {@link PrimitiveInputInterface} reads a primitive value without boxing it
+ * if its source is a {@link PrimitiveOutputInterface}. Other sources are
+ * unboxed. Subclasses provide the typed getters.
+ * 
+ * The type of the source is checked once when the connection is established.
+ */
+public abstract class PrimitiveInputInterface extends NodeInputInterface {
+
+	private final long defaultBits;
+
+	/**
+	 * The source if it is a {@link PrimitiveOutputInterface}, resolved when
+	 * the connection is established.
+	 */
+	private PrimitiveOutputInterface primitiveSource = null;
+
+	/**
+	 * @param type
+	 *            the boxed type of the value
+	 * @param defaultValue
+	 *            the boxed default value
+	 * @param defaultBits
+	 *            the bits of the default value
+	 */
+	protected PrimitiveInputInterface(Class<?> type, Object defaultValue, long defaultBits) {
+		super(type, defaultValue);
+		this.defaultBits = defaultBits;
+	}
+
+	/**
+	 * Converts a boxed value to its bits.
+	 */
+	protected abstract long unbox(Object value);
+
+	/**
+	 * Returns the bits of the current value of this interface.
+	 */
+	protected long getBits() {
+		PrimitiveOutputInterface p = this.primitiveSource;
+		if (p != null) {
+			return p.getBits();
+		}
+		if (this.getSource() == null) {
+			return this.defaultBits;
+		}
+		NodeOutputInterface r = this.getResolvedSource();
+		if (r instanceof PrimitiveOutputInterface) {
+			return ((PrimitiveOutputInterface) r).getBits();
+		}
+		return this.unbox(this.getValue());
+	}
+
+	@Override
+	public void setConnection(NodeOutputInterface nSource) {
+		super.setConnection(nSource);
+		this.primitiveSource = nSource instanceof PrimitiveOutputInterface ? (PrimitiveOutputInterface) nSource
+				: null;
+	}
+
+}
@@ -0,0 +1,115 @@
+package nodes;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A {@link PrimitiveOutputInterface} stores a primitive value without boxing
+ * it. The value is kept as the raw bits of a <code>long</code>; subclasses
+ * provide typed getters and setters and the conversion from and to the boxed
+ * type.
+ * 
+ * Connected {@link PrimitiveInputInterface}s read the bits directly. Any
+ * other {@link NodeInputInterface} gets a boxed value via getValue().
+ * 
+ * A primitive value cannot be <code>null</code>, so unlike a
+ * {@link NodeOutputInterface} setValue() rejects it.
+ * 
+ * The bits are published like the values of a {@link NodeOutputInterface},
+ * with release/acquire semantics, so a <code>long</code> is never read half
+ * written.
+ */
+public abstract class PrimitiveOutputInterface extends NodeOutputInterface {
+
+	private static final VarHandle BITS;
+
+	static {
+		try {
+			BITS = MethodHandles.lookup().findVarHandle(PrimitiveOutputInterface.class, "bits", long.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * Only accessed with release/acquire semantics after the construction.
+	 */
+	private long bits;
+
+	/**
+	 * @param type
+	 *            the boxed type of the value
+	 * @param value
+	 *            the boxed start value
+	 * @param bits
+	 *            the bits of the start value
+	 */
+	protected PrimitiveOutputInterface(Class<?> type, Object value, long bits) {
+		super(type, value);
+		this.bits = bits;
+	}
+
+	/**
+	 * Converts the bits to the boxed type.
+	 */
+	protected abstract Object box(long bits);
+
+	/**
+	 * Converts a boxed value to its bits.
+	 */
+	protected abstract long unbox(Object value);
+
+	/**
+	 * Returns the bits of the value in the current {@link ExecutionContext}.
+	 */
+	protected long getBits() {
+		ExecutionContext ctx = ExecutionContext.current();
+		if (ctx != null) {
+			return ctx.getBits(this);
+		}
+		return (long) BITS.getAcquire(this);
+	}
+
+	/**
+	 * Sets the bits of the value in the current {@link ExecutionContext}.
+	 */
+	protected void setBits(long bits) {
+		this.writes++;
+		ExecutionContext ctx = ExecutionContext.current();
+		if (ctx != null) {
+			ctx.setBits(this, bits);
+		} else if ((long) BITS.getAcquire(this) != bits) {
+			BITS.setRelease(this, bits);
+			this.changed();
+		}
+	}
+
+	long getSharedBits() {
+		return (long) BITS.getAcquire(this);
+	}
+
+	@Override
+	Object getSharedValue() {
+		return this.box(this.getSharedBits());
+	}
+
+	@Override
+	public Object getValue() {
+		return this.box(this.getBits());
+	}
+
+	/**
+	 * Sets the boxed value, it is unboxed before it is stored.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             in case mismatching data or <code>null</code> is supplied
+	 */
+	@Override
+	public void setValue(Object value) {
+		if (value == null || !this.getType().isInstance(value)) {
+			throw new IllegalArgumentException("Invalid Type");
+		}
+		this.setBits(this.unbox(value));
+	}
+
+}
@@ -0,0 +1,307 @@
+package nodes;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import nodes.signals.Signal;
+import nodes.signals.SignalInputInterface;
+import nodes.signals.SignalOutputInterface;
+
+/**
+ * A {@link SinkNode} collects the elements streamed by a {@link SourceNode}.
+ * Whenever it recieves a {@link Signal}, it reads the element from its input
+ * "Input" and returns one credit to the {@link SourceNode} once the element
+ * was taken, so the next element may enter the graph.
+ *
+ * With a {@link Consumer} the elements are handed over in the order they
+ * arrive. Otherwise they are read with iterator() or stream() in the order of
+ * the {@link SourceNode#INDEX} attribute: elements that overtook others wait
+ * in a buffer, which never holds more than window elements.
+ *
+ * A {@link Signal} passed to getFailureInput() marks its element as failed,
+ * the element is skipped. An element whose {@link Signal} is kept by a
+ * {@link Node} of the graph never arrives and blocks the stream, since its
+ * credit is never returned.
+ *
+ * @param <T>
+ *            the type of the elements
+ */
+public class SinkNode<T> extends Node {
+
+	/**
+	 * Placeholder for an element that failed.
+	 */
+	private static final Object FAILED = new Object();
+
+	/**
+	 * Placeholder for <code>null</code>.
+	 */
+	private static final Object NULL = new Object();
+
+	private final NodeInputInterface input;
+
+	private final SignalInputInterface failure;
+
+	private final Consumer<? super T> consumer;
+
+	private volatile SourceNode<?> source = null;
+
+	/**
+	 * The elements that arrived before all elements with a lower index, only
+	 * used without a {@link Consumer}. Guarded by this.
+	 */
+	private final HashMap<Long, Object> buffer = new HashMap<>();
+
+	/**
+	 * The index of the next element that is read. Guarded by this.
+	 */
+	private long next = 0;
+
+	/**
+	 * The index given to {@link Signal}s without {@link SourceNode#INDEX}.
+	 */
+	private long arrivals = 0;
+
+	private final LongAdder failed = new LongAdder();
+
+	private volatile boolean destroyed = false;
+
+	/**
+	 * Creates a {@link SinkNode} whose elements are read with iterator() or
+	 * stream().
+	 *
+	 * @param type
+	 *            the type of the elements
+	 */
+	public SinkNode(Class<T> type) {
+		this(type, null);
+	}
+
+	/**
+	 * Creates a {@link SinkNode} that hands every element to the given
+	 * {@link Consumer}. It is called by the threads that execute this
+	 * {@link Node}, one at a time.
+	 *
+	 * @param type
+	 *            the type of the elements
+	 * @param consumer
+	 *            takes the elements
+	 */
+	public SinkNode(Class<T> type, Consumer<? super T> consumer) {
+		this.consumer = consumer;
+		this.input = new NodeInputInterface(type, null);
+		this.failure = new FailureReciever();
+		this.registerInput("Input", this.input);
+	}
+
+	/**
+	 * Sets the {@link SourceNode} the credits are returned to.
+	 *
+	 * @param source
+	 *            the source of the elements
+	 */
+	public void setSource(SourceNode<?> source) {
+		this.source = source;
+		source.addFinishListener(() -> {
+			synchronized (this) {
+				this.notifyAll();
+			}
+		});
+	}
+
+	public SourceNode<?> getSource() {
+		return this.source;
+	}
+
+	@Override
+	public ReturnCode run() {
+		this.arrived(this.indexOf(this.getSignal()), this.input.getValue());
+		return ReturnCode.NOSIGNAL;
+	}
+
+	/**
+	 * Returns the index of the element of the given {@link Signal}.
+	 */
+	private long indexOf(Signal s) {
+		Object index = s == null ? null : s.get(SourceNode.INDEX);
+		if (index instanceof Long)
+			return (Long) index;
+		synchronized (this) {
+			return this.arrivals++;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void arrived(long index, Object value) {
+		if (this.consumer != null) {
+			try {
+				if (value != FAILED)
+					this.consumer.accept((T) value);
+			} finally {
+				this.release();
+			}
+			return;
+		}
+
+		synchronized (this) {
+			this.buffer.put(index, value == null ? NULL : value);
+			this.notifyAll();
+		}
+	}
+
+	private void release() {
+		SourceNode<?> s = this.source;
+		if (s != null)
+			s.release();
+	}
+
+	/**
+	 * Returns the input that recieves the {@link Signal}s of failed elements.
+	 * Connect the exception output of the graph to it.
+	 */
+	public SignalInputInterface getFailureInput() {
+		return this.failure;
+	}
+
+	/**
+	 * Returns the input that holds the element of the current
+	 * {@link ExecutionContext}.
+	 */
+	public NodeInputInterface getInput() {
+		return this.input;
+	}
+
+	/**
+	 * Returns the number of elements that failed so far.
+	 */
+	public long getFailed() {
+		return this.failed.sum();
+	}
+
+	/**
+	 * Returns the elements in the order of the {@link SourceNode}. hasNext()
+	 * blocks until the next element arrived or the {@link SourceNode} is
+	 * finished. The iteration ends early when this {@link SinkNode} is
+	 * destroyed.
+	 *
+	 * @throws IllegalStateException
+	 *             if there is a {@link Consumer} or no {@link SourceNode}
+	 */
+	public Iterator<T> iterator() {
+		if (this.consumer != null)
+			throw new IllegalStateException("The elements are passed to the consumer.");
+		if (this.source == null)
+			throw new IllegalStateException("There is no source.");
+
+		return new Iterator<T>() {
+			private Object element = null;
+
+			@Override
+			public boolean hasNext() {
+				if (this.element == null)
+					this.element = take();
+				return this.element != null;
+			}
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public T next() {
+				if (!this.hasNext())
+					throw new NoSuchElementException();
+				Object e = this.element;
+				this.element = null;
+				return e == NULL ? null : (T) e;
+			}
+		};
+	}
+
+	/**
+	 * Like iterator(), but returns a sequential {@link Stream}.
+	 *
+	 * @throws IllegalStateException
+	 *             if there is a {@link Consumer} or no {@link SourceNode}
+	 */
+	public Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this.iterator(), Spliterator.ORDERED),
+				false);
+	}
+
+	/**
+	 * Waits for the next element that did not fail and returns one credit for
+	 * it and every failed element before it. Returns <code>null</code> at the
+	 * end of the stream.
+	 */
+	private Object take() {
+		SourceNode<?> s = this.source;
+		while (true) {
+			Object e;
+			synchronized (this) {
+				while (!this.buffer.containsKey(this.next)) {
+					if (this.destroyed || s.isFinished() && this.next >= s.getEmitted())
+						return null;
+					try {
+						this.wait();
+					} catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+						throw new IllegalStateException("Interrupted while waiting for an element.", ex);
+					}
+				}
+				e = this.buffer.remove(this.next);
+				this.next++;
+			}
+
+			s.release();
+			if (e != FAILED)
+				return e;
+		}
+	}
+
+	@Override
+	public void destroy() {
+		super.destroy();
+		synchronized (this) {
+			this.destroyed = true;
+			this.buffer.clear();
+			this.notifyAll();
+		}
+	}
+
+	/**
+	 * Marks the elements of the {@link Signal}s it recieves as failed.
+	 */
+	private class FailureReciever extends SignalInputInterface {
+
+		public FailureReciever() {
+			super(Signal.class);
+		}
+
+		@Override
+		public void sendSignal(Signal s) {
+			failed.increment();
+			arrived(indexOf(s), FAILED);
+		}
+
+		@Override
+		public void removeConnection(SignalOutputInterface o) {
+			// do nothing, the connections are not tracked
+		}
+
+		@Override
+		public void registerConnection(SignalOutputInterface o) {
+			// do nothing, the connections are not tracked
+		}
+
+		@Override
+		public void destroy() {
+			// do nothing, the connections are not tracked
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+package nodes;
+
+import java.util.List;
+
+/**
+ * A {@link SlotLayout} assigns the slots of the flat value frames of a
+ * compiled plan. Every output of the plan gets a slot when the layout is
+ * created, inputs are bound to the slot of their source afterwards. Only the
+ * layout creates {@link ExecutionContext}s with such a frame, so every frame
+ * has exactly one slot per output bound to it.
+ *
+ * The binding of an interface is an immutable object that is published
+ * through a volatile field and replaced as a whole when the interface is
+ * bound again. A run on another thread therefore sees either the old or the
+ * new binding, never the slot of one and the owner of the other. Runs of an
+ * older layout that are still in flight when an interface is bound to a new
+ * one keep working, but no longer find the values their frame holds for it
+ * and fall back to the values stored in the interface, so a graph should only
+ * be compiled again while no run of the old plan is in flight.
+ */
+public final class SlotLayout {
+
+	/**
+	 * The slot an interface is bound to.
+	 */
+	static final class Binding {
+		final SlotLayout layout;
+		final int index;
+
+		/**
+		 * For inputs the output the value really comes from, if the plan
+		 * found it behind the interfaces of nested compositors, otherwise
+		 * <code>null</code>.
+		 */
+		final NodeOutputInterface source;
+
+		/**
+		 * The source if it is a {@link PrimitiveOutputInterface}. Its value
+		 * is not kept in the slot but in the primitive part of the frame.
+		 */
+		final PrimitiveOutputInterface primitive;
+
+		Binding(SlotLayout layout, int index, NodeOutputInterface source) {
+			this.layout = layout;
+			this.index = index;
+			this.source = source;
+			this.primitive = source instanceof PrimitiveOutputInterface ? (PrimitiveOutputInterface) source : null;
+		}
+	}
+
+	private final NodeOutputInterface[] ports;
+
+	/**
+	 * Creates the layout and binds each output to the slot of its index.
+	 *
+	 * @param ports
+	 *            the interface of each slot
+	 * @throws IllegalArgumentException
+	 *             if an interface is listed twice
+	 */
+	public SlotLayout(List<NodeOutputInterface> ports) {
+		this.ports = ports.toArray(new NodeOutputInterface[ports.size()]);
+		for (int i = 0; i < this.ports.length; ++i) {
+			if (this.indexOf(this.ports[i]) >= 0) {
+				throw new IllegalArgumentException(this.ports[i] + " is listed twice.");
+			}
+			this.ports[i].binding = new Binding(this, i, null);
+		}
+	}
+
+	/**
+	 * Returns the number of slots of each frame.
+	 */
+	public int size() {
+		return this.ports.length;
+	}
+
+	/**
+	 * Returns the interface of the given slot.
+	 */
+	public NodeOutputInterface getPort(int slot) {
+		return this.ports[slot];
+	}
+
+	/**
+	 * Returns the slot of the given interface in this layout, -1 if it is not
+	 * bound to it.
+	 */
+	public int indexOf(NodeInterface i) {
+		Binding b = i.binding;
+		return b != null && b.layout == this ? b.index : -1;
+	}
+
+	/**
+	 * Binds an input to the slot of its source, which must be an output of
+	 * this layout. The binding is kept until the input is connected to another
+	 * source or bound again, other changes of the graph do not affect it.
+	 *
+	 * @param i
+	 *            the input
+	 * @param source
+	 *            the output the value comes from
+	 * @param resolved
+	 *            <code>true</code> if the output was found behind the
+	 *            interfaces of nested compositors, so the value is read from
+	 *            it directly, in the frames of the layout and outside of them,
+	 *            as the plan does not update the interfaces in between
+	 * @throws IllegalArgumentException
+	 *             if the source is not bound to this layout
+	 */
+	public void bind(NodeInputInterface i, NodeOutputInterface source, boolean resolved) {
+		int slot = this.indexOf(source);
+		if (slot < 0) {
+			throw new IllegalArgumentException(source + " is not bound to this layout.");
+		}
+		i.binding = new Binding(this, slot, resolved ? source : null);
+	}
+
+	/**
+	 * Removes the binding of an interface, it is read and written as usual.
+	 */
+	public static void unbind(NodeInterface i) {
+		i.binding = null;
+	}
+
+	/**
+	 * Creates an {@link ExecutionContext} with a flat value frame of this
+	 * layout. The frame starts with the current values of the interfaces.
+	 */
+	public ExecutionContext newContext() {
+		return new ExecutionContext(this, this.ports);
+	}
+}
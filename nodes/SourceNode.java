@@ -0,0 +1,303 @@
+package nodes;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import nodes.signals.Signal;
+import utils.Logging;
+import utils.Logging.LogLevel;
+
+/**
+ * A {@link SourceNode} streams the elements of an {@link Iterator}, a
+ * {@link Stream} or a {@link Flow.Publisher} through a graph. When it recieves
+ * a {@link Signal}, it starts to emit one {@link Signal} per element, each in
+ * an {@link ExecutionContext} of its own in which the output "Output" holds
+ * the element. So the elements are processed like independent runs and many
+ * of them can be in flight at once.
+ *
+ * At most window elements are in flight: an element only leaves the
+ * {@link SourceNode} if a credit is left, and a credit is returned with
+ * release() when an element is done (a {@link SinkNode} does this). Elements
+ * are pulled from an {@link Iterator} only when a credit is available, a
+ * {@link Flow.Publisher} is asked for one element per credit.
+ *
+ * Each {@link Signal} carries the position of its element in the attribute
+ * {@link #INDEX}, starting with 0.
+ *
+ * @param <T>
+ *            the type of the elements
+ */
+public class SourceNode<T> extends Node {
+
+	/**
+	 * The attribute that holds the position of the element (a {@link Long}).
+	 */
+	public static final String INDEX = "SourceNode.index";
+
+	private final NodeOutputInterface output;
+
+	private final Iterator<? extends T> iterator;
+	private final Flow.Publisher<? extends T> publisher;
+	private volatile Flow.Subscription subscription = null;
+
+	private final int window;
+	private final AtomicInteger credits;
+
+	/**
+	 * The credits that were not requested from the subscription yet. Whoever
+	 * takes them requests them, so each credit is requested once, even if a
+	 * credit is returned while the subscription is handed over.
+	 */
+	private final AtomicInteger unrequested;
+
+	/**
+	 * Only one thread pulls from the iterator at a time, the one that raised
+	 * this counter from 0. Others only raise it, so the pulling thread looks
+	 * for credits again.
+	 */
+	private final AtomicInteger pulling = new AtomicInteger();
+
+	private final AtomicInteger started = new AtomicInteger();
+	private volatile long emitted = 0;
+	private volatile boolean finished = false;
+
+	private final List<Runnable> finishListeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * @param type
+	 *            the type of the elements
+	 * @param iterator
+	 *            the elements, only read by one thread at a time
+	 * @param window
+	 *            the maximum number of elements in flight (>= 1)
+	 * @throws IllegalArgumentException
+	 *             if window is less than 1
+	 */
+	public SourceNode(Class<T> type, Iterator<? extends T> iterator, int window) {
+		this(type, iterator, null, window);
+	}
+
+	/**
+	 * @param type
+	 *            the type of the elements
+	 * @param elements
+	 *            the elements, the stream is consumed
+	 * @param window
+	 *            the maximum number of elements in flight (>= 1)
+	 * @throws IllegalArgumentException
+	 *             if window is less than 1
+	 */
+	public SourceNode(Class<T> type, Stream<? extends T> elements, int window) {
+		this(type, elements.iterator(), null, window);
+	}
+
+	/**
+	 * @param type
+	 *            the type of the elements
+	 * @param publisher
+	 *            the elements, it is subscribed to when the first
+	 *            {@link Signal} arrives
+	 * @param window
+	 *            the maximum number of elements in flight (>= 1)
+	 * @throws IllegalArgumentException
+	 *             if window is less than 1
+	 */
+	public SourceNode(Class<T> type, Flow.Publisher<? extends T> publisher, int window) {
+		this(type, null, publisher, window);
+	}
+
+	private SourceNode(Class<T> type, Iterator<? extends T> iterator, Flow.Publisher<? extends T> publisher,
+			int window) {
+		if (window < 1)
+			throw new IllegalArgumentException("The window must be at least 1.");
+
+		this.iterator = iterator;
+		this.publisher = publisher;
+		this.window = window;
+		this.credits = new AtomicInteger(window);
+		this.unrequested = new AtomicInteger(window);
+		this.output = new NodeOutputInterface(type, null);
+		this.registerOutput("Output", this.output);
+	}
+
+	/**
+	 * Starts the stream on the first {@link Signal}, later ones are ignored.
+	 * The {@link Signal}s of the elements are passed on by this method, so it
+	 * never passes the {@link Signal} that started it.
+	 */
+	@Override
+	public ReturnCode run() {
+		if (this.started.getAndIncrement() != 0)
+			return ReturnCode.NOSIGNAL;
+
+		if (this.publisher != null) {
+			this.publisher.subscribe(new Subscriber());
+		} else {
+			this.pull();
+		}
+		return ReturnCode.NOSIGNAL;
+	}
+
+	/**
+	 * Returns one credit: an element left the graph, so the next one may be
+	 * emitted. This may be called by any thread.
+	 */
+	public void release() {
+		this.credits.incrementAndGet();
+		if (this.publisher != null) {
+			this.unrequested.incrementAndGet();
+			this.request();
+		} else if (this.started.get() != 0) {
+			this.pull();
+		}
+	}
+
+	/**
+	 * Requests the credits that were not requested yet, once there is a
+	 * subscription.
+	 */
+	private void request() {
+		Flow.Subscription s = this.subscription;
+		if (s == null || this.finished)
+			return;
+		int n = this.unrequested.getAndSet(0);
+		if (n > 0)
+			s.request(n);
+	}
+
+	/**
+	 * Emits elements as long as credits are left.
+	 */
+	private void pull() {
+		if (this.pulling.getAndIncrement() != 0)
+			return;
+
+		do {
+			try {
+				while (!this.finished && this.credits.get() > 0) {
+					if (!this.iterator.hasNext()) {
+						this.finish();
+						break;
+					}
+					T element = this.iterator.next();
+					this.credits.decrementAndGet();
+					this.emit(element);
+				}
+			} catch (RuntimeException e) {
+				Logging.logf(LogLevel.SEVERE, this.getClass().getName(), "Source failed: {}", e);
+				this.finish();
+			}
+		} while (this.pulling.decrementAndGet() != 0);
+	}
+
+	/**
+	 * Passes a {@link Signal} for the given element on. Only one thread emits
+	 * at a time.
+	 */
+	private void emit(T element) {
+		ExecutionContext ctx = new ExecutionContext();
+		ExecutionContext prev = ExecutionContext.enter(ctx);
+		try {
+			this.output.setValue(element);
+		} finally {
+			ExecutionContext.restore(prev);
+		}
+
+		Signal s = new Signal(ctx).with(INDEX, this.emitted);
+		this.emitted = this.emitted + 1;
+		if (this.isInlineExecution())
+			this.getSignalOutput().passSignalInline(s);
+		else
+			this.getSignalOutput().passSignal(s);
+	}
+
+	private synchronized void finish() {
+		if (this.finished)
+			return;
+		this.finished = true;
+		for (Runnable r : this.finishListeners) {
+			r.run();
+		}
+	}
+
+	/**
+	 * Adds a task that is run once no more elements are emitted. If this
+	 * already happened, it is run at once.
+	 */
+	public void addFinishListener(Runnable listener) {
+		this.finishListeners.add(listener);
+		if (this.finished && this.finishListeners.remove(listener))
+			listener.run();
+	}
+
+	/**
+	 * Returns <code>true</code> if all elements were emitted (or the source
+	 * failed). getEmitted() does not change anymore afterwards.
+	 */
+	public boolean isFinished() {
+		return this.finished;
+	}
+
+	/**
+	 * Returns the number of elements emitted so far.
+	 */
+	public long getEmitted() {
+		return this.emitted;
+	}
+
+	public int getWindow() {
+		return this.window;
+	}
+
+	/**
+	 * Returns the output that holds the element of the current
+	 * {@link ExecutionContext}.
+	 */
+	public NodeOutputInterface getOutput() {
+		return this.output;
+	}
+
+	@Override
+	public void destroy() {
+		Flow.Subscription s = this.subscription;
+		if (s != null)
+			s.cancel();
+		this.finish();
+		super.destroy();
+	}
+
+	/**
+	 * Takes the elements of the publisher, which never sends more elements
+	 * than credits were returned.
+	 */
+	private class Subscriber implements Flow.Subscriber<T> {
+
+		@Override
+		public void onSubscribe(Flow.Subscription s) {
+			subscription = s;
+			request();
+		}
+
+		@Override
+		public void onNext(T element) {
+			credits.decrementAndGet();
+			emit(element);
+		}
+
+		@Override
+		public void onError(Throwable e) {
+			Logging.logf(LogLevel.SEVERE, SourceNode.class.getName(), "Source failed: {}", e);
+			finish();
+		}
+
+		@Override
+		public void onComplete() {
+			finish();
+		}
+	}
+
+}
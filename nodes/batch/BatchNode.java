@@ -0,0 +1,124 @@
+package nodes.batch;
+
+import nodes.ExecutionContext;
+import nodes.Node;
+import nodes.NodeInputInterface;
+import nodes.NodeOutputInterface;
+import nodes.ReturnCode;
+
+/**
+ * A {@link BatchNode} applies a {@link BatchOperation} to whole columns
+ * (arrays or buffers) of numbers instead of single values, so one run and one
+ * {@link nodes.signals.Signal} cover thousands of elements.
+ *
+ * It reads the columns from the inputs "Input1" and "Input2" and writes the
+ * result column to the output "Result".
+ *
+ * Within an {@link ExecutionContext} the result column is attached to the
+ * context and reused whenever this {@link Node} runs again in it (e.g. a
+ * context that is passed to ExecutionPlan.execute(ExecutionContext) over and
+ * over), so its result stays valid until then. A column is never shared
+ * between contexts. Outside of any context a new column is created for each
+ * run.
+ *
+ * The run returns {@link ReturnCode#EXCEPTION} if a column is missing or the
+ * lengths of the columns differ.
+ *
+ * @param <C>
+ *            the type of the columns
+ */
+public abstract class BatchNode<C> extends Node {
+
+	private final BatchOperation operation;
+
+	private final NodeInputInterface in1, in2;
+	private final NodeOutputInterface out;
+
+	/**
+	 * @param type
+	 *            the type of the columns
+	 * @param operation
+	 *            the operation that is applied to each pair of elements
+	 */
+	protected BatchNode(Class<C> type, BatchOperation operation) {
+		this.operation = operation;
+
+		this.in1 = new NodeInputInterface(type, null);
+		this.in2 = new NodeInputInterface(type, null);
+		this.out = new NodeOutputInterface(type, null);
+
+		this.registerInput("Input1", this.in1);
+		this.registerInput("Input2", this.in2);
+		this.registerOutput("Result", this.out);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public ReturnCode run() {
+		C a = (C) this.in1.getValue();
+		C b = (C) this.in2.getValue();
+		if (a == null || b == null)
+			return ReturnCode.EXCEPTION;
+
+		int n = this.length(a);
+		if (this.length(b) != n)
+			return ReturnCode.EXCEPTION;
+
+		C result;
+		ExecutionContext ctx = ExecutionContext.current();
+		if (ctx != null) {
+			Column<C> column = ctx.getAttachment(this, Column::new);
+			if (column.values == null || this.length(column.values) != n)
+				column.values = this.allocate(a, n);
+			result = column.values;
+		} else {
+			result = this.allocate(a, n);
+		}
+
+		this.apply(this.operation, a, b, result, n);
+		this.out.setValue(result);
+		return ReturnCode.SUCCESS;
+	}
+
+	/**
+	 * Returns the number of elements of the column.
+	 */
+	protected abstract int length(C column);
+
+	/**
+	 * Creates a column for n results, like the given one.
+	 */
+	protected abstract C allocate(C like, int n);
+
+	/**
+	 * Applies the operation to the first n elements.
+	 */
+	protected abstract void apply(BatchOperation operation, C a, C b, C result, int n);
+
+	public BatchOperation getOperation() {
+		return this.operation;
+	}
+
+	public NodeInputInterface getInput1() {
+		return this.in1;
+	}
+
+	public NodeInputInterface getInput2() {
+		return this.in2;
+	}
+
+	public NodeOutputInterface getResult() {
+		return this.out;
+	}
+
+	/**
+	 * The result column of one {@link ExecutionContext}.
+	 */
+	private static final class Column<C> {
+		C values;
+
+		Column(Object owner) {
+		}
+	}
+
+}
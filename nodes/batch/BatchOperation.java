@@ -0,0 +1,143 @@
+package nodes.batch;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * The element-wise operations of the batch {@link nodes.Node}s.
+ *
+ * Every operation is a plain counted loop over the arrays without calls or
+ * branches in its body, so the JIT compiler can unroll it and use SIMD
+ * instructions for it. The operation is chosen once per batch, not per
+ * element.
+ */
+public enum BatchOperation {
+	ADD, SUBTRACT, MULTIPLY, MIN, MAX;
+
+	/**
+	 * Computes result[i] = a[i] op b[i] for all i < n.
+	 *
+	 * @param a
+	 *            the left operands
+	 * @param b
+	 *            the right operands
+	 * @param result
+	 *            the array the results are written to, may be a or b
+	 * @param n
+	 *            the number of elements
+	 */
+	public void apply(int[] a, int[] b, int[] result, int n) {
+		switch (this) {
+		case ADD:
+			for (int i = 0; i < n; ++i)
+				result[i] = a[i] + b[i];
+			break;
+		case SUBTRACT:
+			for (int i = 0; i < n; ++i)
+				result[i] = a[i] - b[i];
+			break;
+		case MULTIPLY:
+			for (int i = 0; i < n; ++i)
+				result[i] = a[i] * b[i];
+			break;
+		case MIN:
+			for (int i = 0; i < n; ++i)
+				result[i] = Math.min(a[i], b[i]);
+			break;
+		case MAX:
+			for (int i = 0; i < n; ++i)
+				result[i] = Math.max(a[i], b[i]);
+			break;
+		default:
+			assert(false);
+		}
+	}
+
+	/**
+	 * Computes result[i] = a[i] op b[i] for all i < n.
+	 *
+	 * @param a
+	 *            the left operands
+	 * @param b
+	 *            the right operands
+	 * @param result
+	 *            the array the results are written to, may be a or b
+	 * @param n
+	 *            the number of elements
+	 */
+	public void apply(double[] a, double[] b, double[] result, int n) {
+		switch (this) {
+		case ADD:
+			for (int i = 0; i < n; ++i)
+				result[i] = a[i] + b[i];
+			break;
+		case SUBTRACT:
+			for (int i = 0; i < n; ++i)
+				result[i] = a[i] - b[i];
+			break;
+		case MULTIPLY:
+			for (int i = 0; i < n; ++i)
+				result[i] = a[i] * b[i];
+			break;
+		case MIN:
+			for (int i = 0; i < n; ++i)
+				result[i] = Math.min(a[i], b[i]);
+			break;
+		case MAX:
+			for (int i = 0; i < n; ++i)
+				result[i] = Math.max(a[i], b[i]);
+			break;
+		default:
+			assert(false);
+		}
+	}
+
+	/**
+	 * Computes the operation for the remaining elements of the buffers,
+	 * starting at their positions. The positions are not changed. Buffers
+	 * that are backed by arrays are processed like arrays, others (e.g.
+	 * direct buffers) with absolute get() and put().
+	 *
+	 * @param a
+	 *            the left operands
+	 * @param b
+	 *            the right operands
+	 * @param result
+	 *            the buffer the results are written to, may be a or b
+	 * @param n
+	 *            the number of elements
+	 */
+	public void apply(DoubleBuffer a, DoubleBuffer b, DoubleBuffer result, int n) {
+		if (a.hasArray() && b.hasArray() && result.hasArray() && a.arrayOffset() + a.position() == 0
+				&& b.arrayOffset() + b.position() == 0 && result.arrayOffset() + result.position() == 0) {
+			this.apply(a.array(), b.array(), result.array(), n);
+			return;
+		}
+
+		int pa = a.position(), pb = b.position(), pr = result.position();
+		switch (this) {
+		case ADD:
+			for (int i = 0; i < n; ++i)
+				result.put(pr + i, a.get(pa + i) + b.get(pb + i));
+			break;
+		case SUBTRACT:
+			for (int i = 0; i < n; ++i)
+				result.put(pr + i, a.get(pa + i) - b.get(pb + i));
+			break;
+		case MULTIPLY:
+			for (int i = 0; i < n; ++i)
+				result.put(pr + i, a.get(pa + i) * b.get(pb + i));
+			break;
+		case MIN:
+			for (int i = 0; i < n; ++i)
+				result.put(pr + i, Math.min(a.get(pa + i), b.get(pb + i)));
+			break;
+		case MAX:
+			for (int i = 0; i < n; ++i)
+				result.put(pr + i, Math.max(a.get(pa + i), b.get(pb + i)));
+			break;
+		default:
+			assert(false);
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+package nodes.batch;
+
+/**
+ * The reductions of the batch {@link nodes.Node}s, which combine all elements
+ * of a column into one value.
+ *
+ * Like {@link BatchOperation} they are plain loops the JIT compiler can
+ * unroll. Sums of <code>double</code> values are computed with four partial
+ * sums, since the additions could not overlap otherwise, so their rounding
+ * may differ slightly from a sum in index order.
+ */
+public enum BatchReduction {
+	SUM, MIN, MAX;
+
+	/**
+	 * Reduces the first n elements. The sum is computed without overflow, the
+	 * minimum and maximum of no elements are {@link Integer#MAX_VALUE} and
+	 * {@link Integer#MIN_VALUE}.
+	 */
+	public long apply(int[] a, int n) {
+		switch (this) {
+		case SUM: {
+			long s = 0;
+			for (int i = 0; i < n; ++i)
+				s += a[i];
+			return s;
+		}
+		case MIN: {
+			int m = Integer.MAX_VALUE;
+			for (int i = 0; i < n; ++i)
+				m = Math.min(m, a[i]);
+			return m;
+		}
+		case MAX: {
+			int m = Integer.MIN_VALUE;
+			for (int i = 0; i < n; ++i)
+				m = Math.max(m, a[i]);
+			return m;
+		}
+		default:
+			assert(false);
+			return 0;
+		}
+	}
+
+	/**
+	 * Reduces the first n elements. The minimum and maximum of no elements
+	 * are positive and negative infinity.
+	 */
+	public double apply(double[] a, int n) {
+		switch (this) {
+		case SUM: {
+			double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+			int i = 0;
+			for (; i + 3 < n; i += 4) {
+				s0 += a[i];
+				s1 += a[i + 1];
+				s2 += a[i + 2];
+				s3 += a[i + 3];
+			}
+			for (; i < n; ++i)
+				s0 += a[i];
+			return (s0 + s1) + (s2 + s3);
+		}
+		case MIN: {
+			double m = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < n; ++i)
+				m = Math.min(m, a[i]);
+			return m;
+		}
+		case MAX: {
+			double m = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < n; ++i)
+				m = Math.max(m, a[i]);
+			return m;
+		}
+		default:
+			assert(false);
+			return 0;
+		}
+	}
+
+}
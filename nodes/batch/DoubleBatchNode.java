@@ -0,0 +1,27 @@
+package nodes.batch;
+
+/**
+ * A {@link BatchNode} for columns of <code>double</code> values.
+ */
+public class DoubleBatchNode extends BatchNode<double[]> {
+
+	public DoubleBatchNode(BatchOperation operation) {
+		super(double[].class, operation);
+	}
+
+	@Override
+	protected int length(double[] column) {
+		return column.length;
+	}
+
+	@Override
+	protected double[] allocate(double[] like, int n) {
+		return new double[n];
+	}
+
+	@Override
+	protected void apply(BatchOperation operation, double[] a, double[] b, double[] result, int n) {
+		operation.apply(a, b, result, n);
+	}
+
+}
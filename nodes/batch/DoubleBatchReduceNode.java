@@ -0,0 +1,53 @@
+package nodes.batch;
+
+import nodes.DoubleOutputInterface;
+import nodes.Node;
+import nodes.NodeInputInterface;
+import nodes.ReturnCode;
+
+/**
+ * A {@link DoubleBatchReduceNode} reduces the <code>double</code> column of
+ * its input "Input" with a {@link BatchReduction} and writes the result to
+ * the output "Result" without boxing. The run returns
+ * {@link ReturnCode#EXCEPTION} if the column is missing.
+ */
+public class DoubleBatchReduceNode extends Node {
+
+	private final BatchReduction reduction;
+
+	private final NodeInputInterface in;
+	private final DoubleOutputInterface out;
+
+	public DoubleBatchReduceNode(BatchReduction reduction) {
+		this.reduction = reduction;
+
+		this.in = new NodeInputInterface(double[].class, null);
+		this.out = new DoubleOutputInterface(0);
+
+		this.registerInput("Input", this.in);
+		this.registerOutput("Result", this.out);
+	}
+
+	@Override
+	public ReturnCode run() {
+		double[] a = (double[]) this.in.getValue();
+		if (a == null)
+			return ReturnCode.EXCEPTION;
+
+		this.out.setDouble(this.reduction.apply(a, a.length));
+		return ReturnCode.SUCCESS;
+	}
+
+	public BatchReduction getReduction() {
+		return this.reduction;
+	}
+
+	public NodeInputInterface getInput() {
+		return this.in;
+	}
+
+	public DoubleOutputInterface getResult() {
+		return this.out;
+	}
+
+}
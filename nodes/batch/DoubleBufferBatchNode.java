@@ -0,0 +1,41 @@
+package nodes.batch;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+/**
+ * A {@link BatchNode} for columns of <code>double</code> values that are
+ * stored in {@link DoubleBuffer}s, e.g. direct buffers outside of the heap.
+ * A column consists of the remaining elements of the buffer, the positions
+ * are not changed.
+ *
+ * New result columns are direct buffers in native byte order if the first
+ * column is direct. Since allocating direct memory is expensive, such a
+ * {@link BatchNode} should run within a context that is reused (see
+ * {@link BatchNode}).
+ */
+public class DoubleBufferBatchNode extends BatchNode<DoubleBuffer> {
+
+	public DoubleBufferBatchNode(BatchOperation operation) {
+		super(DoubleBuffer.class, operation);
+	}
+
+	@Override
+	protected int length(DoubleBuffer column) {
+		return column.remaining();
+	}
+
+	@Override
+	protected DoubleBuffer allocate(DoubleBuffer like, int n) {
+		if (like.isDirect())
+			return ByteBuffer.allocateDirect(n * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+		return DoubleBuffer.allocate(n);
+	}
+
+	@Override
+	protected void apply(BatchOperation operation, DoubleBuffer a, DoubleBuffer b, DoubleBuffer result, int n) {
+		operation.apply(a, b, result, n);
+	}
+
+}
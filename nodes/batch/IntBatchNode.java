@@ -0,0 +1,27 @@
+package nodes.batch;
+
+/**
+ * A {@link BatchNode} for columns of <code>int</code> values.
+ */
+public class IntBatchNode extends BatchNode<int[]> {
+
+	public IntBatchNode(BatchOperation operation) {
+		super(int[].class, operation);
+	}
+
+	@Override
+	protected int length(int[] column) {
+		return column.length;
+	}
+
+	@Override
+	protected int[] allocate(int[] like, int n) {
+		return new int[n];
+	}
+
+	@Override
+	protected void apply(BatchOperation operation, int[] a, int[] b, int[] result, int n) {
+		operation.apply(a, b, result, n);
+	}
+
+}
@@ -0,0 +1,53 @@
+package nodes.batch;
+
+import nodes.LongOutputInterface;
+import nodes.Node;
+import nodes.NodeInputInterface;
+import nodes.ReturnCode;
+
+/**
+ * An {@link IntBatchReduceNode} reduces the <code>int</code> column of its
+ * input "Input" with a {@link BatchReduction} and writes the result to the
+ * output "Result" without boxing. The run returns
+ * {@link ReturnCode#EXCEPTION} if the column is missing.
+ */
+public class IntBatchReduceNode extends Node {
+
+	private final BatchReduction reduction;
+
+	private final NodeInputInterface in;
+	private final LongOutputInterface out;
+
+	public IntBatchReduceNode(BatchReduction reduction) {
+		this.reduction = reduction;
+
+		this.in = new NodeInputInterface(int[].class, null);
+		this.out = new LongOutputInterface(0);
+
+		this.registerInput("Input", this.in);
+		this.registerOutput("Result", this.out);
+	}
+
+	@Override
+	public ReturnCode run() {
+		int[] a = (int[]) this.in.getValue();
+		if (a == null)
+			return ReturnCode.EXCEPTION;
+
+		this.out.setLong(this.reduction.apply(a, a.length));
+		return ReturnCode.SUCCESS;
+	}
+
+	public BatchReduction getReduction() {
+		return this.reduction;
+	}
+
+	public NodeInputInterface getInput() {
+		return this.in;
+	}
+
+	public LongOutputInterface getResult() {
+		return this.out;
+	}
+
+}
@@ -1,21 +1,45 @@
 package nodes.compositor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
-
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import nodes.ExecutionContext;
 import nodes.Node;
 import nodes.NodeInputInterface;
 import nodes.NodeInterface;
+import nodes.NodeMetrics;
 import nodes.NodeOutputInterface;
 import nodes.ReturnCode;
+import nodes.SinkNode;
+import nodes.SlotLayout;
+import nodes.SourceNode;
+import nodes.signals.NodeSignalInputInterface;
 import nodes.signals.Signal;
 import nodes.signals.SignalInputInterface;
 import nodes.signals.SignalOutputInterface;
 import nodes.signals.SignalSyncronizer;
+import nodes.signals.scheduler.SignalScheduler;
 import utils.Logging;
 import utils.Logging.LogLevel;
 
@@ -24,7 +48,26 @@ import utils.Logging.LogLevel;
  * In other words: Its a {@link Node} with a workflow that is specified by other
  * {@link Node}s.
  * 
- * HC: destroy() must be called at the end of this objects life cycle.
+ * Runs started with submit() get their own {@link ExecutionContext}, so one
+ * {@link Compositor} can process many runs concurrently.
+ * 
+ * In {@link ExecutionMode#FORK_JOIN} the graph is compiled and every run is
+ * executed by the {@link ExecutionPlan} on a {@link ForkJoinPool} instead of
+ * passing {@link Signal}s between the {@link Node}s. In
+ * {@link ExecutionMode#INCREMENTAL} the pure {@link Node}s whose inputs did
+ * not change since the last run are skipped.
+ * 
+ * Only a compiled plan flattens nested {@link Compositor}s: it runs their
+ * {@link Node}s as its own steps and lets every input read the real source of
+ * its value behind their interfaces. When {@link Signal}s are passed instead,
+ * a nested {@link Compositor} still copies the values of all inner outputs to
+ * its outputs whenever a {@link Signal} reaches its end.
+ * 
+ * HC: destroy(), shutdown() or shutdownNow() must be called at the end of this
+ * objects life cycle. shutdown() lets all {@link Signal}s that are in flight
+ * reach their end and awaitTermination() waits for that. The threads belong to
+ * the {@link SignalScheduler}s, which may be shared, so they are shut down
+ * separately.
  * 
  * @author Roland Wallner
  * 
@@ -36,6 +79,12 @@ public class Compositor extends Node {
 	 */
 	private ArrayList<Node> nodes;
 
+	/**
+	 * The index of each managed {@link Node} in nodes, so membership is
+	 * checked and {@link Node}s are removed in constant time.
+	 */
+	private IdentityHashMap<Node, Integer> nodeIndex;
+
 	/**
 	 * Syncronizers that are used by this {@link Compositor}
 	 */
@@ -71,8 +120,66 @@ public class Compositor extends Node {
 	 */
 	private CompositorFinishedCallback endCallback = null;
 
+	/**
+	 * The {@link SignalScheduler} every managed {@link Node} is bound to.
+	 * <code>null</code> means, that each {@link Node} keeps its own scheduler.
+	 */
+	private SignalScheduler scheduler = null;
+
+	/**
+	 * The futures of all runs started by submit() that have not reached the
+	 * end or the exception receiver yet.
+	 */
+	private ConcurrentHashMap<ExecutionContext, CompletableFuture<ReturnCode>> pendingRuns;
+
+	/**
+	 * The plan used in {@link ExecutionMode#FORK_JOIN} and
+	 * {@link ExecutionMode#INCREMENTAL}, <code>null</code> in the other modes.
+	 */
+	private volatile ExecutionPlan plan = null;
+
+	private volatile ExecutionMode mode = ExecutionMode.SIGNALS;
+
+	/**
+	 * The pool the plan runs on in {@link ExecutionMode#FORK_JOIN},
+	 * <code>null</code> for the shared pool.
+	 */
+	private volatile ForkJoinPool forkJoinPool = null;
+
+	/**
+	 * The number of runs that are currently executed by the plan.
+	 */
+	private final AtomicInteger activeRuns = new AtomicInteger();
+
+	private volatile boolean shutdown = false;
+
+	/**
+	 * Set by the thread that terminates this {@link Compositor}.
+	 */
+	private final AtomicBoolean terminating = new AtomicBoolean();
+
+	private final CountDownLatch terminated = new CountDownLatch(1);
+
+	/**
+	 * The idle listener that is added by shutdown(), once.
+	 */
+	private final Runnable terminator = this::tryTerminate;
+	private final AtomicBoolean listening = new AtomicBoolean();
+
+	/**
+	 * Abort the {@link Stream}s of stream() that are open when this
+	 * {@link Compositor} is shut down.
+	 */
+	private final List<Runnable> streamAborts = new CopyOnWriteArrayList<>();
+
+	/**
+	 * The number of elements stream(Stream) keeps in flight.
+	 */
+	public static final int DEFAULT_STREAM_WINDOW = 256;
+
 	public Compositor() {
 		this.nodes = new ArrayList<>();
+		this.nodeIndex = new IdentityHashMap<>();
 		this.start = new SignalOutputInterface();
 		this.end = new CompositorEndSignalReciever();
 		this.exception = new CompositorExceptionSignalReciever();
@@ -81,6 +188,7 @@ public class Compositor extends Node {
 		this.innerOutputs = new HashMap<>();
 
 		this.syncronizerList = new LinkedList<>();
+		this.pendingRuns = new ConcurrentHashMap<>();
 	}
 
 	/**
@@ -93,16 +201,39 @@ public class Compositor extends Node {
 	 *             in this {@link Compositor}
 	 */
 	public void addNode(Node n) {
-		if (this.nodes.contains(n))
+		if (this.nodeIndex.containsKey(n))
 			throw new IllegalArgumentException("Node is already registered to the compositor.");
 
+		if (this.scheduler != null)
+			n.setScheduler(this.scheduler);
+		if (this.mode == ExecutionMode.INLINE)
+			n.setInlineExecution(true);
+
+		this.nodeIndex.put(n, this.nodes.size());
 		this.nodes.add(n);
 	}
 
+	/**
+	 * Makes room for the given number of additional {@link Node}s, so adding
+	 * many {@link Node}s (like loading a stored graph) does not grow the
+	 * tables of this {@link Compositor} step by step.
+	 * 
+	 * @param count
+	 *            the number of {@link Node}s that will be added
+	 */
+	public void ensureCapacity(int count) {
+		int size = this.nodes.size() + count;
+		this.nodes.ensureCapacity(size);
+		IdentityHashMap<Node, Integer> index = new IdentityHashMap<>(size);
+		index.putAll(this.nodeIndex);
+		this.nodeIndex = index;
+	}
+
 	/**
 	 * This method removes a {@link Node} from this {@link Compositor}
 	 * 
-	 * Attention: This method calles destroy() on the {@link Node}!
+	 * Attention: This method calles destroy() on the {@link Node}! The last
+	 * {@link Node} takes the place of the removed one in getNodes().
 	 * 
 	 * @param n
 	 * 
@@ -111,11 +242,17 @@ public class Compositor extends Node {
 	 *             {@link Compositor}
 	 */
 	public void removeNode(Node n) {
-		if (this.nodes.remove(n)) {
-			n.destroy();
-		} else {
+		Integer index = this.nodeIndex.remove(n);
+		if (index == null) {
 			throw new IllegalArgumentException("Node is not registered to this compositor.");
 		}
+
+		Node last = this.nodes.remove(this.nodes.size() - 1);
+		if (last != n) {
+			this.nodes.set(index, last);
+			this.nodeIndex.put(last, index);
+		}
+		n.destroy();
 	}
 
 	public List<Node> getNodes() {
@@ -141,7 +278,7 @@ public class Compositor extends Node {
 	 *             </ul>
 	 */
 	public void addEdge(Node out, String oName, Node in, String iName) {
-		if (!(this.nodes.contains(out) && this.nodes.contains(in))) {
+		if (!(this.nodeIndex.containsKey(out) && this.nodeIndex.containsKey(in))) {
 			throw new IllegalArgumentException("A node is not owned by this compositor!");
 		}
 
@@ -157,6 +294,103 @@ public class Compositor extends Node {
 		input.setConnection(output);
 	}
 
+	/**
+	 * Adds all edges collected by the given {@link EdgeBuilder}. All edges
+	 * are validated before the first one is connected, so either all or none
+	 * of them are added.
+	 * 
+	 * @param edges
+	 *            the edges
+	 * @throws IllegalArgumentException
+	 *             in case of:
+	 *             <ul>
+	 *             <li>One of the {@link Node}s is not part of this
+	 *             {@link Compositor}</li>
+	 *             <li>The type of an output does not match its input</li>
+	 *             </ul>
+	 */
+	public void addEdges(EdgeBuilder edges) {
+		for (int i = 0; i < edges.size; ++i) {
+			if (!(this.nodeIndex.containsKey(edges.outNodes[i]) && this.nodeIndex.containsKey(edges.inNodes[i]))) {
+				throw new IllegalArgumentException("A node is not owned by this compositor!");
+			}
+			if (!edges.inputs[i].getType().isAssignableFrom(edges.outputs[i].getType())) {
+				throw new IllegalArgumentException("Type mismatch");
+			}
+		}
+
+		for (int i = 0; i < edges.size; ++i) {
+			edges.inputs[i].setConnection(edges.outputs[i]);
+		}
+	}
+
+	/**
+	 * Collects data edges for addEdges(). The interfaces are looked up when
+	 * an edge is added.
+	 */
+	public static class EdgeBuilder {
+		private Node[] outNodes, inNodes;
+		private NodeOutputInterface[] outputs;
+		private NodeInputInterface[] inputs;
+		private int size = 0;
+
+		public EdgeBuilder() {
+			this(16);
+		}
+
+		/**
+		 * @param capacity
+		 *            the expected number of edges
+		 */
+		public EdgeBuilder(int capacity) {
+			capacity = Math.max(capacity, 1);
+			this.outNodes = new Node[capacity];
+			this.inNodes = new Node[capacity];
+			this.outputs = new NodeOutputInterface[capacity];
+			this.inputs = new NodeInputInterface[capacity];
+		}
+
+		/**
+		 * Adds an edge from the output oName of out to the input iName of in.
+		 * 
+		 * @return this builder
+		 * @throws IllegalArgumentException
+		 *             if one of the interfaces cannot be found
+		 */
+		public EdgeBuilder add(Node out, String oName, Node in, String iName) {
+			NodeInputInterface input = in.getInput(iName);
+			if (input == null) {
+				throw new IllegalArgumentException("InputInterface not found!");
+			}
+
+			NodeOutputInterface output = out.getOutput(oName);
+			if (output == null) {
+				throw new IllegalArgumentException("OutputInterface not found!");
+			}
+
+			if (this.size == this.inputs.length) {
+				int capacity = this.size * 2;
+				this.outNodes = Arrays.copyOf(this.outNodes, capacity);
+				this.inNodes = Arrays.copyOf(this.inNodes, capacity);
+				this.outputs = Arrays.copyOf(this.outputs, capacity);
+				this.inputs = Arrays.copyOf(this.inputs, capacity);
+			}
+			this.outNodes[this.size] = out;
+			this.inNodes[this.size] = in;
+			this.outputs[this.size] = output;
+			this.inputs[this.size] = input;
+			this.size++;
+			return this;
+		}
+
+		/**
+		 * Returns the number of collected edges.
+		 */
+		public int size() {
+			return this.size;
+		}
+	}
+
 	public void addSyncronizer(SignalSyncronizer sync) {
 		this.syncronizerList.add(sync);
 	}
@@ -179,6 +413,78 @@ public class Compositor extends Node {
 		return this.syncronizerList;
 	}
 
+	/**
+	 * Returns a snapshot of the metrics of all {@link Node}s of this
+	 * {@link Compositor}, aggregated recursively over nested
+	 * {@link Compositor}s. The metrics are only recorded while
+	 * {@link NodeMetrics#setEnabled(boolean)} is on, which it is not by
+	 * default.
+	 */
+	public CompositorMetrics metrics() {
+		return new CompositorMetrics(this);
+	}
+
+	/**
+	 * Compiles the current graph of this {@link Compositor} into an
+	 * {@link ExecutionPlan}. The plan must be compiled again after the graph
+	 * was changed, while no run of the previous plan is in flight: the new
+	 * plan binds the interfaces to its own frames (see {@link SlotLayout}).
+	 * 
+	 * @return the plan
+	 * @throws IllegalStateException
+	 *             if the graph cannot be compiled (see {@link ExecutionPlan})
+	 */
+	public ExecutionPlan compile() {
+		return new ExecutionPlan(this);
+	}
+
+	/**
+	 * Selects how the runs of this {@link Compositor} are executed. Switching
+	 * to {@link ExecutionMode#FORK_JOIN} or {@link ExecutionMode#INCREMENTAL}
+	 * compiles the current graph, so it must be selected again after the graph
+	 * was changed.
+	 * {@link ExecutionMode#INLINE} enables inline execution on all managed
+	 * {@link Node}s, the other modes disable it.
+	 * 
+	 * @param mode
+	 *            the new mode
+	 * @throws IllegalStateException
+	 *             if the graph cannot be compiled (see {@link ExecutionPlan})
+	 */
+	public void setExecutionMode(ExecutionMode mode) {
+		if (mode == ExecutionMode.FORK_JOIN || mode == ExecutionMode.INCREMENTAL) {
+			this.plan = this.compile();
+		} else {
+			this.plan = null;
+		}
+
+		for (Node n : this.nodes) {
+			n.setInlineExecution(mode == ExecutionMode.INLINE);
+		}
+		this.mode = mode;
+	}
+
+	public ExecutionMode getExecutionMode() {
+		return this.mode;
+	}
+
+	/**
+	 * Returns the plan used in {@link ExecutionMode#FORK_JOIN} and
+	 * {@link ExecutionMode#INCREMENTAL}, <code>null</code> in the other modes.
+	 */
+	public ExecutionPlan getExecutionPlan() {
+		return this.plan;
+	}
+
+	/**
+	 * Sets the pool used in {@link ExecutionMode#FORK_JOIN}.
+	 * <code>null</code> selects a shared pool with one worker per available
+	 * processor.
+	 */
+	public void setForkJoinPool(ForkJoinPool pool) {
+		this.forkJoinPool = pool;
+	}
+
 	/**
 	 * This method returns the inner start interface that sends a {@link Signal}
 	 * when the whole {@link Compositor} receives a {@link Signal}.
@@ -239,30 +545,566 @@ public class Compositor extends Node {
 
 	/**
 	 * This method should be used to start the program flow in this
-	 * {@link Compositor}.
+	 * {@link Compositor}. The run belongs to the current
+	 * {@link ExecutionContext}.
 	 */
 	public void start() {
-		this.getSignalStart().passSignal(new Signal());
-		Logging.log(LogLevel.INFO, "Started compositor", this.toString());
+		this.start(new Signal(ExecutionContext.current()));
+	}
+
+	/**
+	 * Starts the program flow with the given {@link Signal}. Its attributes
+	 * travel through the graph and the {@link Signal} that reaches the end
+	 * receiver is passed on by this {@link Compositor}.
+	 * 
+	 * @param s
+	 *            the {@link Signal} that is passed to the first {@link Node}s
+	 */
+	public void start(Signal s) {
+		if (this.shutdown) {
+			Logging.logf(LogLevel.INFO, this.toString(), "Token ({}) lost", s);
+			return;
+		}
+		this.startRun(s);
+		if (Logging.isEnabled(LogLevel.INFO))
+			Logging.log(LogLevel.INFO, "Started compositor", this.toString());
+	}
+
+	/**
+	 * Starts the program flow in this {@link Compositor} within a new
+	 * {@link ExecutionContext} and returns a future for the run.
+	 * 
+	 * The future is completed with {@link ReturnCode#SUCCESS} when a
+	 * {@link Signal} reaches the end receiver and with
+	 * {@link ReturnCode#EXCEPTION} when a {@link Signal} reaches the inner
+	 * exception receiver. A run whose {@link Signal} is kept by a {@link Node}
+	 * never completes.
+	 * 
+	 * @return the future of this run
+	 */
+	public CompletableFuture<ReturnCode> submit() {
+		return this.submit(new ExecutionContext());
+	}
+
+	/**
+	 * Starts the program flow in this {@link Compositor} within the given
+	 * {@link ExecutionContext} and returns a future for the run. After the run
+	 * the values of the outputs can be read from the context.
+	 * 
+	 * @param ctx
+	 *            a context that is not used by any other run
+	 * @return the future of this run
+	 * @throws IllegalArgumentException
+	 *             if a run with this context is already pending
+	 * @throws IllegalStateException
+	 *             if the {@link Compositor} is shut down
+	 */
+	public CompletableFuture<ReturnCode> submit(ExecutionContext ctx) {
+		if (this.shutdown)
+			throw new IllegalStateException("The compositor is shut down.");
+
+		CompletableFuture<ReturnCode> f = new CompletableFuture<>();
+		if (this.pendingRuns.putIfAbsent(ctx, f) != null) {
+			throw new IllegalArgumentException(ctx + " is already running.");
+		}
+		this.startRun(new Signal(ctx));
+		return f;
+	}
+
+	/**
+	 * Starts a run in the current {@link ExecutionMode}. If the run is
+	 * executed by the plan, its result is passed to the end or the exception
+	 * receiver, as if the {@link Signal} had reached it.
+	 */
+	private void startRun(Signal s) {
+		ExecutionPlan plan = this.plan;
+		if (plan == null) {
+			if (this.mode == ExecutionMode.INLINE)
+				this.getSignalStart().passSignalInline(s);
+			else
+				this.getSignalStart().passSignal(s);
+			return;
+		}
+
+		ExecutionContext ctx = s.getContext();
+		this.activeRuns.incrementAndGet();
+		if (this.mode == ExecutionMode.INCREMENTAL) {
+			ReturnCode ret = null;
+			ExecutionContext prev = ExecutionContext.enter(ctx);
+			try {
+				ret = plan.executeIncremental();
+			} catch (RuntimeException e) {
+				Logging.logf(LogLevel.SEVERE, this.toString(), "Node failed: {}", e);
+			} finally {
+				ExecutionContext.restore(prev);
+			}
+			this.runFinished(s, ret);
+			return;
+		}
+
+		ForkJoinPool pool = this.forkJoinPool;
+		CompletableFuture<ReturnCode> f;
+		try {
+			f = pool == null ? plan.fork(ctx, ExecutionPlan.defaultPool()) : plan.fork(ctx, pool);
+		} catch (RuntimeException e) {
+			this.runFinished(s, null);
+			throw e;
+		}
+		f.whenComplete((ret, e) -> {
+			if (e != null) {
+				Logging.logf(LogLevel.SEVERE, this.toString(), "Node failed: {}", e);
+			}
+			this.runFinished(s, ret);
+		});
+	}
+
+	/**
+	 * Called after a run of the plan, ret is <code>null</code> if it failed.
+	 */
+	private void runFinished(Signal s, ReturnCode ret) {
+		try {
+			if (ret != null)
+				this.finishRun(s, ret);
+		} finally {
+			if (this.activeRuns.decrementAndGet() == 0 && this.shutdown)
+				this.tryTerminate();
+		}
+	}
+
+	/**
+	 * Passes the result of a run of the plan to the end or the exception
+	 * receiver.
+	 */
+	private void finishRun(Signal s, ReturnCode ret) {
+		if (ret == ReturnCode.SUCCESS) {
+			this.end.sendSignal(s);
+		} else if (ret == ReturnCode.EXCEPTION) {
+			this.exception.sendSignal(s);
+		}
+	}
+
+	/**
+	 * Starts the program flow in this {@link Compositor} and waits until it
+	 * reaches the end or the exception receiver.
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait
+	 * @param unit
+	 *            the unit of the timeout
+	 * @return {@link ReturnCode#SUCCESS} or {@link ReturnCode#EXCEPTION}
+	 * @throws InterruptedException
+	 *             if the current thread was interrupted while waiting
+	 * @throws TimeoutException
+	 *             if the run did not finish in time
+	 */
+	public ReturnCode runAndAwait(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+		return this.runAndAwait(new ExecutionContext(), timeout, unit);
+	}
+
+	/**
+	 * Like runAndAwait(long, TimeUnit), but the run uses the given
+	 * {@link ExecutionContext}.
+	 * 
+	 * @param ctx
+	 *            a context that is not used by any other run
+	 * @param timeout
+	 *            the maximum time to wait
+	 * @param unit
+	 *            the unit of the timeout
+	 * @return {@link ReturnCode#SUCCESS} or {@link ReturnCode#EXCEPTION}
+	 * @throws InterruptedException
+	 *             if the current thread was interrupted while waiting
+	 * @throws TimeoutException
+	 *             if the run did not finish in time
+	 */
+	public ReturnCode runAndAwait(ExecutionContext ctx, long timeout, TimeUnit unit)
+			throws InterruptedException, TimeoutException {
+		CompletableFuture<ReturnCode> f = this.submit(ctx);
+		try {
+			return f.get(timeout, unit);
+		} catch (TimeoutException e) {
+			this.pendingRuns.remove(ctx, f);
+			throw e;
+		} catch (ExecutionException e) {
+			// the future is never completed exceptionally
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Streams the given elements through this {@link Compositor}, which must
+	 * have exactly one input and one output, and returns the values of the
+	 * output in the order of the elements. See stream(Stream, String, String,
+	 * int).
+	 * 
+	 * @param elements
+	 *            the values of the input
+	 * @return the values of the output
+	 * @throws IllegalStateException
+	 *             if the {@link Compositor} has not exactly one input and one
+	 *             output or is shut down
+	 */
+	public <O> Stream<O> stream(Stream<?> elements) {
+		if (this.getInputs().size() != 1 || this.getOutputs().size() != 1)
+			throw new IllegalStateException("The compositor needs exactly one input and one output.");
+
+		return this.stream(elements, this.getInputs().keySet().iterator().next(),
+				this.getOutputs().keySet().iterator().next(), DEFAULT_STREAM_WINDOW);
+	}
+
+	/**
+	 * Streams the given elements through this {@link Compositor}: every
+	 * element is written to the given input and runs through the graph in an
+	 * {@link ExecutionContext} of its own. The returned {@link Stream} yields
+	 * the value of the given output for every element, in the order of the
+	 * elements. Elements whose run reaches the exception receiver are
+	 * skipped.
+	 * 
+	 * The elements are pulled lazily: at most window of them are in the graph
+	 * or wait to be read from the returned {@link Stream}. While the returned
+	 * {@link Stream} is open, the input and the signal and exception outputs
+	 * of this {@link Compositor} are connected to it, closing it restores the
+	 * previous connections.
+	 * 
+	 * If the {@link Compositor} is shut down while the {@link Stream} is open,
+	 * the {@link Stream} stops waiting for elements and throws an
+	 * {@link IllegalStateException}.
+	 * 
+	 * @param elements
+	 *            the values of the input
+	 * @param inputName
+	 *            the input the elements are written to
+	 * @param outputName
+	 *            the output that is read
+	 * @param window
+	 *            the maximum number of elements in flight (>= 1)
+	 * @return the values of the output, has to be closed
+	 * @throws IllegalArgumentException
+	 *             if the input or the output cannot be found or window is less
+	 *             than 1
+	 * @throws IllegalStateException
+	 *             if the {@link Compositor} is shut down
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public <O> Stream<O> stream(Stream<?> elements, String inputName, String outputName, int window) {
+		NodeInputInterface input = this.getInput(inputName);
+		if (input == null)
+			throw new IllegalArgumentException("InputInterface not found!");
+		NodeOutputInterface output = this.getOutput(outputName);
+		if (output == null)
+			throw new IllegalArgumentException("OutputInterface not found!");
+
+		SourceNode<?> source = new SourceNode(input.getType(), elements, window);
+		SinkNode<O> sink = new SinkNode(output.getType());
+		sink.setSource(source);
+		if (this.scheduler != null) {
+			source.setScheduler(this.scheduler);
+			sink.setScheduler(this.scheduler);
+		}
+
+		// registered before the check, so shutdown() either sees it or is
+		// seen by the check
+		AtomicBoolean aborted = new AtomicBoolean();
+		Runnable abort = () -> {
+			aborted.set(true);
+			sink.destroy();
+		};
+		this.streamAborts.add(abort);
+		if (this.shutdown) {
+			this.streamAborts.remove(abort);
+			throw new IllegalStateException("The compositor is shut down.");
+		}
+
+		NodeOutputInterface prevSource = input.getSource();
+		SignalInputInterface prevTarget = this.getSignalOutput().getTarget();
+		SignalInputInterface prevExceptionTarget = this.getExceptionOutput().getTarget();
+
+		input.setConnection(source.getOutput());
+		sink.getInput().setConnection(output);
+		source.getSignalOutput().setConnection(this.getSignalInput());
+		this.getSignalOutput().setConnection(sink.getSignalInput());
+		this.getExceptionOutput().setConnection(sink.getFailureInput());
+
+		source.getSignalInput().sendSignal(new Signal());
+
+		Iterator<O> elementsOut = sink.iterator();
+		Iterator<O> checked = new Iterator<O>() {
+			@Override
+			public boolean hasNext() {
+				boolean next = elementsOut.hasNext();
+				if (aborted.get())
+					throw new IllegalStateException("The compositor was shut down.");
+				return next;
+			}
+
+			@Override
+			public O next() {
+				if (!this.hasNext())
+					throw new NoSuchElementException();
+				return elementsOut.next();
+			}
+		};
+
+		Stream<O> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(checked, Spliterator.ORDERED),
+				false);
+		return stream.onClose(() -> {
+			this.streamAborts.remove(abort);
+			source.getSignalOutput().setConnection(null);
+			source.destroy();
+			sink.destroy();
+			input.setConnection(prevSource);
+			this.getSignalOutput().setConnection(prevTarget);
+			this.getExceptionOutput().setConnection(prevExceptionTarget);
+			elements.close();
+		});
+	}
+
+	/**
+	 * Returns a {@link CompositorProcessor} that passes the elements it
+	 * recieves through this {@link Compositor} and honors the demand of its
+	 * subscriber.
+	 * 
+	 * @param inputName
+	 *            the input the elements are written to
+	 * @param outputName
+	 *            the output that is passed to the subscriber
+	 * @param window
+	 *            the maximum number of runs in flight (>= 1)
+	 * @return the new processor, it takes over the connections of this
+	 *         {@link Compositor} from its first subscription until its stream
+	 *         ends
+	 * @throws IllegalArgumentException
+	 *             if the input or the output cannot be found or window is less
+	 *             than 1
+	 */
+	public <I, O> CompositorProcessor<I, O> asProcessor(String inputName, String outputName, int window) {
+		return new CompositorProcessor<>(this, inputName, outputName, window);
+	}
+
+	/**
+	 * Completes the pending run of the given context, if there is one.
+	 */
+	private void completeRun(ExecutionContext ctx, ReturnCode ret) {
+		if (ctx == null)
+			return;
+
+		CompletableFuture<ReturnCode> f = this.pendingRuns.remove(ctx);
+		if (f != null)
+			f.complete(ret);
 	}
 
 	@Override
 	public ReturnCode run() {
-		this.start();
+		Signal s = this.getSignal();
+		this.start(s != null ? s : new Signal(ExecutionContext.current()));
 		return ReturnCode.NOSIGNAL;
 	}
 
 	/**
 	 * stops all Nodes (they cant recieve signals anymore)
+	 * 
+	 * {@link Signal}s that are in flight are lost, runs started by submit()
+	 * that did not finish yet are cancelled.
 	 */
 	@Override
 	public void destroy() {
+		this.shutdown = true;
 		for (Node n : this.nodes) {
 			n.destroy();
 		}
 		this.end.destroy();
 		this.exception.destroy();
 		super.destroy();
+
+		for (CompletableFuture<ReturnCode> f : this.pendingRuns.values()) {
+			f.cancel(false);
+		}
+		this.pendingRuns.clear();
+		this.terminated.countDown();
+	}
+
+	/**
+	 * Starts an orderly shutdown: start() and submit() do not accept new runs
+	 * anymore, but all {@link Signal}s that are already queued or handled by
+	 * the {@link Node}s of this {@link Compositor} (and of nested
+	 * {@link Compositor}s) are still processed. As soon as no {@link Signal}
+	 * is left, the {@link Compositor} is destroyed and awaitTermination()
+	 * returns.
+	 * 
+	 * A {@link Node} that keeps producing {@link Signal}s (e.g. a loop in the
+	 * graph) prevents the termination, use shutdownNow() then.
+	 * 
+	 * The {@link Stream}s of stream() that are still open fail.
+	 */
+	public void shutdown() {
+		this.shutdown = true;
+		this.abortStreams();
+		this.listenIdle();
+		this.tryTerminate();
+	}
+
+	/**
+	 * Stops this {@link Compositor} (and nested {@link Compositor}s) at once.
+	 * No further {@link Signal}s are accepted, {@link Signal}s that are handled
+	 * at the moment are finished, the queued ones are removed and returned.
+	 * Runs started by submit() that did not finish are cancelled and the
+	 * {@link Stream}s of stream() that are still open fail.
+	 * 
+	 * @return the {@link Signal}s that were not delivered, in no particular
+	 *         order
+	 */
+	public List<Signal> shutdownNow() {
+		this.shutdown = true;
+		this.abortStreams();
+		this.listenIdle();
+
+		List<Signal> undelivered = new ArrayList<>();
+		this.closeAll(undelivered);
+		this.tryTerminate();
+		return undelivered;
+	}
+
+	/**
+	 * Waits until this {@link Compositor} terminated after shutdown() or
+	 * shutdownNow().
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait
+	 * @param unit
+	 *            the unit of the timeout
+	 * @return <code>true</code> if the {@link Compositor} terminated,
+	 *         <code>false</code> if the timeout elapsed before
+	 * @throws InterruptedException
+	 *             if the current thread was interrupted while waiting
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return this.terminated.await(timeout, unit);
+	}
+
+	public boolean isShutdown() {
+		return this.shutdown;
+	}
+
+	public boolean isTerminated() {
+		return this.terminated.getCount() == 0;
+	}
+
+	/**
+	 * Destroys this {@link Compositor} if it is shut down and no
+	 * {@link Signal} is left in it.
+	 * 
+	 * The interfaces are checked one after another, so a {@link Signal} could
+	 * move from an unchecked to an already checked interface. That's why they
+	 * are checked twice: if every interface was idle both times and the
+	 * number of handled {@link Signal}s did not change in between, no
+	 * {@link Signal} was left.
+	 * 
+	 * It is called once by shutdown(), after the idle listeners were added,
+	 * which covers the interfaces that never had a {@link Signal}. Every other
+	 * interface calls it when it becomes idle afterwards, so the last one
+	 * that becomes idle terminates this {@link Compositor}.
+	 */
+	private void tryTerminate() {
+		if (!this.shutdown || this.terminating.get())
+			return;
+
+		long[] first = new long[1];
+		if (!this.isIdle(first))
+			return;
+		long[] second = new long[1];
+		if (!this.isIdle(second) || first[0] != second[0])
+			return;
+
+		if (this.terminating.compareAndSet(false, true)) {
+			this.removeIdleListener(this.terminator);
+			this.destroy();
+		}
+	}
+
+	/**
+	 * Checks all {@link Signal} interfaces and plan runs of this
+	 * {@link Compositor} and of nested {@link Compositor}s and adds up the
+	 * number of handled {@link Signal}s.
+	 */
+	private boolean isIdle(long[] handled) {
+		if (this.activeRuns.get() != 0)
+			return false;
+
+		NodeSignalInputInterface in = this.getSignalInput();
+		if (!in.isIdle())
+			return false;
+		handled[0] += in.getHandledSignals();
+
+		for (int i = 0; i < this.nodes.size(); ++i) {
+			Node n = this.nodes.get(i);
+			if (n instanceof Compositor) {
+				if (!((Compositor) n).isIdle(handled))
+					return false;
+			} else {
+				in = n.getSignalInput();
+				if (!in.isIdle())
+					return false;
+				handled[0] += in.getHandledSignals();
+			}
+		}
+		return true;
+	}
+
+	private void abortStreams() {
+		for (Runnable abort : this.streamAborts) {
+			abort.run();
+		}
+	}
+
+	/**
+	 * Lets every interface of this {@link Compositor} and of nested
+	 * {@link Compositor}s call tryTerminate() when it becomes idle. Nested
+	 * {@link Compositor}s that are shut down themselves keep their own
+	 * listener.
+	 */
+	private void listenIdle() {
+		if (this.listening.compareAndSet(false, true))
+			this.addIdleListener(this.terminator);
+	}
+
+	private void addIdleListener(Runnable listener) {
+		this.getSignalInput().addIdleListener(listener);
+		for (Node n : this.nodes) {
+			if (n instanceof Compositor)
+				((Compositor) n).addIdleListener(listener);
+			else
+				n.getSignalInput().addIdleListener(listener);
+		}
+	}
+
+	private void removeIdleListener(Runnable listener) {
+		this.getSignalInput().removeIdleListener(listener);
+		for (Node n : this.nodes) {
+			if (n instanceof Compositor)
+				((Compositor) n).removeIdleListener(listener);
+			else
+				n.getSignalInput().removeIdleListener(listener);
+		}
+	}
+
+	/**
+	 * Closes the {@link Signal} interfaces of all {@link Node}s, including
+	 * nested {@link Compositor}s, and collects the queued {@link Signal}s.
+	 */
+	private void closeAll(List<Signal> undelivered) {
+		this.shutdown = true;
+		NodeSignalInputInterface in = this.getSignalInput();
+		in.close();
+		in.drainTo(undelivered, Integer.MAX_VALUE);
+		for (Node n : this.nodes) {
+			if (n instanceof Compositor) {
+				((Compositor) n).closeAll(undelivered);
+			} else {
+				in = n.getSignalInput();
+				in.close();
+				in.drainTo(undelivered, Integer.MAX_VALUE);
+			}
+		}
 	}
 
 	/**
@@ -314,10 +1156,46 @@ public class Compositor extends Node {
 		return ret;
 	}
 
+	/**
+	 * Binds this {@link Compositor}, all managed {@link Node}s and every
+	 * {@link Node} that is added later to the given {@link SignalScheduler}.
+	 * Nested {@link Compositor}s pass it on to their {@link Node}s.
+	 * 
+	 * @param scheduler
+	 *            the new scheduler
+	 * @throws IllegalArgumentException
+	 *             if scheduler is <code>null</code>
+	 */
+	@Override
+	public void setScheduler(SignalScheduler scheduler) {
+		super.setScheduler(scheduler);
+		this.scheduler = scheduler;
+
+		for (Node n : this.nodes) {
+			n.setScheduler(scheduler);
+		}
+	}
+
 	public void setEndCallback(CompositorFinishedCallback finishCallback) {
 		this.endCallback = finishCallback;
 	}
 
+	/**
+	 * Copies the values of the inner outputs to the outputs of this
+	 * {@link Compositor} within the current {@link ExecutionContext}.
+	 */
+	void updateOutputs() {
+		for (CompositorOutputInterface o : this.innerOutputs.values()) {
+			o.update();
+		}
+	}
+
+	/**
+	 * Copies the inner outputs on every {@link Signal} that reaches the end.
+	 * Compiled plans do not pass their {@link Signal}s through here, they
+	 * follow the data edges to the real sources instead (see
+	 * {@link ExecutionPlan}).
+	 */
 	private class CompositorEndSignalReciever extends SignalInputInterface {
 		public CompositorEndSignalReciever() {
 			super(Signal.class);
@@ -325,14 +1203,18 @@ public class Compositor extends Node {
 
 		@Override
 		public void sendSignal(Signal s) {
-			// update outputs
-			for (CompositorOutputInterface o : innerOutputs.values()) {
-				o.update();
+			ExecutionContext prev = ExecutionContext.enter(s.getContext());
+			try {
+				updateOutputs();
+			} finally {
+				ExecutionContext.restore(prev);
 			}
 
 			if (endCallback != null)
 				endCallback.compositorFinished();
 
+			completeRun(s.getContext(), ReturnCode.SUCCESS);
+
 			// pass signal
 			getSignalOutput().passSignal(s);
 		}
@@ -366,6 +1248,8 @@ public class Compositor extends Node {
 			if (endCallback != null)
 				endCallback.compositorRaisedAnException();
 
+			completeRun(s.getContext(), ReturnCode.EXCEPTION);
+
 			getExceptionOutput().passSignal(s);
 		}
 
@@ -0,0 +1,75 @@
+package nodes.compositor;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import nodes.Node;
+import nodes.NodeMetricsSnapshot;
+
+/**
+ * A snapshot of the metrics of all {@link Node}s of a {@link Compositor},
+ * including the {@link Node}s of nested {@link Compositor}s.
+ */
+public class CompositorMetrics {
+
+	private final NodeMetricsSnapshot self;
+	private final NodeMetricsSnapshot total;
+	private final Map<Node, NodeMetricsSnapshot> nodes;
+	private final Map<Compositor, CompositorMetrics> nested;
+
+	CompositorMetrics(Compositor c) {
+		this.self = c.getMetrics().snapshot();
+
+		NodeMetricsSnapshot sum = NodeMetricsSnapshot.EMPTY;
+		Map<Node, NodeMetricsSnapshot> nodes = new LinkedHashMap<>();
+		Map<Compositor, CompositorMetrics> nested = new LinkedHashMap<>();
+		for (Node n : c.getNodes()) {
+			if (n instanceof Compositor) {
+				CompositorMetrics m = new CompositorMetrics((Compositor) n);
+				nested.put((Compositor) n, m);
+				nodes.put(n, m.self);
+				sum = sum.add(m.self).add(m.total);
+			} else {
+				NodeMetricsSnapshot s = n.getMetrics().snapshot();
+				nodes.put(n, s);
+				sum = sum.add(s);
+			}
+		}
+
+		this.total = sum;
+		this.nodes = Collections.unmodifiableMap(nodes);
+		this.nested = Collections.unmodifiableMap(nested);
+	}
+
+	/**
+	 * Returns the metrics of the {@link Compositor} itself.
+	 */
+	public NodeMetricsSnapshot getSelf() {
+		return this.self;
+	}
+
+	/**
+	 * Returns the sum of the metrics of all {@link Node}s within the
+	 * {@link Compositor} and all nested {@link Compositor}s.
+	 */
+	public NodeMetricsSnapshot getTotal() {
+		return this.total;
+	}
+
+	/**
+	 * Returns the metrics of each {@link Node} that is directly managed by the
+	 * {@link Compositor}.
+	 */
+	public Map<Node, NodeMetricsSnapshot> getNodes() {
+		return this.nodes;
+	}
+
+	/**
+	 * Returns the metrics of each nested {@link Compositor}.
+	 */
+	public Map<Compositor, CompositorMetrics> getNested() {
+		return this.nested;
+	}
+
+}
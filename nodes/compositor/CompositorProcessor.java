@@ -0,0 +1,438 @@
+package nodes.compositor;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import nodes.ExecutionContext;
+import nodes.NodeInputInterface;
+import nodes.NodeOutputInterface;
+import nodes.signals.Signal;
+import nodes.signals.SignalInputInterface;
+import nodes.signals.SignalOutputInterface;
+
+/**
+ * A {@link CompositorProcessor} exposes a {@link Compositor} as a
+ * {@link Flow.Processor}: every element it recieves from upstream is written
+ * to an input of the {@link Compositor} and starts a run in an
+ * {@link ExecutionContext} of its own. When the run reaches the end receiver,
+ * the value of an output is passed to the subscriber, in the order of the
+ * elements.
+ *
+ * The demand of the subscriber is passed upstream, so a run is only started
+ * for an element the subscriber asked for. At most window runs are in flight
+ * at once, even if the subscriber asks for more, so the {@link Signal}s never
+ * pile up in the queues of the {@link nodes.Node}s.
+ *
+ * A run that reaches the exception receiver fails the stream: the subscriber
+ * recieves onError() and the upstream subscription is cancelled. The first
+ * error wins, later ones are ignored.
+ *
+ * From the first subscribe() or onSubscribe() until the stream ends, the
+ * input and the signal and exception outputs of the {@link Compositor} are
+ * connected to this {@link CompositorProcessor}. The previous connections are
+ * restored when the stream completes, fails or is cancelled. Only one
+ * subscriber is supported.
+ *
+ * @param <I>
+ *            the type of the input
+ * @param <O>
+ *            the type of the output
+ */
+public class CompositorProcessor<I, O> implements Flow.Processor<I, O> {
+
+	/**
+	 * The attribute that holds the position of the element of a run (a
+	 * {@link Long}).
+	 */
+	public static final String SEQUENCE = "CompositorProcessor.sequence";
+
+	/**
+	 * Placeholder for a run that reached the exception receiver.
+	 */
+	private static final Object FAILED = new Object();
+
+	/**
+	 * Placeholder for an output value that is <code>null</code>.
+	 */
+	private static final Object NULL = new Object();
+
+	private final Compositor compositor;
+	private final NodeInputInterface input;
+	private final NodeOutputInterface output;
+	private final int window;
+
+	/**
+	 * Holds the element of each run.
+	 */
+	private final NodeOutputInterface element;
+
+	/**
+	 * The connections of the {@link Compositor} before attach(). Guarded by
+	 * this, like attached and detached.
+	 */
+	private NodeOutputInterface prevSource = null;
+	private SignalInputInterface prevTarget = null, prevExceptionTarget = null;
+	private boolean attached = false;
+	private boolean detached = false;
+
+	private volatile Flow.Subscription upstream = null;
+	private volatile Flow.Subscriber<? super O> downstream = null;
+
+	/**
+	 * Requested by the subscriber, but not passed upstream yet.
+	 */
+	private final AtomicLong demand = new AtomicLong();
+
+	/**
+	 * The results of finished runs that were not emitted yet by their
+	 * position.
+	 */
+	private final ConcurrentHashMap<Long, Object> results = new ConcurrentHashMap<>();
+
+	/**
+	 * The number of elements recieved from upstream, only written by
+	 * onNext().
+	 */
+	private volatile long recieved = 0;
+
+	/**
+	 * The following fields are only used by the thread that drains.
+	 */
+	private long next = 0;
+	private int inFlight = 0;
+	private boolean done = false;
+
+	private final AtomicInteger draining = new AtomicInteger();
+
+	private volatile boolean completed = false;
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Set by onError(), the upstream subscription must not be cancelled then.
+	 */
+	private volatile boolean upstreamFailed = false;
+
+	/**
+	 * The first error, it ends the stream.
+	 */
+	private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+	/**
+	 * Creates a {@link CompositorProcessor} for the given {@link Compositor}.
+	 * The {@link Compositor} is connected to it by the first subscribe() or
+	 * onSubscribe().
+	 *
+	 * @param compositor
+	 *            the {@link Compositor} that processes the elements
+	 * @param inputName
+	 *            the input the elements are written to
+	 * @param outputName
+	 *            the output that is passed to the subscriber
+	 * @param window
+	 *            the maximum number of runs in flight (>= 1)
+	 * @throws IllegalArgumentException
+	 *             if the input or the output cannot be found or window is less
+	 *             than 1
+	 */
+	public CompositorProcessor(Compositor compositor, String inputName, String outputName, int window) {
+		if (window < 1)
+			throw new IllegalArgumentException("The window must be at least 1.");
+		this.input = compositor.getInput(inputName);
+		if (this.input == null)
+			throw new IllegalArgumentException("InputInterface not found!");
+		this.output = compositor.getOutput(outputName);
+		if (this.output == null)
+			throw new IllegalArgumentException("OutputInterface not found!");
+
+		this.compositor = compositor;
+		this.window = window;
+		this.element = new NodeOutputInterface(this.input.getType(), null);
+	}
+
+	/**
+	 * Connects the {@link Compositor} to this {@link CompositorProcessor},
+	 * unless this happened already or the stream has ended.
+	 */
+	private synchronized void attach() {
+		if (this.attached || this.detached)
+			return;
+		this.attached = true;
+
+		this.prevSource = this.input.getSource();
+		this.prevTarget = this.compositor.getSignalOutput().getTarget();
+		this.prevExceptionTarget = this.compositor.getExceptionOutput().getTarget();
+
+		this.input.setConnection(this.element);
+		this.compositor.getSignalOutput().setConnection(new ResultReciever(false));
+		this.compositor.getExceptionOutput().setConnection(new ResultReciever(true));
+	}
+
+	/**
+	 * Restores the connections of the {@link Compositor}, if attach() changed
+	 * them. Afterwards attach() does nothing.
+	 */
+	private synchronized void detach() {
+		if (this.detached)
+			return;
+		this.detached = true;
+		if (!this.attached)
+			return;
+
+		this.input.setConnection(this.prevSource);
+		this.compositor.getSignalOutput().setConnection(this.prevTarget);
+		this.compositor.getExceptionOutput().setConnection(this.prevExceptionTarget);
+	}
+
+	private synchronized boolean isDetached() {
+		return this.detached;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super O> subscriber) {
+		boolean first;
+		synchronized (this) {
+			first = this.downstream == null;
+			if (first)
+				this.downstream = subscriber;
+		}
+
+		if (first) {
+			this.attach();
+			subscriber.onSubscribe(new Subscription());
+			this.drain();
+		} else {
+			subscriber.onSubscribe(new Subscription());
+			subscriber.onError(new IllegalStateException("Only one subscriber is supported."));
+		}
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription s) {
+		if (this.upstream != null) {
+			s.cancel();
+			return;
+		}
+		this.attach();
+		this.upstream = s;
+		if (this.isDetached()) {
+			// the stream ended before upstream subscribed
+			s.cancel();
+			return;
+		}
+		this.drain();
+	}
+
+	/**
+	 * Starts a run for the element, called by upstream one element at a
+	 * time.
+	 */
+	@Override
+	public void onNext(I item) {
+		if (this.compositor.isShutdown()) {
+			this.fail(new IllegalStateException("The compositor is shut down."));
+			return;
+		}
+
+		ExecutionContext ctx = new ExecutionContext();
+		ExecutionContext prev = ExecutionContext.enter(ctx);
+		try {
+			this.element.setValue(item);
+		} finally {
+			ExecutionContext.restore(prev);
+		}
+
+		long sequence = this.recieved;
+		this.recieved = sequence + 1;
+		this.compositor.start(new Signal(ctx).with(SEQUENCE, sequence));
+	}
+
+	@Override
+	public void onError(Throwable e) {
+		this.upstreamFailed = true;
+		this.fail(e);
+	}
+
+	@Override
+	public void onComplete() {
+		this.completed = true;
+		this.drain();
+	}
+
+	public Compositor getCompositor() {
+		return this.compositor;
+	}
+
+	public int getWindow() {
+		return this.window;
+	}
+
+	private void fail(Throwable e) {
+		this.error.compareAndSet(null, e);
+		this.drain();
+	}
+
+	/**
+	 * Emits the finished runs in order, passes the demand upstream and
+	 * delivers the terminal signal. Only one thread drains at a time, the one
+	 * that raised the counter from 0.
+	 */
+	@SuppressWarnings("unchecked")
+	private void drain() {
+		if (this.draining.getAndIncrement() != 0)
+			return;
+
+		do {
+			Flow.Subscriber<? super O> d = this.downstream;
+			if (this.done || d == null)
+				continue;
+
+			if (this.cancelled) {
+				this.terminate(null);
+				continue;
+			}
+
+			Object r;
+			while (this.error.get() == null && (r = this.results.remove(this.next)) != null) {
+				this.next++;
+				this.inFlight--;
+				if (r == FAILED) {
+					this.fail(new IllegalStateException("Run " + (this.next - 1) + " raised an exception."));
+				} else if (r == NULL) {
+					this.fail(new NullPointerException("The output of run " + (this.next - 1) + " is null."));
+				} else {
+					d.onNext((O) r);
+				}
+			}
+
+			Throwable e = this.error.get();
+			if (e != null) {
+				// a terminated upstream must not be cancelled
+				this.terminate(this.upstreamFailed || this.completed ? null : this.upstream);
+				d.onError(e);
+				continue;
+			}
+			if (this.completed && this.next == this.recieved) {
+				this.terminate(null);
+				d.onComplete();
+				continue;
+			}
+
+			Flow.Subscription u = this.upstream;
+			if (u == null)
+				continue;
+			long n = 0;
+			while (this.inFlight < this.window && this.take()) {
+				this.inFlight++;
+				n++;
+			}
+			if (n > 0)
+				u.request(n);
+		} while (this.draining.decrementAndGet() != 0);
+	}
+
+	/**
+	 * Takes one unit of the demand of the subscriber, if there is one.
+	 */
+	private boolean take() {
+		long d;
+		do {
+			d = this.demand.get();
+			if (d == 0)
+				return false;
+		} while (d != Long.MAX_VALUE && !this.demand.compareAndSet(d, d - 1));
+		return true;
+	}
+
+	/**
+	 * Ends the stream, cancels the given subscription and restores the
+	 * connections of the {@link Compositor}.
+	 */
+	private void terminate(Flow.Subscription cancel) {
+		this.done = true;
+		this.results.clear();
+		if (cancel != null)
+			cancel.cancel();
+		this.detach();
+	}
+
+	private class Subscription implements Flow.Subscription {
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				fail(new IllegalArgumentException("The demand must be positive."));
+				return;
+			}
+
+			long d, m;
+			do {
+				d = demand.get();
+				m = d + n < 0 ? Long.MAX_VALUE : d + n;
+			} while (!demand.compareAndSet(d, m));
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			Flow.Subscription u = upstream;
+			if (u != null)
+				u.cancel();
+			drain();
+		}
+	}
+
+	/**
+	 * Recieves the {@link Signal}s that leave the {@link Compositor} and
+	 * stores the result of their run.
+	 */
+	private class ResultReciever extends SignalInputInterface {
+
+		private final boolean failed;
+
+		public ResultReciever(boolean failed) {
+			super(Signal.class);
+			this.failed = failed;
+		}
+
+		@Override
+		public void sendSignal(Signal s) {
+			Object sequence = s.get(SEQUENCE);
+			if (!(sequence instanceof Long))
+				return;
+
+			Object value = FAILED;
+			if (!this.failed) {
+				ExecutionContext prev = ExecutionContext.enter(s.getContext());
+				try {
+					value = output.getValue();
+				} finally {
+					ExecutionContext.restore(prev);
+				}
+				if (value == null)
+					value = NULL;
+			}
+			results.put((Long) sequence, value);
+			drain();
+		}
+
+		@Override
+		public void removeConnection(SignalOutputInterface o) {
+			// do nothing, the connections are not tracked
+		}
+
+		@Override
+		public void registerConnection(SignalOutputInterface o) {
+			// do nothing, the connections are not tracked
+		}
+
+		@Override
+		public void destroy() {
+			// do nothing, the connections are not tracked
+		}
+	}
+
+}
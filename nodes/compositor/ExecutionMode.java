@@ -0,0 +1,47 @@
+package nodes.compositor;
+
+import java.util.concurrent.ForkJoinPool;
+
+import nodes.Node;
+import nodes.signals.Signal;
+import nodes.signals.SignalSyncronizer;
+
+/**
+ * The ways a {@link Compositor} can run its graph.
+ */
+public enum ExecutionMode {
+
+	/**
+	 * Every {@link Signal} is passed through the queue of the receiving
+	 * {@link Node}. This works for every graph.
+	 */
+	SIGNALS,
+
+	/**
+	 * Like {@link #SIGNALS}, but every {@link Node} executes the {@link Node}
+	 * its {@link Signal} is routed to on the same thread if that one is idle
+	 * (see {@link Node#setInlineExecution(boolean)}). Best for chains, where
+	 * there is no concurrency to gain.
+	 */
+	INLINE,
+
+	/**
+	 * The graph is compiled into an {@link ExecutionPlan} and independent
+	 * branches are executed as tasks on a {@link ForkJoinPool}. A
+	 * {@link SignalSyncronizer} is continued by the thread that finishes its
+	 * last input, so no worker waits for another one. Runs that are submitted
+	 * at once overlap, but a {@link Node} is executed by one run at a time; a
+	 * run that finds it busy is continued by the run that leaves it.
+	 */
+	FORK_JOIN,
+
+	/**
+	 * The graph is compiled into an {@link ExecutionPlan} and every run skips
+	 * the pure {@link Node}s whose inputs did not change since their last run
+	 * (see {@link ExecutionPlan#executeIncremental()}). Runs use the values
+	 * stored in the interfaces and are executed on the thread that starts
+	 * them, one after another.
+	 */
+	INCREMENTAL
+
+}
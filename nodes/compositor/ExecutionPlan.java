@@ -0,0 +1,1086 @@
+package nodes.compositor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+import nodes.ExecutionContext;
+import nodes.Node;
+import nodes.NodeInputInterface;
+import nodes.NodeOutputInterface;
+import nodes.PrimitiveOutputInterface;
+import nodes.ReturnCode;
+import nodes.SlotLayout;
+import nodes.signals.Signal;
+import nodes.signals.SignalInputInterface;
+import nodes.signals.SignalOutputInterface;
+import nodes.signals.SignalSyncronizer;
+
+/**
+ * An {@link ExecutionPlan} is the compiled form of the graph of a
+ * {@link Compositor}. It runs the whole graph on the calling thread without
+ * passing any {@link Signal} through a queue.
+ *
+ * While compiling, the graph is validated and all {@link Node}s and
+ * {@link SignalSyncronizer}s are brought into topological order. Every
+ * {@link NodeOutputInterface} gets a slot in a flat value frame and every
+ * {@link NodeInputInterface} is bound to the slot of its source, so the
+ * {@link Node}s read their inputs by array index. Inputs whose source is a
+ * {@link PrimitiveOutputInterface} are not bound, they read the unboxed slot
+ * of their source.
+ *
+ * Each run counts the {@link Signal}-Tokens each {@link Node} and
+ * {@link SignalSyncronizer} recieves. As they are visited in topological
+ * order, all tokens have arrived when a step is executed: a {@link Node} is
+ * executed once per token, a {@link SignalSyncronizer} fires once per
+ * complete set.
+ *
+ * A graph can be compiled if
+ * <ul>
+ * <li>every signal edge ends at a {@link Node}, a {@link SignalSyncronizer},
+ * the end or the exception receiver of the {@link Compositor},</li>
+ * <li>every data edge starts at a {@link Node} or an input of the
+ * {@link Compositor},</li>
+ * <li>the signal edges contain no cycle.</li>
+ * </ul>
+ *
+ * Nested {@link Compositor}s are inlined: their {@link Node}s and
+ * {@link SignalSyncronizer}s become steps of this plan, a {@link Signal} to a
+ * nested {@link Compositor} goes straight to the target of its start and a
+ * {@link Signal} to its end or exception receiver straight to the target of
+ * its (exception) output. Data edges through the interfaces of nested
+ * {@link Compositor}s are followed to the {@link Node} that writes the value,
+ * so every input reads the slot of its real source, however deep the nesting
+ * is, and no value is copied at the end of a nested {@link Compositor}. The
+ * outputs and callbacks of nested {@link Compositor}s are not updated by the
+ * plan.
+ *
+ * With submit() the plan runs on a {@link ForkJoinPool} instead. Each step
+ * waits for the steps whose {@link Signal}s it recieves. The thread that
+ * finishes the last of them continues with the step, all other steps that
+ * became ready are forked. So independent branches run in parallel and a
+ * {@link SignalSyncronizer} never blocks a worker.
+ *
+ * executeIncremental() runs the graph on the values stored in the interfaces
+ * and skips every pure {@link Node} (see {@link Node#isPure()}) whose inputs
+ * have the same version stamps as in its last run, replaying its last results
+ * instead. So after a change only the pure {@link Node}s downstream of the
+ * changed outputs are executed again, all others are executed every time.
+ *
+ * The plan must be compiled again after the graph was changed. Compiling a
+ * {@link Compositor} again binds its interfaces to the new plan; frames of
+ * older plans then fall back to the slower value lookup.
+ */
+public class ExecutionPlan {
+
+	private final Compositor compositor;
+
+	/**
+	 * The {@link Node} of each step, <code>null</code> for steps that are
+	 * {@link SignalSyncronizer}s.
+	 */
+	private final Node[] stepNode;
+
+	/**
+	 * Lets one run at a time execute the {@link Node} of each step, null for
+	 * the steps of {@link SignalSyncronizer}s.
+	 */
+	private final StepGate[] stepGates;
+
+	/**
+	 * The index of the first token counter of each step.
+	 */
+	private final int[] stepTokens;
+
+	/**
+	 * The number of token counters of each step (the inputs of a
+	 * {@link SignalSyncronizer}, 1 for {@link Node}s).
+	 */
+	private final int[] stepWidth;
+
+	/**
+	 * The token counters each step passes its {@link Signal}s to. For
+	 * {@link Node}s these are the success and the exception output, for
+	 * {@link SignalSyncronizer}s all outputs.
+	 */
+	private final int[][] stepTargets;
+
+	/**
+	 * The steps each step passes its {@link Signal}s to, one entry per signal
+	 * edge.
+	 */
+	private final int[][] stepSuccessors;
+
+	/**
+	 * The number of signal edges that end at each step.
+	 */
+	private final int[] stepPredecessors;
+
+	/**
+	 * The sources of the inputs of each step, <code>null</code> for
+	 * {@link SignalSyncronizer}s.
+	 */
+	private final NodeOutputInterface[][] stepSources;
+
+	/**
+	 * The state of executeIncremental(): the versions of the sources of each
+	 * step at its last execution, the tokens it recieved and the number of
+	 * successes and exceptions. A step that was never executed has -1 tokens.
+	 */
+	private final long[][] seenVersions;
+	private final boolean[] stepPure;
+	private final int[] lastTokens, lastSuccesses, lastExceptions;
+	private int skipped = 0;
+
+	/**
+	 * The token counter the start of the {@link Compositor} passes its
+	 * {@link Signal} to.
+	 */
+	private final int startTarget;
+
+	/**
+	 * The number of token counters. There are three additional counters after
+	 * the ones of the steps: the end, the exception and lost tokens.
+	 */
+	private final int tokenCount;
+	private final int endTokens, exceptionTokens, lostTokens;
+
+	/**
+	 * The interface of each slot in the value frames.
+	 */
+	private final SlotLayout slots;
+
+	/**
+	 * The slots of the inner inputs of the {@link Compositor} and the outer
+	 * inputs their values are loaded from before each run.
+	 */
+	private final int[] inputSlots;
+	private final NodeInputInterface[] inputSources;
+
+	/**
+	 * The interfaces of nested {@link Compositor}s: the {@link Signal} input,
+	 * end and exception receiver map to the output that passes their
+	 * {@link Signal}s on, data interfaces to the output they take their value
+	 * from (<code>null</code> if not connected).
+	 */
+	private final Map<SignalInputInterface, SignalOutputInterface> signalAliases;
+	private final Map<NodeOutputInterface, NodeOutputInterface> dataAliases;
+
+	/**
+	 * Compiles the graph of the given {@link Compositor}.
+	 *
+	 * @throws IllegalStateException
+	 *             if the graph cannot be compiled
+	 */
+	ExecutionPlan(Compositor compositor) {
+		this.compositor = compositor;
+
+		// inline nested compositors
+		List<Node> nodes = new ArrayList<>();
+		List<SignalSyncronizer> syncs = new ArrayList<>();
+		List<Compositor> nested = new ArrayList<>();
+		collect(compositor, nodes, syncs, nested);
+
+		Map<SignalInputInterface, SignalOutputInterface> signalAliases = new IdentityHashMap<>();
+		Map<NodeOutputInterface, NodeOutputInterface> dataAliases = new IdentityHashMap<>();
+		for (Compositor c : nested) {
+			signalAliases.put(c.getSignalInput(), c.getSignalStart());
+			signalAliases.put(c.getSignalEnd(), c.getSignalOutput());
+			signalAliases.put(c.getInnerExceptionReciever(), c.getExceptionOutput());
+			for (String name : c.getInputs().keySet()) {
+				dataAliases.put(c.getInnerInput(name), c.getInput(name).getSource());
+			}
+			for (String name : c.getOutputs().keySet()) {
+				dataAliases.put(c.getOutput(name), c.getInnerOutput(name).getSource());
+			}
+		}
+		this.signalAliases = signalAliases;
+		this.dataAliases = dataAliases;
+
+		// assign token counters to every signal input
+		int steps = nodes.size() + syncs.size();
+		Map<SignalInputInterface, Integer> tokenIndex = new IdentityHashMap<>();
+		int[] tokenStep = new int[steps + countSyncInputs(syncs)];
+		int[] width = new int[steps];
+		int[] base = new int[steps];
+		int t = 0, step = 0;
+		for (Node n : nodes) {
+			base[step] = t;
+			width[step] = 1;
+			tokenIndex.put(n.getSignalInput(), t);
+			tokenStep[t++] = step++;
+		}
+		for (SignalSyncronizer sync : syncs) {
+			base[step] = t;
+			width[step] = sync.getInputSize();
+			for (SignalInputInterface i : sync.getInputs()) {
+				tokenIndex.put(i, t);
+				tokenStep[t++] = step;
+			}
+			step++;
+		}
+		this.tokenCount = t + 3;
+		this.endTokens = t;
+		this.exceptionTokens = t + 1;
+		this.lostTokens = t + 2;
+		tokenIndex.put(compositor.getSignalEnd(), this.endTokens);
+		tokenIndex.put(compositor.getInnerExceptionReciever(), this.exceptionTokens);
+
+		// resolve the signal edges
+		int[][] targets = new int[steps][];
+		step = 0;
+		for (Node n : nodes) {
+			targets[step++] = new int[] { this.resolve(tokenIndex, n.getSignalOutput()),
+					this.resolve(tokenIndex, n.getExceptionOutput()) };
+		}
+		for (SignalSyncronizer sync : syncs) {
+			int[] outs = new int[sync.getOutputSize()];
+			for (int o = 0; o < outs.length; ++o) {
+				outs[o] = this.resolve(tokenIndex, sync.getOutput(o));
+			}
+			targets[step++] = outs;
+		}
+		this.startTarget = this.resolve(tokenIndex, compositor.getSignalStart());
+
+		// order the steps
+		int[] order = sort(targets, tokenStep, this.endTokens);
+		this.stepNode = new Node[steps];
+		this.stepGates = new StepGate[steps];
+		this.stepTokens = new int[steps];
+		this.stepWidth = new int[steps];
+		this.stepTargets = new int[steps][];
+		int[] position = new int[steps];
+		for (int i = 0; i < steps; ++i) {
+			int s = order[i];
+			position[s] = i;
+			this.stepNode[i] = s < nodes.size() ? nodes.get(s) : null;
+			this.stepGates[i] = s < nodes.size() ? new StepGate() : null;
+			this.stepTokens[i] = base[s];
+			this.stepWidth[i] = width[s];
+			this.stepTargets[i] = targets[s];
+		}
+
+		// the dependencies between the ordered steps
+		this.stepSuccessors = new int[steps][];
+		this.stepPredecessors = new int[steps];
+		for (int i = 0; i < steps; ++i) {
+			int count = 0;
+			int[] successors = new int[this.stepTargets[i].length];
+			for (int target : this.stepTargets[i]) {
+				if (target < this.endTokens) {
+					successors[count] = position[tokenStep[target]];
+					this.stepPredecessors[successors[count++]]++;
+				}
+			}
+			this.stepSuccessors[i] = count == successors.length ? successors : Arrays.copyOf(successors, count);
+		}
+
+		// remember the sources for executeIncremental()
+		this.stepSources = new NodeOutputInterface[steps][];
+		this.seenVersions = new long[steps][];
+		this.stepPure = new boolean[steps];
+		for (int i = 0; i < steps; ++i) {
+			if (this.stepNode[i] != null) {
+				List<NodeOutputInterface> sources = new ArrayList<>();
+				for (NodeInputInterface in : this.stepNode[i].getInputs().values()) {
+					NodeOutputInterface source = this.follow(in.getSource());
+					if (source != null)
+						sources.add(source);
+				}
+				this.stepSources[i] = sources.toArray(new NodeOutputInterface[sources.size()]);
+				this.seenVersions[i] = new long[sources.size()];
+				this.stepPure[i] = this.stepNode[i].isPure();
+			}
+		}
+		this.lastTokens = new int[steps];
+		this.lastSuccesses = new int[steps];
+		this.lastExceptions = new int[steps];
+		Arrays.fill(this.lastTokens, -1);
+
+		// assign the slots
+		List<NodeOutputInterface> ports = new ArrayList<>();
+		List<String> inputNames = new ArrayList<>(compositor.getInputs().keySet());
+		this.inputSlots = new int[inputNames.size()];
+		this.inputSources = new NodeInputInterface[inputNames.size()];
+		for (int i = 0; i < inputNames.size(); ++i) {
+			NodeOutputInterface inner = compositor.getInnerInput(inputNames.get(i));
+			this.inputSlots[i] = ports.size();
+			ports.add(inner);
+			this.inputSources[i] = compositor.getInput(inputNames.get(i));
+		}
+		for (Node n : nodes) {
+			for (NodeOutputInterface o : n.getOutputs().values()) {
+				ports.add(o);
+			}
+		}
+		this.slots = new SlotLayout(ports);
+
+		for (Node n : nodes) {
+			for (Map.Entry<String, NodeInputInterface> e : n.getInputs().entrySet()) {
+				this.bindSource(e.getValue(), "Input " + e.getKey() + " of " + n.getClass().getName());
+			}
+		}
+		for (Map.Entry<String, NodeInputInterface> e : compositor.getInnerOutputs().entrySet()) {
+			this.bindSource(e.getValue(), "Output " + e.getKey() + " of the compositor");
+		}
+		for (Compositor c : nested) {
+			for (Map.Entry<String, NodeInputInterface> e : c.getInputs().entrySet()) {
+				this.bindSource(e.getValue(), "Input " + e.getKey() + " of a nested compositor");
+			}
+		}
+	}
+
+	/**
+	 * Adds the {@link Node}s and {@link SignalSyncronizer}s of the given
+	 * {@link Compositor} and of all nested {@link Compositor}s to the lists.
+	 */
+	private static void collect(Compositor c, List<Node> nodes, List<SignalSyncronizer> syncs,
+			List<Compositor> nested) {
+		syncs.addAll(c.getSyncronizers());
+		for (Node n : c.getNodes()) {
+			if (n instanceof Compositor) {
+				nested.add((Compositor) n);
+				collect((Compositor) n, nodes, syncs, nested);
+			} else {
+				nodes.add(n);
+			}
+		}
+	}
+
+	/**
+	 * Follows a data edge through the interfaces of nested {@link Compositor}s
+	 * to the output that really holds the value. If the edge ends at an
+	 * unconnected interface of a nested {@link Compositor}, this interface is
+	 * returned.
+	 */
+	private NodeOutputInterface follow(NodeOutputInterface o) {
+		for (int hops = 0; o != null && hops <= this.dataAliases.size(); ++hops) {
+			NodeOutputInterface next = this.dataAliases.get(o);
+			if (next == null)
+				return o;
+			o = next;
+		}
+		return o;
+	}
+
+	private static int countSyncInputs(List<SignalSyncronizer> syncs) {
+		int count = 0;
+		for (SignalSyncronizer sync : syncs) {
+			count += sync.getInputSize();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the token counter the given output passes its {@link Signal}s
+	 * to.
+	 *
+	 * @throws IllegalStateException
+	 *             if the target is not part of the {@link Compositor}
+	 */
+	private int resolve(Map<SignalInputInterface, Integer> tokenIndex, SignalOutputInterface o) {
+		// signals to nested compositors are passed on to their inner targets
+		for (int hops = 0; hops <= this.signalAliases.size(); ++hops) {
+			SignalInputInterface target = o.getTarget();
+			if (target == null) {
+				return this.lostTokens;
+			}
+
+			Integer index = tokenIndex.get(target);
+			if (index != null) {
+				return index;
+			}
+			o = this.signalAliases.get(target);
+			if (o == null) {
+				throw new IllegalStateException("A signal is routed outside of the compositor.");
+			}
+		}
+		throw new IllegalStateException("The signal edges contain a cycle.");
+	}
+
+	/**
+	 * Sorts the steps topologically (Kahn's algorithm).
+	 *
+	 * @return the original index of each step in topological order
+	 * @throws IllegalStateException
+	 *             if the signal edges contain a cycle
+	 */
+	private static int[] sort(int[][] targets, int[] tokenStep, int stepTokenCount) {
+		int steps = targets.length;
+		int[] incoming = new int[steps];
+		for (int[] outs : targets) {
+			for (int target : outs) {
+				if (target < stepTokenCount)
+					incoming[tokenStep[target]]++;
+			}
+		}
+
+		int[] order = new int[steps];
+		int head = 0, tail = 0;
+		for (int s = 0; s < steps; ++s) {
+			if (incoming[s] == 0)
+				order[tail++] = s;
+		}
+		while (head < tail) {
+			for (int target : targets[order[head++]]) {
+				if (target < stepTokenCount && --incoming[tokenStep[target]] == 0)
+					order[tail++] = tokenStep[target];
+			}
+		}
+
+		if (tail != steps) {
+			throw new IllegalStateException("The signal edges contain a cycle.");
+		}
+		return order;
+	}
+
+	/**
+	 * Binds an input to the slot of its source.
+	 *
+	 * @throws IllegalStateException
+	 *             if the source is not part of the {@link Compositor}
+	 */
+	private void bindSource(NodeInputInterface i, String name) {
+		NodeOutputInterface source = this.follow(i.getSource());
+		if (source == null || this.dataAliases.containsKey(source)) {
+			// reads the default value through the unconnected interface
+			SlotLayout.unbind(i);
+			return;
+		}
+
+		if (this.slots.indexOf(source) < 0) {
+			throw new IllegalStateException(name + " is connected to an output outside of the compositor.");
+		}
+
+		if (source != i.getSource()) {
+			this.slots.bind(i, source, true);
+		} else if (source instanceof PrimitiveOutputInterface) {
+			SlotLayout.unbind(i);
+		} else {
+			this.slots.bind(i, source, false);
+		}
+	}
+
+	public Compositor getCompositor() {
+		return this.compositor;
+	}
+
+	/**
+	 * Returns the number of slots of each value frame.
+	 */
+	public int getSlotCount() {
+		return this.slots.size();
+	}
+
+	/**
+	 * Creates an {@link ExecutionContext} with a flat value frame for this
+	 * plan. The frame starts with the current values of the interfaces.
+	 */
+	public ExecutionContext newContext() {
+		return this.slots.newContext();
+	}
+
+	/**
+	 * Runs the graph within a new {@link ExecutionContext}. The inputs of the
+	 * {@link Compositor} are read and its outputs are written within the
+	 * current context of the calling thread.
+	 *
+	 * @return see execute(ExecutionContext)
+	 */
+	public ReturnCode execute() {
+		ExecutionContext outer = ExecutionContext.current();
+		ExecutionContext ctx = this.newContext();
+
+		ExecutionContext prev = ExecutionContext.enter(ctx);
+		try {
+			this.loadInputs(outer);
+			ReturnCode ret = this.runSteps();
+			if (ret == ReturnCode.SUCCESS) {
+				this.storeOutputs(outer);
+			}
+			return ret;
+		} finally {
+			ExecutionContext.restore(prev);
+		}
+	}
+
+	/**
+	 * Runs the graph within the given {@link ExecutionContext}. A context
+	 * created by newContext() is the fastest, but any context can be used.
+	 *
+	 * @param ctx
+	 *            a context that is not used by any other run
+	 * @return {@link ReturnCode#SUCCESS} if a {@link Signal} reached the end,
+	 *         {@link ReturnCode#EXCEPTION} if a {@link Signal} reached only the
+	 *         exception receiver and {@link ReturnCode#NOSIGNAL} otherwise
+	 */
+	public ReturnCode execute(ExecutionContext ctx) {
+		ExecutionContext prev = ExecutionContext.enter(ctx);
+		try {
+			this.loadInputs(ctx);
+			ReturnCode ret = this.runSteps();
+			if (ret == ReturnCode.SUCCESS) {
+				this.compositor.updateOutputs();
+			}
+			return ret;
+		} finally {
+			ExecutionContext.restore(prev);
+		}
+	}
+
+	/**
+	 * Runs the graph on the values stored in the interfaces (without an
+	 * {@link ExecutionContext}), but skips the pure {@link Node}s (see
+	 * {@link Node#isPure()}, like {@link nodes.CachingNode}) that recieve the
+	 * same number of tokens as in their last run and whose inputs did not
+	 * change since then. The outputs of a skipped {@link Node} keep their
+	 * values and its tokens are passed on like in its last run. All other
+	 * {@link Node}s are executed on every call.
+	 *
+	 * The inputs of the {@link Compositor} are read and its outputs are
+	 * written within the current context of the calling thread.
+	 *
+	 * @return see execute(ExecutionContext)
+	 */
+	public synchronized ReturnCode executeIncremental() {
+		ExecutionContext outer = ExecutionContext.enter(null);
+		try {
+			this.loadInputs(outer);
+			ReturnCode ret = this.runIncremental();
+			if (ret == ReturnCode.SUCCESS) {
+				this.storeOutputs(outer);
+			}
+			return ret;
+		} finally {
+			ExecutionContext.restore(outer);
+		}
+	}
+
+	/**
+	 * Makes executeIncremental() run all {@link Node}s again.
+	 */
+	public synchronized void invalidate() {
+		Arrays.fill(this.lastTokens, -1);
+	}
+
+	/**
+	 * Makes executeIncremental() run the given {@link Node} again. For a
+	 * nested {@link Compositor} all of its {@link Node}s are run again.
+	 */
+	public synchronized void invalidate(Node n) {
+		if (n instanceof Compositor) {
+			for (Node inner : ((Compositor) n).getNodes()) {
+				this.invalidate(inner);
+			}
+			return;
+		}
+		for (int s = 0; s < this.stepNode.length; ++s) {
+			if (this.stepNode[s] == n)
+				this.lastTokens[s] = -1;
+		}
+	}
+
+	/**
+	 * Returns the number of {@link Node}s that were skipped by the last call
+	 * of executeIncremental().
+	 */
+	public synchronized int getSkippedNodes() {
+		return this.skipped;
+	}
+
+	private ReturnCode runIncremental() {
+		int[] tokens = new int[this.tokenCount];
+		tokens[this.startTarget]++;
+		this.skipped = 0;
+
+		for (int s = 0; s < this.stepNode.length; ++s) {
+			Node n = this.stepNode[s];
+			int first = this.stepTokens[s];
+			int[] targets = this.stepTargets[s];
+
+			if (n == null) {
+				int sets = Integer.MAX_VALUE;
+				for (int i = first, end = first + this.stepWidth[s]; i < end; ++i) {
+					sets = Math.min(sets, tokens[i]);
+				}
+				for (int target : targets) {
+					tokens[target] += sets;
+				}
+				continue;
+			}
+
+			int k = tokens[first];
+			NodeOutputInterface[] sources = this.stepSources[s];
+			long[] seen = this.seenVersions[s];
+			boolean dirty = !this.stepPure[s] || this.lastTokens[s] != k;
+			for (int i = 0; i < sources.length; ++i) {
+				long v = sources[i].getVersion();
+				if (seen[i] != v) {
+					seen[i] = v;
+					dirty = true;
+				}
+			}
+
+			if (!dirty) {
+				if (k > 0)
+					this.skipped++;
+			} else {
+				int successes = 0, exceptions = 0;
+				if (k > 0) {
+					StepGate gate = this.stepGates[s];
+					gate.await(s);
+					try {
+						for (int j = k; j > 0; --j) {
+							switch (n.execute()) {
+							case SUCCESS:
+								successes++;
+								break;
+							case EXCEPTION:
+								exceptions++;
+								break;
+							default:
+								break;
+							}
+						}
+					} finally {
+						gate.leave(s);
+					}
+				}
+				this.lastTokens[s] = k;
+				this.lastSuccesses[s] = successes;
+				this.lastExceptions[s] = exceptions;
+			}
+			tokens[targets[0]] += this.lastSuccesses[s];
+			tokens[targets[1]] += this.lastExceptions[s];
+		}
+
+		return this.result(tokens[this.endTokens], tokens[this.exceptionTokens]);
+	}
+
+	/**
+	 * Runs the graph within the given {@link ExecutionContext} on a shared
+	 * {@link ForkJoinPool} with one worker per available processor.
+	 *
+	 * @param ctx
+	 *            a context that is not used by any other run
+	 * @return the future of the run, see execute(ExecutionContext) for its
+	 *         result
+	 */
+	public CompletableFuture<ReturnCode> submit(ExecutionContext ctx) {
+		return this.submit(ctx, defaultPool());
+	}
+
+	/**
+	 * Returns the shared pool used by submit(ExecutionContext).
+	 */
+	static ForkJoinPool defaultPool() {
+		return DefaultPool.POOL;
+	}
+
+	/**
+	 * Runs the graph within the given {@link ExecutionContext} on the given
+	 * {@link ForkJoinPool}. The inputs of the {@link Compositor} are read
+	 * before this method returns. The future is completed exceptionally if a
+	 * {@link Node} throws an exception.
+	 *
+	 * @param ctx
+	 *            a context that is not used by any other run
+	 * @param pool
+	 *            the pool that executes the steps
+	 * @return the future of the run, see execute(ExecutionContext) for its
+	 *         result
+	 */
+	public CompletableFuture<ReturnCode> submit(ExecutionContext ctx, ForkJoinPool pool) {
+		return this.fork(ctx, pool).thenApply(ret -> {
+			if (ret == ReturnCode.SUCCESS) {
+				ExecutionContext prev = ExecutionContext.enter(ctx);
+				try {
+					this.compositor.updateOutputs();
+				} finally {
+					ExecutionContext.restore(prev);
+				}
+			}
+			return ret;
+		});
+	}
+
+	/**
+	 * Loads the inputs and starts the steps on the pool, but does not update
+	 * the outputs of the {@link Compositor}.
+	 */
+	CompletableFuture<ReturnCode> fork(ExecutionContext ctx, ForkJoinPool pool) {
+		ExecutionContext prev = ExecutionContext.enter(ctx);
+		try {
+			this.loadInputs(ctx);
+		} finally {
+			ExecutionContext.restore(prev);
+		}
+
+		ParallelRun run = new ParallelRun(ctx, pool);
+		run.start();
+		return run.result;
+	}
+
+	/**
+	 * Copies the values of the inputs of the {@link Compositor} (read within
+	 * the given context) into the frame of the current context.
+	 */
+	private void loadInputs(ExecutionContext from) {
+		if (this.inputSlots.length == 0)
+			return;
+
+		Object[] values = new Object[this.inputSlots.length];
+		ExecutionContext ctx = ExecutionContext.enter(from);
+		try {
+			for (int i = 0; i < values.length; ++i) {
+				values[i] = this.inputSources[i].getValue();
+			}
+		} finally {
+			ExecutionContext.restore(ctx);
+		}
+		for (int i = 0; i < values.length; ++i) {
+			this.slots.getPort(this.inputSlots[i]).setValue(values[i]);
+		}
+	}
+
+	/**
+	 * Copies the inner outputs of the {@link Compositor} to its outputs within
+	 * the given context.
+	 */
+	private void storeOutputs(ExecutionContext to) {
+		Map<String, NodeInputInterface> inner = this.compositor.getInnerOutputs();
+		if (inner.isEmpty())
+			return;
+
+		List<String> names = new ArrayList<>(inner.keySet());
+		Object[] values = new Object[names.size()];
+		for (int i = 0; i < values.length; ++i) {
+			values[i] = inner.get(names.get(i)).getValue();
+		}
+
+		ExecutionContext ctx = ExecutionContext.enter(to);
+		try {
+			for (int i = 0; i < values.length; ++i) {
+				this.compositor.getOutput(names.get(i)).setValue(values[i]);
+			}
+		} finally {
+			ExecutionContext.restore(ctx);
+		}
+	}
+
+	/**
+	 * Visits all steps in topological order within the current context.
+	 */
+	private ReturnCode runSteps() {
+		int[] tokens = new int[this.tokenCount];
+		tokens[this.startTarget]++;
+
+		for (int s = 0; s < this.stepNode.length; ++s) {
+			Node n = this.stepNode[s];
+			int first = this.stepTokens[s];
+			int[] targets = this.stepTargets[s];
+
+			if (n != null) {
+				if (tokens[first] == 0)
+					continue;
+				StepGate gate = this.stepGates[s];
+				gate.await(s);
+				try {
+					for (int k = tokens[first]; k > 0; --k) {
+						switch (n.execute()) {
+						case SUCCESS:
+							tokens[targets[0]]++;
+							break;
+						case EXCEPTION:
+							tokens[targets[1]]++;
+							break;
+						default:
+							break;
+						}
+					}
+				} finally {
+					gate.leave(s);
+				}
+			} else {
+				int sets = Integer.MAX_VALUE;
+				for (int i = first, end = first + this.stepWidth[s]; i < end; ++i) {
+					sets = Math.min(sets, tokens[i]);
+				}
+				for (int k = 0; k < sets; ++k) {
+					for (int target : targets) {
+						tokens[target]++;
+					}
+				}
+			}
+		}
+
+		return this.result(tokens[this.endTokens], tokens[this.exceptionTokens]);
+	}
+
+	private ReturnCode result(int end, int exception) {
+		if (end > 0) {
+			return ReturnCode.SUCCESS;
+		} else if (exception > 0) {
+			return ReturnCode.EXCEPTION;
+		} else {
+			return ReturnCode.NOSIGNAL;
+		}
+	}
+
+	/**
+	 * One run of the plan on a {@link ForkJoinPool}.
+	 */
+	private final class ParallelRun {
+
+		private final ExecutionContext ctx;
+		private final ForkJoinPool pool;
+
+		private final AtomicIntegerArray tokens;
+
+		/**
+		 * The number of predecessors of each step that are not finished yet.
+		 */
+		private final AtomicIntegerArray waiting;
+
+		/**
+		 * The number of steps that are not finished yet.
+		 */
+		private final AtomicInteger remaining;
+
+		final CompletableFuture<ReturnCode> result = new CompletableFuture<>();
+
+		ParallelRun(ExecutionContext ctx, ForkJoinPool pool) {
+			this.ctx = ctx;
+			this.pool = pool;
+			this.tokens = new AtomicIntegerArray(tokenCount);
+			this.waiting = new AtomicIntegerArray(stepPredecessors);
+			this.remaining = new AtomicInteger(stepNode.length);
+		}
+
+		void start() {
+			this.tokens.set(startTarget, 1);
+			if (stepNode.length == 0) {
+				this.finish();
+				return;
+			}
+
+			for (int s = 0; s < stepNode.length; ++s) {
+				if (stepPredecessors[s] == 0)
+					this.pool.execute(new StepTask(this, s, false));
+			}
+		}
+
+		/**
+		 * Executes the given step and continues with one of the steps that
+		 * became ready, until none is left. If the {@link Node} of a step is
+		 * executed by another run, this run is queued at its {@link StepGate}
+		 * and continued by the run that leaves it.
+		 *
+		 * @param admitted
+		 *            true if the run was already let through the gate of the
+		 *            step
+		 */
+		void run(int step, boolean admitted) {
+			ExecutionContext prev = ExecutionContext.enter(this.ctx);
+			try {
+				while (step >= 0) {
+					StepGate gate = stepNode[step] != null && this.tokens.get(stepTokens[step]) > 0
+							? stepGates[step]
+							: null;
+					if (gate != null && !admitted && !gate.enter(this, step))
+						return;
+					admitted = false;
+					try {
+						if (this.result.isDone())
+							return;
+						this.execute(step);
+					} finally {
+						if (gate != null)
+							gate.leave(step);
+					}
+
+					int next = -1;
+					for (int successor : stepSuccessors[step]) {
+						if (this.waiting.decrementAndGet(successor) == 0) {
+							if (next >= 0)
+								new StepTask(this, next, false).fork();
+							next = successor;
+						}
+					}
+
+					if (this.remaining.decrementAndGet() == 0)
+						this.finish();
+					step = next;
+				}
+			} catch (RuntimeException | Error e) {
+				this.result.completeExceptionally(e);
+			} finally {
+				ExecutionContext.restore(prev);
+			}
+		}
+
+		private void execute(int step) {
+			Node n = stepNode[step];
+			int first = stepTokens[step];
+			int[] targets = stepTargets[step];
+
+			if (n != null) {
+				for (int k = this.tokens.get(first); k > 0; --k) {
+					switch (n.execute()) {
+					case SUCCESS:
+						this.tokens.incrementAndGet(targets[0]);
+						break;
+					case EXCEPTION:
+						this.tokens.incrementAndGet(targets[1]);
+						break;
+					default:
+						break;
+					}
+				}
+			} else {
+				int sets = Integer.MAX_VALUE;
+				for (int i = first, end = first + stepWidth[step]; i < end; ++i) {
+					sets = Math.min(sets, this.tokens.get(i));
+				}
+				if (sets > 0) {
+					for (int target : targets) {
+						this.tokens.addAndGet(target, sets);
+					}
+				}
+			}
+		}
+
+		private void finish() {
+			this.result.complete(result(this.tokens.get(endTokens), this.tokens.get(exceptionTokens)));
+		}
+	}
+
+	private static final class StepTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final ParallelRun run;
+		private final int step;
+		private final boolean admitted;
+
+		StepTask(ParallelRun run, int step, boolean admitted) {
+			this.run = run;
+			this.step = step;
+			this.admitted = admitted;
+		}
+
+		@Override
+		protected void compute() {
+			this.run.run(this.step, this.admitted);
+		}
+	}
+
+	/**
+	 * Lets one run at a time execute the {@link Node} of a step, so the code
+	 * of a {@link Node} is never executed concurrently (see
+	 * {@link Node#run()}). Like the queue of a
+	 * {@link nodes.signals.NodeSignalInputInterface}, it counts the runs that
+	 * want to enter: the run that raises the count from zero enters, the
+	 * others are queued and let in one after another by the run that leaves.
+	 * A {@link ParallelRun} is continued as a new task then, so no worker
+	 * waits for another one; a caller of execute() parks until it is let in.
+	 */
+	private static final class StepGate {
+		private final AtomicInteger pending = new AtomicInteger();
+		private final ConcurrentLinkedQueue<Object> waiting = new ConcurrentLinkedQueue<>();
+
+		/**
+		 * Returns true if the run may execute the step now, otherwise it is
+		 * continued when it is let in.
+		 */
+		boolean enter(ParallelRun run, int step) {
+			if (this.pending.compareAndSet(0, 1))
+				return true;
+			this.waiting.offer(run);
+			if (this.pending.getAndIncrement() != 0)
+				return false;
+			Object first = this.waiting.poll();
+			if (first == run)
+				return true;
+			admit(first, step);
+			return false;
+		}
+
+		/**
+		 * Waits on the calling thread until it may execute the step.
+		 */
+		void await(int step) {
+			if (this.pending.compareAndSet(0, 1))
+				return;
+			Waiter self = new Waiter();
+			this.waiting.offer(self);
+			if (this.pending.getAndIncrement() == 0) {
+				Object first = this.waiting.poll();
+				if (first == self)
+					return;
+				admit(first, step);
+			}
+			boolean interrupted = false;
+			while (!self.admitted) {
+				LockSupport.park(this);
+				interrupted |= Thread.interrupted();
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+
+		/**
+		 * Lets the next queued run in, if there is one.
+		 */
+		void leave(int step) {
+			if (this.pending.decrementAndGet() != 0) {
+				// offered before the count was raised
+				admit(this.waiting.poll(), step);
+			}
+		}
+
+		private static void admit(Object next, int step) {
+			if (next instanceof Waiter) {
+				Waiter w = (Waiter) next;
+				w.admitted = true;
+				LockSupport.unpark(w.thread);
+			} else {
+				ParallelRun run = (ParallelRun) next;
+				run.pool.execute(new StepTask(run, step, true));
+			}
+		}
+	}
+
+	private static final class Waiter {
+		final Thread thread = Thread.currentThread();
+		volatile boolean admitted;
+	}
+
+	/**
+	 * The pool used by submit(ExecutionContext), created on first use.
+	 */
+	private static final class DefaultPool {
+		static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+				new DaemonWorkerFactory(), null, false);
+	}
+
+	private static final class DaemonWorkerFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+		@Override
+		public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+			ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			t.setName("plan-fj-" + t.getPoolIndex());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+}
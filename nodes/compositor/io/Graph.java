@@ -0,0 +1,327 @@
+package nodes.compositor.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import nodes.Node;
+import nodes.NodeInputInterface;
+import nodes.NodeOutputInterface;
+import nodes.compositor.Compositor;
+import nodes.signals.SignalInputInterface;
+import nodes.signals.SignalOutputInterface;
+import nodes.signals.SignalSyncronizer;
+
+/**
+ * The stored form of the graph of a {@link Compositor}: its {@link Node}s,
+ * {@link SignalSyncronizer}s, data edges and signal edges. All names are kept
+ * in one string table and referenced by index.
+ *
+ * {@link Node}s and {@link SignalSyncronizer}s are referenced by their index
+ * in the graph, the index -1 stands for the {@link Compositor} itself (its
+ * inner inputs and outputs).
+ */
+final class Graph {
+
+	static final int MAGIC = 0x43475246; // "CGRF"
+	static final int VERSION = 1;
+
+	/**
+	 * The kinds of signal endpoints. As source, NODE is the signal output and
+	 * NODE_EXCEPTION the exception output of a {@link Node}, COMPOSITOR the
+	 * start of the {@link Compositor}. As target, NODE is the signal input of a
+	 * {@link Node}, COMPOSITOR the end and COMPOSITOR_EXCEPTION the inner
+	 * exception receiver. SYNC is an input or output of a
+	 * {@link SignalSyncronizer}.
+	 */
+	static final byte NODE = 0, NODE_EXCEPTION = 1, SYNC = 2, COMPOSITOR = 3, COMPOSITOR_EXCEPTION = 4;
+
+	static final String[] KIND_NAMES = { "node", "exception", "sync", "compositor", "compositor-exception" };
+
+	String[] strings;
+
+	int[] nodeTypes;
+	String[] nodeParameters;
+
+	int[] syncInputs, syncOutputs;
+
+	int dataCount;
+	int[] dataSource, dataSourcePort, dataTarget, dataTargetPort;
+
+	int signalCount;
+	byte[] signalSourceKind, signalTargetKind;
+	int[] signalSource, signalSourcePort, signalTarget, signalTargetPort;
+
+	Graph() {
+	}
+
+	/**
+	 * Captures the graph of the given {@link Compositor}.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a {@link Node} is not registered
+	 * @throws IllegalStateException
+	 *             if an edge leaves the {@link Compositor}
+	 */
+	static Graph capture(Compositor c, NodeRegistry registry) {
+		Graph g = new Graph();
+		StringTable table = new StringTable();
+
+		List<Node> nodes = c.getNodes();
+		List<SignalSyncronizer> syncs = c.getSyncronizers();
+		g.nodeTypes = new int[nodes.size()];
+		g.nodeParameters = new String[nodes.size()];
+		for (int i = 0; i < nodes.size(); ++i) {
+			g.nodeTypes[i] = table.index(registry.getType(nodes.get(i)));
+			g.nodeParameters[i] = registry.encode(nodes.get(i));
+		}
+
+		int i = 0;
+		g.syncInputs = new int[syncs.size()];
+		g.syncOutputs = new int[syncs.size()];
+		for (SignalSyncronizer sync : syncs) {
+			g.syncInputs[i] = sync.getInputSize();
+			g.syncOutputs[i++] = sync.getOutputSize();
+		}
+
+		// data edges
+		Map<NodeOutputInterface, int[]> sources = new IdentityHashMap<>();
+		for (Map.Entry<String, NodeOutputInterface> e : c.getInnerInputs().entrySet()) {
+			sources.put(e.getValue(), new int[] { -1, table.index(e.getKey()) });
+		}
+		for (i = 0; i < nodes.size(); ++i) {
+			for (Map.Entry<String, NodeOutputInterface> e : nodes.get(i).getOutputs().entrySet()) {
+				sources.put(e.getValue(), new int[] { i, table.index(e.getKey()) });
+			}
+		}
+
+		g.dataSource = new int[16];
+		g.dataSourcePort = new int[16];
+		g.dataTarget = new int[16];
+		g.dataTargetPort = new int[16];
+		for (i = 0; i < nodes.size(); ++i) {
+			for (Map.Entry<String, NodeInputInterface> e : nodes.get(i).getInputs().entrySet()) {
+				g.addData(sources, e.getValue(), i, table.index(e.getKey()));
+			}
+		}
+		for (Map.Entry<String, NodeInputInterface> e : c.getInnerOutputs().entrySet()) {
+			g.addData(sources, e.getValue(), -1, table.index(e.getKey()));
+		}
+
+		// signal edges
+		Map<SignalInputInterface, int[]> targets = new IdentityHashMap<>();
+		targets.put(c.getSignalEnd(), new int[] { COMPOSITOR, -1, 0 });
+		targets.put(c.getInnerExceptionReciever(), new int[] { COMPOSITOR_EXCEPTION, -1, 0 });
+		for (i = 0; i < nodes.size(); ++i) {
+			targets.put(nodes.get(i).getSignalInput(), new int[] { NODE, i, 0 });
+		}
+		i = 0;
+		for (SignalSyncronizer sync : syncs) {
+			for (int p = 0; p < sync.getInputSize(); ++p) {
+				targets.put(sync.getInput(p), new int[] { SYNC, i, p });
+			}
+			i++;
+		}
+
+		g.signalSourceKind = new byte[16];
+		g.signalTargetKind = new byte[16];
+		g.signalSource = new int[16];
+		g.signalSourcePort = new int[16];
+		g.signalTarget = new int[16];
+		g.signalTargetPort = new int[16];
+		g.addSignal(targets, c.getSignalStart(), COMPOSITOR, -1, 0);
+		for (i = 0; i < nodes.size(); ++i) {
+			g.addSignal(targets, nodes.get(i).getSignalOutput(), NODE, i, 0);
+			g.addSignal(targets, nodes.get(i).getExceptionOutput(), NODE_EXCEPTION, i, 0);
+		}
+		i = 0;
+		for (SignalSyncronizer sync : syncs) {
+			for (int p = 0; p < sync.getOutputSize(); ++p) {
+				g.addSignal(targets, sync.getOutput(p), SYNC, i, p);
+			}
+			i++;
+		}
+
+		g.strings = table.toArray();
+		return g;
+	}
+
+	private void addData(Map<NodeOutputInterface, int[]> sources, NodeInputInterface in, int target, int port) {
+		NodeOutputInterface out = in.getSource();
+		if (out == null) {
+			return;
+		}
+
+		int[] source = sources.get(out);
+		if (source == null) {
+			throw new IllegalStateException("A data edge leaves the compositor.");
+		}
+
+		if (this.dataCount == this.dataSource.length) {
+			int capacity = this.dataCount * 2;
+			this.dataSource = Arrays.copyOf(this.dataSource, capacity);
+			this.dataSourcePort = Arrays.copyOf(this.dataSourcePort, capacity);
+			this.dataTarget = Arrays.copyOf(this.dataTarget, capacity);
+			this.dataTargetPort = Arrays.copyOf(this.dataTargetPort, capacity);
+		}
+		this.dataSource[this.dataCount] = source[0];
+		this.dataSourcePort[this.dataCount] = source[1];
+		this.dataTarget[this.dataCount] = target;
+		this.dataTargetPort[this.dataCount] = port;
+		this.dataCount++;
+	}
+
+	private void addSignal(Map<SignalInputInterface, int[]> targets, SignalOutputInterface out, byte kind, int source,
+			int port) {
+		SignalInputInterface in = out.getTarget();
+		if (in == null) {
+			return;
+		}
+
+		int[] target = targets.get(in);
+		if (target == null) {
+			throw new IllegalStateException("A signal is routed outside of the compositor.");
+		}
+
+		if (this.signalCount == this.signalSource.length) {
+			int capacity = this.signalCount * 2;
+			this.signalSourceKind = Arrays.copyOf(this.signalSourceKind, capacity);
+			this.signalTargetKind = Arrays.copyOf(this.signalTargetKind, capacity);
+			this.signalSource = Arrays.copyOf(this.signalSource, capacity);
+			this.signalSourcePort = Arrays.copyOf(this.signalSourcePort, capacity);
+			this.signalTarget = Arrays.copyOf(this.signalTarget, capacity);
+			this.signalTargetPort = Arrays.copyOf(this.signalTargetPort, capacity);
+		}
+		this.signalSourceKind[this.signalCount] = kind;
+		this.signalSource[this.signalCount] = source;
+		this.signalSourcePort[this.signalCount] = port;
+		this.signalTargetKind[this.signalCount] = (byte) target[0];
+		this.signalTarget[this.signalCount] = target[1];
+		this.signalTargetPort[this.signalCount] = target[2];
+		this.signalCount++;
+	}
+
+	/**
+	 * Creates all {@link Node}s, {@link SignalSyncronizer}s and edges of this
+	 * graph in the given {@link Compositor}. Inputs and outputs of the
+	 * {@link Compositor} that are used by edges must be registered already.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a {@link Node} type or an interface is unknown
+	 */
+	void build(Compositor c, NodeRegistry registry) {
+		Node[] nodes = new Node[this.nodeTypes.length];
+		c.ensureCapacity(nodes.length);
+		for (int i = 0; i < nodes.length; ++i) {
+			nodes[i] = registry.create(this.string(this.nodeTypes[i]), this.nodeParameters[i]);
+			c.addNode(nodes[i]);
+		}
+
+		SignalSyncronizer[] syncs = new SignalSyncronizer[this.syncInputs.length];
+		for (int i = 0; i < syncs.length; ++i) {
+			syncs[i] = new SignalSyncronizer(this.syncInputs[i], this.syncOutputs[i]);
+			c.addSyncronizer(syncs[i]);
+		}
+
+		for (int e = 0; e < this.dataCount; ++e) {
+			String sourceName = this.string(this.dataSourcePort[e]);
+			String targetName = this.string(this.dataTargetPort[e]);
+			NodeOutputInterface out = this.dataSource[e] < 0 ? c.getInnerInput(sourceName)
+					: this.node(nodes, this.dataSource[e]).getOutput(sourceName);
+			NodeInputInterface in = this.dataTarget[e] < 0 ? c.getInnerOutput(targetName)
+					: this.node(nodes, this.dataTarget[e]).getInput(targetName);
+			if (out == null) {
+				throw new IllegalArgumentException("OutputInterface not found: " + sourceName);
+			}
+			if (in == null) {
+				throw new IllegalArgumentException("InputInterface not found: " + targetName);
+			}
+			in.setConnection(out);
+		}
+
+		for (int e = 0; e < this.signalCount; ++e) {
+			SignalOutputInterface out = this.signalSource(c, nodes, syncs, e);
+			SignalInputInterface in = this.signalTarget(c, nodes, syncs, e);
+			out.setConnection(in);
+		}
+	}
+
+	private SignalOutputInterface signalSource(Compositor c, Node[] nodes, SignalSyncronizer[] syncs, int e) {
+		int index = this.signalSource[e];
+		switch (this.signalSourceKind[e]) {
+		case NODE:
+			return this.node(nodes, index).getSignalOutput();
+		case NODE_EXCEPTION:
+			return this.node(nodes, index).getExceptionOutput();
+		case SYNC:
+			return this.sync(syncs, index).getOutput(this.signalSourcePort[e]);
+		case COMPOSITOR:
+			return c.getSignalStart();
+		default:
+			throw new IllegalArgumentException("Invalid signal source.");
+		}
+	}
+
+	private SignalInputInterface signalTarget(Compositor c, Node[] nodes, SignalSyncronizer[] syncs, int e) {
+		int index = this.signalTarget[e];
+		switch (this.signalTargetKind[e]) {
+		case NODE:
+			return this.node(nodes, index).getSignalInput();
+		case SYNC:
+			return this.sync(syncs, index).getInput(this.signalTargetPort[e]);
+		case COMPOSITOR:
+			return c.getSignalEnd();
+		case COMPOSITOR_EXCEPTION:
+			return c.getInnerExceptionReciever();
+		default:
+			throw new IllegalArgumentException("Invalid signal target.");
+		}
+	}
+
+	private Node node(Node[] nodes, int index) {
+		if (index < 0 || index >= nodes.length) {
+			throw new IllegalArgumentException("Invalid node index " + index);
+		}
+		return nodes[index];
+	}
+
+	private SignalSyncronizer sync(SignalSyncronizer[] syncs, int index) {
+		if (index < 0 || index >= syncs.length) {
+			throw new IllegalArgumentException("Invalid syncronizer index " + index);
+		}
+		return syncs[index];
+	}
+
+	String string(int index) {
+		if (index < 0 || index >= this.strings.length) {
+			throw new IllegalArgumentException("Invalid string index " + index);
+		}
+		return this.strings[index];
+	}
+
+	/**
+	 * Collects distinct strings in the order of their first use.
+	 */
+	static final class StringTable {
+		private final HashMap<String, Integer> indices = new HashMap<>();
+		private final ArrayList<String> strings = new ArrayList<>();
+
+		int index(String s) {
+			Integer i = this.indices.get(s);
+			if (i == null) {
+				i = this.strings.size();
+				this.indices.put(s, i);
+				this.strings.add(s);
+			}
+			return i;
+		}
+
+		String[] toArray() {
+			return this.strings.toArray(new String[this.strings.size()]);
+		}
+	}
+
+}
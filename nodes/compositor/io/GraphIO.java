@@ -0,0 +1,507 @@
+package nodes.compositor.io;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import nodes.Node;
+import nodes.compositor.Compositor;
+import nodes.signals.SignalSyncronizer;
+
+/**
+ * Stores the graph of a {@link Compositor} and restores it, so large graphs do
+ * not have to be built in code on every start.
+ *
+ * A graph consists of the {@link Node}s (their type names and parameters, see
+ * {@link NodeRegistry}), the {@link SignalSyncronizer}s, the data edges between
+ * named interfaces and the signal edges. The inputs and outputs of the
+ * {@link Compositor} itself are not stored; they must be registered before a
+ * graph that uses them is read.
+ *
+ * There are two formats:
+ * <ul>
+ * <li>A binary format: a header (magic number and version) followed by a
+ * string table and flat tables of ints. It is read from a memory-mapped file
+ * without copying it.</li>
+ * <li>A text format with one line per {@link Node}, {@link SignalSyncronizer}
+ * and edge, for reading and editing by hand.</li>
+ * </ul>
+ *
+ * Most of the time of loading a large graph goes into creating its
+ * {@link Node}s (and collecting them later), not into reading the format.
+ *
+ * The binary layout (all numbers big-endian, strings as int length and UTF-8
+ * bytes):
+ *
+ * <pre>
+ * int magic, int version
+ * int stringCount, string[stringCount]
+ * int nodeCount, (int type, string parameters)[nodeCount]
+ * int syncCount, (int inputs, int outputs)[syncCount]
+ * int dataCount, (int source, int sourcePort, int target, int targetPort)[dataCount]
+ * int signalCount, (byte sourceKind, int source, int sourcePort,
+ *                   byte targetKind, int target, int targetPort)[signalCount]
+ * </pre>
+ */
+public final class GraphIO {
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	private GraphIO() {
+	}
+
+	/**
+	 * Writes the graph of the given {@link Compositor} in the binary format.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a {@link Node} is not registered
+	 * @throws IllegalStateException
+	 *             if an edge leaves the {@link Compositor}
+	 */
+	public static void writeBinary(Compositor c, NodeRegistry registry, Path file) throws IOException {
+		try (OutputStream out = Files.newOutputStream(file)) {
+			writeBinary(c, registry, out);
+		}
+	}
+
+	/**
+	 * Like writeBinary(Compositor, NodeRegistry, Path), but writes to a
+	 * stream. The stream is not closed.
+	 */
+	public static void writeBinary(Compositor c, NodeRegistry registry, OutputStream stream) throws IOException {
+		Graph g = Graph.capture(c, registry);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+
+		out.writeInt(Graph.MAGIC);
+		out.writeInt(Graph.VERSION);
+
+		out.writeInt(g.strings.length);
+		for (String s : g.strings) {
+			writeString(out, s);
+		}
+
+		out.writeInt(g.nodeTypes.length);
+		for (int i = 0; i < g.nodeTypes.length; ++i) {
+			out.writeInt(g.nodeTypes[i]);
+			writeString(out, g.nodeParameters[i]);
+		}
+
+		out.writeInt(g.syncInputs.length);
+		for (int i = 0; i < g.syncInputs.length; ++i) {
+			out.writeInt(g.syncInputs[i]);
+			out.writeInt(g.syncOutputs[i]);
+		}
+
+		out.writeInt(g.dataCount);
+		for (int i = 0; i < g.dataCount; ++i) {
+			out.writeInt(g.dataSource[i]);
+			out.writeInt(g.dataSourcePort[i]);
+			out.writeInt(g.dataTarget[i]);
+			out.writeInt(g.dataTargetPort[i]);
+		}
+
+		out.writeInt(g.signalCount);
+		for (int i = 0; i < g.signalCount; ++i) {
+			out.writeByte(g.signalSourceKind[i]);
+			out.writeInt(g.signalSource[i]);
+			out.writeInt(g.signalSourcePort[i]);
+			out.writeByte(g.signalTargetKind[i]);
+			out.writeInt(g.signalTarget[i]);
+			out.writeInt(g.signalTargetPort[i]);
+		}
+		out.flush();
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a graph in the binary format from a memory-mapped file and adds
+	 * it to the given {@link Compositor}.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be read or is not a valid graph
+	 * @throws IllegalArgumentException
+	 *             if a {@link Node} type or an interface is unknown
+	 */
+	public static void readBinary(Path file, NodeRegistry registry, Compositor into) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		readBinary(buffer, registry, into);
+	}
+
+	/**
+	 * Reads a graph in the binary format from the given buffer, starting at
+	 * its position, and adds it to the given {@link Compositor}.
+	 *
+	 * @throws IOException
+	 *             if the buffer does not contain a valid graph
+	 * @throws IllegalArgumentException
+	 *             if a {@link Node} type or an interface is unknown
+	 */
+	public static void readBinary(ByteBuffer buffer, NodeRegistry registry, Compositor into) throws IOException {
+		Graph g = new Graph();
+		try {
+			if (buffer.getInt() != Graph.MAGIC) {
+				throw new IOException("Not a compositor graph.");
+			}
+			int version = buffer.getInt();
+			if (version != Graph.VERSION) {
+				throw new IOException("Unsupported graph version " + version);
+			}
+
+			g.strings = new String[count(buffer)];
+			for (int i = 0; i < g.strings.length; ++i) {
+				g.strings[i] = readString(buffer);
+			}
+
+			int nodes = count(buffer);
+			g.nodeTypes = new int[nodes];
+			g.nodeParameters = new String[nodes];
+			for (int i = 0; i < nodes; ++i) {
+				g.nodeTypes[i] = buffer.getInt();
+				g.nodeParameters[i] = readString(buffer);
+			}
+
+			int syncs = count(buffer);
+			g.syncInputs = new int[syncs];
+			g.syncOutputs = new int[syncs];
+			for (int i = 0; i < syncs; ++i) {
+				g.syncInputs[i] = buffer.getInt();
+				g.syncOutputs[i] = buffer.getInt();
+			}
+
+			g.dataCount = count(buffer);
+			g.dataSource = new int[g.dataCount];
+			g.dataSourcePort = new int[g.dataCount];
+			g.dataTarget = new int[g.dataCount];
+			g.dataTargetPort = new int[g.dataCount];
+			for (int i = 0; i < g.dataCount; ++i) {
+				g.dataSource[i] = buffer.getInt();
+				g.dataSourcePort[i] = buffer.getInt();
+				g.dataTarget[i] = buffer.getInt();
+				g.dataTargetPort[i] = buffer.getInt();
+			}
+
+			g.signalCount = count(buffer);
+			g.signalSourceKind = new byte[g.signalCount];
+			g.signalSource = new int[g.signalCount];
+			g.signalSourcePort = new int[g.signalCount];
+			g.signalTargetKind = new byte[g.signalCount];
+			g.signalTarget = new int[g.signalCount];
+			g.signalTargetPort = new int[g.signalCount];
+			for (int i = 0; i < g.signalCount; ++i) {
+				g.signalSourceKind[i] = buffer.get();
+				g.signalSource[i] = buffer.getInt();
+				g.signalSourcePort[i] = buffer.getInt();
+				g.signalTargetKind[i] = buffer.get();
+				g.signalTarget[i] = buffer.getInt();
+				g.signalTargetPort[i] = buffer.getInt();
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IOException("The graph is truncated.");
+		}
+
+		g.build(into, registry);
+	}
+
+	private static int count(ByteBuffer buffer) throws IOException {
+		int n = buffer.getInt();
+		if (n < 0 || n > buffer.remaining()) {
+			throw new IOException("Invalid count " + n);
+		}
+		return n;
+	}
+
+	private static String readString(ByteBuffer buffer) throws IOException {
+		int length = count(buffer);
+		String s;
+		if (buffer.hasArray()) {
+			s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+		} else {
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			s = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return s;
+	}
+
+	/**
+	 * Writes the graph of the given {@link Compositor} in the text format.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a {@link Node} is not registered
+	 * @throws IllegalStateException
+	 *             if an edge leaves the {@link Compositor}
+	 */
+	public static void writeText(Compositor c, NodeRegistry registry, Path file) throws IOException {
+		try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writeText(c, registry, out);
+		}
+	}
+
+	/**
+	 * Like writeText(Compositor, NodeRegistry, Path), but writes to a
+	 * {@link Writer}. The writer is not closed.
+	 *
+	 * Each line starts with a keyword:
+	 *
+	 * <pre>
+	 * compositor-graph &lt;version&gt;
+	 * node &lt;index&gt; &lt;type&gt; &lt;parameters&gt;
+	 * sync &lt;index&gt; &lt;inputs&gt; &lt;outputs&gt;
+	 * data &lt;source&gt; &lt;output&gt; &lt;target&gt; &lt;input&gt;
+	 * signal &lt;kind&gt; &lt;source&gt; &lt;port&gt; &lt;kind&gt; &lt;target&gt; &lt;port&gt;
+	 * </pre>
+	 *
+	 * The {@link Compositor} itself has the index -1. Spaces, line breaks,
+	 * tabs, '%' and '~' within names and parameters are written as %XX, an
+	 * empty string as '~'.
+	 * Lines starting with '#' are ignored.
+	 */
+	public static void writeText(Compositor c, NodeRegistry registry, Writer writer) throws IOException {
+		Graph g = Graph.capture(c, registry);
+		BufferedWriter out = new BufferedWriter(writer, 1 << 16);
+
+		out.write("compositor-graph " + Graph.VERSION + "\n");
+		for (int i = 0; i < g.nodeTypes.length; ++i) {
+			out.write("node " + i + " " + escape(g.strings[g.nodeTypes[i]]) + " " + escape(g.nodeParameters[i])
+					+ "\n");
+		}
+		for (int i = 0; i < g.syncInputs.length; ++i) {
+			out.write("sync " + i + " " + g.syncInputs[i] + " " + g.syncOutputs[i] + "\n");
+		}
+		for (int i = 0; i < g.dataCount; ++i) {
+			out.write("data " + g.dataSource[i] + " " + escape(g.strings[g.dataSourcePort[i]]) + " "
+					+ g.dataTarget[i] + " " + escape(g.strings[g.dataTargetPort[i]]) + "\n");
+		}
+		for (int i = 0; i < g.signalCount; ++i) {
+			out.write("signal " + Graph.KIND_NAMES[g.signalSourceKind[i]] + " " + g.signalSource[i] + " "
+					+ g.signalSourcePort[i] + " " + Graph.KIND_NAMES[g.signalTargetKind[i]] + " "
+					+ g.signalTarget[i] + " " + g.signalTargetPort[i] + "\n");
+		}
+		out.flush();
+	}
+
+	/**
+	 * Reads a graph in the text format and adds it to the given
+	 * {@link Compositor}.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be read or is not a valid graph
+	 * @throws IllegalArgumentException
+	 *             if a {@link Node} type or an interface is unknown
+	 */
+	public static void readText(Path file, NodeRegistry registry, Compositor into) throws IOException {
+		try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			readText(in, registry, into);
+		}
+	}
+
+	/**
+	 * Like readText(Path, NodeRegistry, Compositor), but reads from a
+	 * {@link Reader}. The reader is not closed.
+	 */
+	public static void readText(Reader reader, NodeRegistry registry, Compositor into) throws IOException {
+		BufferedReader in = new BufferedReader(reader);
+		Graph.StringTable table = new Graph.StringTable();
+		List<String> types = new ArrayList<>();
+		List<String> parameters = new ArrayList<>();
+		List<int[]> syncs = new ArrayList<>();
+		List<int[]> data = new ArrayList<>();
+		List<int[]> signals = new ArrayList<>();
+
+		String line = in.readLine();
+		if (line == null || !line.startsWith("compositor-graph ")) {
+			throw new IOException("Not a compositor graph.");
+		}
+		int version = parseInt(line.substring("compositor-graph ".length()).trim(), 1);
+		if (version != Graph.VERSION) {
+			throw new IOException("Unsupported graph version " + version);
+		}
+
+		int number = 1;
+		while ((line = in.readLine()) != null) {
+			++number;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+
+			String[] f = line.split("\\s+");
+			switch (f[0]) {
+			case "node":
+				expect(f, 4, number);
+				if (parseInt(f[1], number) != types.size()) {
+					throw new IOException("Line " + number + ": nodes must be numbered in order.");
+				}
+				types.add(unescape(f[2], number));
+				parameters.add(unescape(f[3], number));
+				break;
+			case "sync":
+				expect(f, 4, number);
+				if (parseInt(f[1], number) != syncs.size()) {
+					throw new IOException("Line " + number + ": syncronizers must be numbered in order.");
+				}
+				syncs.add(new int[] { parseInt(f[2], number), parseInt(f[3], number) });
+				break;
+			case "data":
+				expect(f, 5, number);
+				data.add(new int[] { parseInt(f[1], number), table.index(unescape(f[2], number)),
+						parseInt(f[3], number), table.index(unescape(f[4], number)) });
+				break;
+			case "signal":
+				expect(f, 7, number);
+				signals.add(new int[] { kind(f[1], number), parseInt(f[2], number), parseInt(f[3], number),
+						kind(f[4], number), parseInt(f[5], number), parseInt(f[6], number) });
+				break;
+			default:
+				throw new IOException("Line " + number + ": unknown keyword " + f[0]);
+			}
+		}
+
+		Graph g = new Graph();
+		g.nodeTypes = new int[types.size()];
+		g.nodeParameters = parameters.toArray(new String[parameters.size()]);
+		for (int i = 0; i < g.nodeTypes.length; ++i) {
+			g.nodeTypes[i] = table.index(types.get(i));
+		}
+
+		g.syncInputs = new int[syncs.size()];
+		g.syncOutputs = new int[syncs.size()];
+		for (int i = 0; i < g.syncInputs.length; ++i) {
+			g.syncInputs[i] = syncs.get(i)[0];
+			g.syncOutputs[i] = syncs.get(i)[1];
+		}
+
+		g.dataCount = data.size();
+		g.dataSource = new int[g.dataCount];
+		g.dataSourcePort = new int[g.dataCount];
+		g.dataTarget = new int[g.dataCount];
+		g.dataTargetPort = new int[g.dataCount];
+		for (int i = 0; i < g.dataCount; ++i) {
+			int[] e = data.get(i);
+			g.dataSource[i] = e[0];
+			g.dataSourcePort[i] = e[1];
+			g.dataTarget[i] = e[2];
+			g.dataTargetPort[i] = e[3];
+		}
+
+		g.signalCount = signals.size();
+		g.signalSourceKind = new byte[g.signalCount];
+		g.signalSource = new int[g.signalCount];
+		g.signalSourcePort = new int[g.signalCount];
+		g.signalTargetKind = new byte[g.signalCount];
+		g.signalTarget = new int[g.signalCount];
+		g.signalTargetPort = new int[g.signalCount];
+		for (int i = 0; i < g.signalCount; ++i) {
+			int[] e = signals.get(i);
+			g.signalSourceKind[i] = (byte) e[0];
+			g.signalSource[i] = e[1];
+			g.signalSourcePort[i] = e[2];
+			g.signalTargetKind[i] = (byte) e[3];
+			g.signalTarget[i] = e[4];
+			g.signalTargetPort[i] = e[5];
+		}
+
+		g.strings = table.toArray();
+		g.build(into, registry);
+	}
+
+	private static void expect(String[] fields, int count, int line) throws IOException {
+		if (fields.length != count) {
+			throw new IOException("Line " + line + ": expected " + count + " fields.");
+		}
+	}
+
+	private static int parseInt(String s, int line) throws IOException {
+		try {
+			return Integer.parseInt(s);
+		} catch (NumberFormatException e) {
+			throw new IOException("Line " + line + ": " + s + " is not a number.");
+		}
+	}
+
+	private static int kind(String s, int line) throws IOException {
+		for (int i = 0; i < Graph.KIND_NAMES.length; ++i) {
+			if (Graph.KIND_NAMES[i].equals(s)) {
+				return i;
+			}
+		}
+		throw new IOException("Line " + line + ": unknown signal endpoint " + s);
+	}
+
+	static String escape(String s) {
+		if (s.isEmpty()) {
+			return "~";
+		}
+
+		StringBuilder b = null;
+		for (int i = 0; i < s.length(); ++i) {
+			char c = s.charAt(i);
+			if (c == '%' || c == '~' || c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B) {
+				if (b == null) {
+					b = new StringBuilder(s.length() + 8).append(s, 0, i);
+				}
+				b.append('%').append(HEX[c >> 4]).append(HEX[c & 0xF]);
+			} else if (b != null) {
+				b.append(c);
+			}
+		}
+		return b == null ? s : b.toString();
+	}
+
+	/**
+	 * Reverses escape().
+	 *
+	 * @throws IOException
+	 *             if a % is not followed by two hex digits
+	 */
+	static String unescape(String s, int line) throws IOException {
+		if (s.equals("~")) {
+			return "";
+		}
+		if (s.indexOf('%') < 0) {
+			return s;
+		}
+
+		StringBuilder b = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); ++i) {
+			char c = s.charAt(i);
+			if (c == '%') {
+				int high = i + 2 < s.length() ? Character.digit(s.charAt(i + 1), 16) : -1;
+				int low = high >= 0 ? Character.digit(s.charAt(i + 2), 16) : -1;
+				if (low < 0) {
+					throw new IOException("Line " + line + ": invalid escape in " + s);
+				}
+				b.append((char) (high << 4 | low));
+				i += 2;
+			} else {
+				b.append(c);
+			}
+		}
+		return b.toString();
+	}
+
+}
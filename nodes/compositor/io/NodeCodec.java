@@ -0,0 +1,31 @@
+package nodes.compositor.io;
+
+import nodes.Node;
+
+/**
+ * A {@link NodeCodec} stores the parameters a {@link Node} was created with,
+ * so a stored graph can create an equal {@link Node} again. The interfaces and
+ * edges of the {@link Node} are stored by the graph itself.
+ *
+ * @param <T>
+ *            the type of the {@link Node}
+ */
+public interface NodeCodec<T extends Node> {
+
+	/**
+	 * Returns the parameters of the given {@link Node}, an empty string if it
+	 * has none.
+	 */
+	String encode(T node);
+
+	/**
+	 * Creates a {@link Node} with the given parameters.
+	 *
+	 * @param parameters
+	 *            a string returned by encode()
+	 * @throws IllegalArgumentException
+	 *             if the parameters are invalid
+	 */
+	T decode(String parameters);
+
+}
@@ -0,0 +1,128 @@
+package nodes.compositor.io;
+
+import java.util.HashMap;
+import java.util.function.Supplier;
+
+import nodes.Node;
+
+/**
+ * A {@link NodeRegistry} maps the classes of {@link Node}s to the type names
+ * that are stored in a graph and knows how to create them again.
+ *
+ * Only {@link Node}s whose exact class is registered can be stored.
+ */
+public class NodeRegistry {
+
+	private final HashMap<String, Entry<?>> byName = new HashMap<>();
+	private final HashMap<Class<?>, Entry<?>> byClass = new HashMap<>();
+
+	/**
+	 * Registers a {@link Node} class with parameters.
+	 *
+	 * @param type
+	 *            the name that is stored in the graph
+	 * @param clazz
+	 *            the class of the {@link Node}s
+	 * @param codec
+	 *            stores and restores the parameters
+	 * @throws IllegalArgumentException
+	 *             if the name or the class is already registered
+	 */
+	public <T extends Node> void register(String type, Class<T> clazz, NodeCodec<T> codec) {
+		if (this.byName.containsKey(type)) {
+			throw new IllegalArgumentException(type + " is already registered.");
+		}
+		if (this.byClass.containsKey(clazz)) {
+			throw new IllegalArgumentException(clazz.getName() + " is already registered.");
+		}
+
+		Entry<T> e = new Entry<>(type, clazz, codec);
+		this.byName.put(type, e);
+		this.byClass.put(clazz, e);
+	}
+
+	/**
+	 * Registers a {@link Node} class without parameters.
+	 *
+	 * @param type
+	 *            the name that is stored in the graph
+	 * @param clazz
+	 *            the class of the {@link Node}s
+	 * @param factory
+	 *            creates a new {@link Node}
+	 * @throws IllegalArgumentException
+	 *             if the name or the class is already registered
+	 */
+	public <T extends Node> void register(String type, Class<T> clazz, final Supplier<T> factory) {
+		this.register(type, clazz, new NodeCodec<T>() {
+			@Override
+			public String encode(T node) {
+				return "";
+			}
+
+			@Override
+			public T decode(String parameters) {
+				return factory.get();
+			}
+		});
+	}
+
+	/**
+	 * Returns the type name of the given {@link Node}.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if its class is not registered
+	 */
+	public String getType(Node n) {
+		return this.entry(n).type;
+	}
+
+	/**
+	 * Returns the parameters of the given {@link Node}.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if its class is not registered
+	 */
+	public String encode(Node n) {
+		return this.entry(n).encode(n);
+	}
+
+	/**
+	 * Creates a {@link Node} of the given type.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the type is unknown or the parameters are invalid
+	 */
+	public Node create(String type, String parameters) {
+		Entry<?> e = this.byName.get(type);
+		if (e == null) {
+			throw new IllegalArgumentException("Unknown node type: " + type);
+		}
+		return e.codec.decode(parameters);
+	}
+
+	private Entry<?> entry(Node n) {
+		Entry<?> e = this.byClass.get(n.getClass());
+		if (e == null) {
+			throw new IllegalArgumentException(n.getClass().getName() + " is not registered.");
+		}
+		return e;
+	}
+
+	private static class Entry<T extends Node> {
+		private final String type;
+		private final Class<T> clazz;
+		private final NodeCodec<T> codec;
+
+		Entry(String type, Class<T> clazz, NodeCodec<T> codec) {
+			this.type = type;
+			this.clazz = clazz;
+			this.codec = codec;
+		}
+
+		String encode(Node n) {
+			return this.codec.encode(this.clazz.cast(n));
+		}
+	}
+
+}
@@ -1,79 +1,717 @@
 package nodes.signals;
 
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
+import nodes.ExecutionContext;
 import nodes.Node;
+import nodes.NodeMetrics;
+import nodes.signals.scheduler.SignalScheduler;
+import nodes.signals.scheduler.SignalSchedulers;
 import utils.Logging;
 import utils.Logging.LogLevel;
 
+/**
+ * The {@link NodeSignalInputInterface} is the mailbox of a {@link Node}.
+ * 
+ * Any number of threads may send {@link Signal}s concurrently. Sending never
+ * waits for the {@link Node}: the {@link Signal} is appended to a lock-free
+ * queue and, if the {@link Node} is idle, a handler task is given to the
+ * {@link SignalScheduler}. The handler executes the {@link Node} once per
+ * {@link Signal}, one {@link Signal} at a time.
+ * 
+ * If batch execution is enabled on the {@link Node}, the handler drains all
+ * queued {@link Signal}s of the same {@link ExecutionContext} at once and
+ * executes the {@link Node} once per batch.
+ * 
+ * By default the queue is unbounded. With setCapacity() it holds a limited
+ * number of {@link Signal}s and an {@link OverflowPolicy} decides what happens
+ * to further {@link Signal}s. {@link OverflowPolicy#BLOCK} never lets a thread
+ * wait for a permit that only it or its own pool could free, see there.
+ */
 public class NodeSignalInputInterface extends SignalInputInterface {
 
+	/**
+	 * The maximum number of {@link Signal}s a handler task handles before it
+	 * gives its thread back to the {@link SignalScheduler}.
+	 */
+	private static final int THROUGHPUT = 64;
+
 	private Node parent;
-	private Queue<Signal> signalQueue;
-	private Thread myThread;
+
+	/**
+	 * Holds the {@link Signal}s, or {@link Queued} entries while the
+	 * {@link NodeMetrics} are enabled.
+	 */
+	private Queue<Object> signalQueue;
+	private volatile SignalScheduler scheduler;
+	private Runnable handler;
 	private NodeSignalInputInterface self;
 
-	private LinkedList<SignalOutputInterface> connections;
+	/**
+	 * The number of {@link Signal}s that are queued or currently handled. The
+	 * sender that raises it from 0 schedules the handler, the handler runs
+	 * until it drops back to 0.
+	 */
+	private final AtomicInteger pending = new AtomicInteger();
+	private volatile boolean destroyed = false;
+
+	/**
+	 * The number of {@link Signal}s taken from pending so far. Only the
+	 * thread that owns the handler (or the inline execution) writes it, always
+	 * before it lowers pending.
+	 */
+	private volatile long handled = 0;
+
+	private static final Runnable[] NO_LISTENERS = new Runnable[0];
+
+	/**
+	 * Called whenever pending drops to 0. The array is replaced, never
+	 * changed, so notifying does not allocate.
+	 */
+	private volatile Runnable[] idleListeners = NO_LISTENERS;
+
+	/**
+	 * One permit per free place in the queue, <code>null</code> if the queue
+	 * is unbounded.
+	 */
+	private volatile Semaphore permits = null;
+	private volatile OverflowPolicy policy = OverflowPolicy.BLOCK;
+	private int capacity = 0;
+
+	/**
+	 * The number of queued {@link Signal}s the handler skips. DROP_OLDEST
+	 * drops a {@link Signal} by raising this counter, as the handler always
+	 * takes the oldest {@link Signal} next. The new {@link Signal} takes over
+	 * the permit of the dropped one.
+	 */
+	private final AtomicInteger skip = new AtomicInteger();
+
+	/**
+	 * Only a bounded queue drops or rejects {@link Signal}s, so the counters
+	 * are created by setCapacity() before the permits are published.
+	 */
+	private LongAdder dropped = null;
+	private LongAdder rejected = null;
+
+	private final SignalConnections connections = new SignalConnections();
+
+	/**
+	 * The maximum number of nested inline executions on one thread. Deeper
+	 * {@link Signal}s are deferred until the outermost inline execution has
+	 * finished, so long chains do not overflow the stack.
+	 */
+	public static final int MAX_INLINE_DEPTH = 32;
+
+	private static final ThreadLocal<InlineFrame> inlineFrame = new ThreadLocal<InlineFrame>() {
+		@Override
+		protected InlineFrame initialValue() {
+			return new InlineFrame();
+		}
+	};
 
 	public NodeSignalInputInterface(Node parent) {
+		this(parent, SignalSchedulers.getDefault());
+	}
+
+	/**
+	 * @param parent
+	 *            the {@link Node} whose code is executed for each
+	 *            {@link Signal}
+	 * @param scheduler
+	 *            the {@link SignalScheduler} that executes the code of the
+	 *            parent
+	 */
+	public NodeSignalInputInterface(Node parent, SignalScheduler scheduler) {
 		super(Signal.class);
 		this.self = this;
 
 		this.parent = parent;
-		this.signalQueue = new LinkedList<Signal>();
+		this.signalQueue = new ConcurrentLinkedQueue<Object>();
+		this.scheduler = scheduler;
+		this.handler = new SignalHandler();
+	}
+
+	@Override
+	public void sendSignal(Signal s) {
+		if (this.destroyed) {
+			Logging.logf(LogLevel.INFO, parent.getClass().getName(), "Token ({}) lost", s);
+			return;
+		}
+
+		Semaphore p = this.permits;
+		if (p != null && !p.tryAcquire() && !this.overflow(s, p)) {
+			return;
+		}
+
+		boolean metrics = NodeMetrics.isEnabled();
+		this.signalQueue.offer(metrics ? new Queued(s, System.nanoTime()) : s);
+		int queued = this.pending.getAndIncrement();
+		if (queued == 0) {
+			this.scheduler.schedule(this.handler);
+		}
+
+		if (metrics)
+			this.parent.getMetrics().recordQueueDepth(queued + 1);
+	}
+
+	/**
+	 * Executes the parent directly on the calling thread, if no other
+	 * {@link Signal} is queued or handled. Otherwise the {@link Signal} is
+	 * queued like with sendSignal().
+	 * 
+	 * The parent is claimed by raising pending from 0 to 1 without queueing
+	 * the {@link Signal}, so the handler is not started while it runs. Any
+	 * {@link Signal} that arrives in the meantime is handled by the handler
+	 * afterwards.
+	 * 
+	 * @param s
+	 *            the {@link Signal}
+	 */
+	public void sendSignalInline(Signal s) {
+		InlineFrame frame = inlineFrame.get();
+		if (frame.depth >= MAX_INLINE_DEPTH) {
+			frame.defer(this, s);
+			return;
+		}
+		if (this.destroyed || !this.pending.compareAndSet(0, 1)) {
+			this.sendSignal(s);
+			return;
+		}
+
+		frame.depth++;
+		frame.running.push(this);
+		try {
+			this.parent.start(s, this);
+		} catch (RuntimeException e) {
+			Logging.logf(LogLevel.SEVERE, parent.getClass().getName(), "Node failed: {}", e);
+		} finally {
+			frame.running.pop();
+			frame.depth--;
+		}
+
+		this.handled++;
+		if (this.pending.decrementAndGet() != 0) {
+			this.scheduler.schedule(this.handler);
+		} else {
+			this.notifyIdle();
+		}
+		if (frame.depth == 0) {
+			frame.drain();
+		}
+	}
+
+	/**
+	 * The executions of one thread: the handler it runs and the inline
+	 * executions on top of it.
+	 */
+	private static class InlineFrame {
+		private int depth = 0;
+		private boolean draining = false;
 
-		this.myThread = new SignalHandlerThread();
-		this.myThread.start();
+		/**
+		 * The interfaces whose {@link Node} this thread executes right now, the
+		 * innermost first.
+		 */
+		private final ArrayDeque<NodeSignalInputInterface> running = new ArrayDeque<>();
 
-		this.connections = new LinkedList<>();
+		private final ArrayDeque<NodeSignalInputInterface> inputs = new ArrayDeque<>();
+		private final ArrayDeque<Signal> signals = new ArrayDeque<>();
+
+		void defer(NodeSignalInputInterface input, Signal s) {
+			this.inputs.add(input);
+			this.signals.add(s);
+		}
+
+		/**
+		 * Continues the deferred {@link Signal}s (trampoline).
+		 */
+		void drain() {
+			if (this.draining)
+				return;
+
+			this.draining = true;
+			try {
+				while (!this.inputs.isEmpty()) {
+					this.inputs.poll().sendSignalInline(this.signals.poll());
+				}
+			} finally {
+				this.draining = false;
+			}
+		}
 	}
 
+	/**
+	 * Queues all {@link Signal}s with a single wake-up of the handler.
+	 */
 	@Override
-	public void sendSignal(Signal s) {
-		synchronized (this.signalQueue) {
-			this.signalQueue.offer(s);
-			this.signalQueue.notifyAll();
+	public void sendSignals(Signal[] signals) {
+		if (signals.length == 0) {
+			return;
+		}
+		if (this.destroyed) {
+			Logging.logf(LogLevel.INFO, parent.getClass().getName(), "{} tokens lost", signals.length);
+			return;
+		}
+		if (this.permits != null) {
+			// every signal has to pass the overflow policy
+			for (Signal s : signals) {
+				this.sendSignal(s);
+			}
+			return;
+		}
+
+		boolean metrics = NodeMetrics.isEnabled();
+		long now = metrics ? System.nanoTime() : 0;
+		for (Signal s : signals) {
+			this.signalQueue.offer(metrics ? new Queued(s, now) : s);
+		}
+		int queued = this.pending.getAndAdd(signals.length);
+		if (queued == 0) {
+			this.scheduler.schedule(this.handler);
+		}
+
+		if (metrics)
+			this.parent.getMetrics().recordQueueDepth(queued + signals.length);
+	}
+
+	/**
+	 * Handles a {@link Signal} that arrived while the queue was full.
+	 * 
+	 * @return <code>true</code> if the {@link Signal} has to be queued
+	 */
+	private boolean overflow(Signal s, Semaphore p) {
+		switch (this.policy) {
+		case BLOCK:
+			if (!this.mayBlock()) {
+				// waiting would deadlock, reject it like EXCEPTION
+				this.rejected.increment();
+				this.parent.getExceptionOutput().passSignal(s);
+				return false;
+			}
+			try {
+				if (Thread.currentThread() instanceof ForkJoinWorkerThread) {
+					// let the pool compensate for the blocked worker
+					ForkJoinPool.managedBlock(new PermitBlocker(p));
+				} else {
+					p.acquire();
+				}
+				return true;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				this.dropped.increment();
+				return false;
+			}
+		case DROP_OLDEST:
+			int queued = this.pending.get() - 1;
+			int current;
+			do {
+				current = this.skip.get();
+				if (current >= queued) {
+					// nothing queued that could be dropped
+					this.dropped.increment();
+					return false;
+				}
+			} while (!this.skip.compareAndSet(current, current + 1));
+			this.dropped.increment();
+			return true;
+		case DROP_NEWEST:
+			this.dropped.increment();
+			return false;
+		case EXCEPTION:
+			this.rejected.increment();
+			this.parent.getExceptionOutput().passSignal(s);
+			return false;
+		default:
+			assert(false);
+			return false;
+		}
+	}
+
+	/**
+	 * Returns <code>false</code> if the current thread must not wait for a
+	 * permit: it executes this {@link Node} itself (further up the stack), so
+	 * nobody else could free the queue, or it runs a handler on the
+	 * {@link SignalScheduler} of this {@link Node} which cannot add a thread
+	 * while it waits, so the handler that frees the queue might never run.
+	 */
+	private boolean mayBlock() {
+		ArrayDeque<NodeSignalInputInterface> running = inlineFrame.get().running;
+		if (running.isEmpty()) {
+			return true;
+		}
+		if (running.contains(this)) {
+			return false;
+		}
+		SignalScheduler own = running.peekLast().scheduler;
+		return own != this.scheduler || own.allowsBlocking();
+	}
+
+	private static class PermitBlocker implements ForkJoinPool.ManagedBlocker {
+		private final Semaphore permits;
+		private boolean acquired = false;
+
+		public PermitBlocker(Semaphore permits) {
+			this.permits = permits;
+		}
+
+		@Override
+		public boolean block() throws InterruptedException {
+			if (!this.acquired) {
+				this.permits.acquire();
+				this.acquired = true;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			return this.acquired || (this.acquired = this.permits.tryAcquire());
+		}
+	}
+
+	/**
+	 * Limits the number of queued {@link Signal}s. The {@link Signal} that is
+	 * currently handled does not count. This should be set before any
+	 * {@link Signal} is sent.
+	 * 
+	 * @param capacity
+	 *            the maximum number of queued {@link Signal}s, 0 for an
+	 *            unbounded queue
+	 * @param policy
+	 *            what happens to {@link Signal}s that arrive while the queue is
+	 *            full
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative or the policy is
+	 *             <code>null</code>
+	 */
+	public void setCapacity(int capacity, OverflowPolicy policy) {
+		if (capacity < 0 || policy == null) {
+			throw new IllegalArgumentException("Invalid capacity or policy.");
+		}
+		if (this.dropped == null) {
+			this.dropped = new LongAdder();
+			this.rejected = new LongAdder();
+		}
+		this.capacity = capacity;
+		this.policy = policy;
+		this.permits = capacity == 0 ? null : new Semaphore(capacity);
+	}
+
+	/**
+	 * Returns the maximum number of queued {@link Signal}s, 0 if the queue is
+	 * unbounded.
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return this.policy;
+	}
+
+	/**
+	 * Returns the number of {@link Signal}s that were dropped because the
+	 * queue was full.
+	 */
+	public long getDroppedSignals() {
+		LongAdder d = this.dropped;
+		return d == null ? 0 : d.sum();
+	}
+
+	/**
+	 * Returns the number of {@link Signal}s that were passed to the exception
+	 * output because the queue was full.
+	 */
+	public long getRejectedSignals() {
+		LongAdder r = this.rejected;
+		return r == null ? 0 : r.sum();
+	}
+
+	/**
+	 * Removes up to max queued {@link Signal}s without executing the
+	 * {@link Node} for them. This is meant for collecting the {@link Signal}s
+	 * that were not delivered, e.g. after destroy().
+	 * 
+	 * @param c
+	 *            the collection the {@link Signal}s are added to
+	 * @param max
+	 *            the maximum number of {@link Signal}s to remove
+	 * @return the number of removed {@link Signal}s
+	 */
+	public int drainTo(Collection<? super Signal> c, int max) {
+		int n = 0;
+		Object e;
+		while (n < max && (e = this.signalQueue.poll()) != null) {
+			c.add(signal(e));
+			++n;
+		}
+		return n;
+	}
+
+	/**
+	 * Returns the {@link Signal} of a queue entry.
+	 */
+	private static Signal signal(Object entry) {
+		return entry instanceof Queued ? ((Queued) entry).signal : (Signal) entry;
+	}
+
+	/**
+	 * A queued {@link Signal} and the time it was queued. The time is kept in
+	 * the queue and not in the {@link Signal}, since the same {@link Signal}
+	 * may be queued by several interfaces at once (see
+	 * {@link SignalSyncronizer}).
+	 */
+	private static final class Queued {
+		private final Signal signal;
+		private final long queuedAt;
+
+		Queued(Signal signal, long queuedAt) {
+			this.signal = signal;
+			this.queuedAt = queuedAt;
+		}
+	}
+
+	/**
+	 * Stops accepting {@link Signal}s, like destroy(), but keeps the queued
+	 * {@link Signal}s for drainTo() and the connections. A {@link Signal} that
+	 * is handled at the moment is finished.
+	 */
+	public void close() {
+		this.destroyed = true;
+	}
+
+	public boolean isClosed() {
+		return this.destroyed;
+	}
+
+	/**
+	 * Returns <code>true</code> if no {@link Signal} is queued or handled.
+	 */
+	public boolean isIdle() {
+		return this.pending.get() == 0;
+	}
+
+	/**
+	 * Returns the number of {@link Signal}s that were handled (or dropped)
+	 * so far. Together with isIdle() this allows to detect that a whole graph
+	 * is idle: if all interfaces are idle twice in a row and their counters
+	 * did not change in between, no {@link Signal} was in flight.
+	 */
+	public long getHandledSignals() {
+		return this.handled;
+	}
+
+	/**
+	 * Adds a task that is run by the thread that leaves this interface idle.
+	 * It must be short and must not block.
+	 * 
+	 * @param listener
+	 *            the task
+	 */
+	public synchronized void addIdleListener(Runnable listener) {
+		Runnable[] l = Arrays.copyOf(this.idleListeners, this.idleListeners.length + 1);
+		l[l.length - 1] = listener;
+		this.idleListeners = l;
+	}
+
+	/**
+	 * Removes a task that was added by addIdleListener().
+	 * 
+	 * @param listener
+	 *            the task
+	 */
+	public synchronized void removeIdleListener(Runnable listener) {
+		Runnable[] l = this.idleListeners;
+		for (int i = 0; i < l.length; ++i) {
+			if (l[i] == listener) {
+				Runnable[] rest = new Runnable[l.length - 1];
+				System.arraycopy(l, 0, rest, 0, i);
+				System.arraycopy(l, i + 1, rest, i, l.length - i - 1);
+				this.idleListeners = l.length == 1 ? NO_LISTENERS : rest;
+				return;
+			}
 		}
 	}
 
-	private class SignalHandlerThread extends Thread {
+	private void notifyIdle() {
+		for (Runnable l : this.idleListeners) {
+			l.run();
+		}
+	}
 
-		public SignalHandlerThread() {
-			Logging.log(LogLevel.INFO, "Thread started", parent.getClass()
-					.getName() + " -> " + getName());
+	/**
+	 * Binds this interface to a different {@link SignalScheduler}. Signals
+	 * that are already queued may still be handled by the old one.
+	 * 
+	 * @param scheduler
+	 *            the new scheduler
+	 * @throws IllegalArgumentException
+	 *             if scheduler is <code>null</code>
+	 */
+	public void setScheduler(SignalScheduler scheduler) {
+		if (scheduler == null) {
+			throw new IllegalArgumentException("Scheduler must not be null.");
 		}
+		this.scheduler = scheduler;
+	}
+
+	public SignalScheduler getScheduler() {
+		return this.scheduler;
+	}
+
+	/**
+	 * This task is handed to the {@link SignalScheduler} whenever the queue
+	 * changes from empty to not empty. No lock is held while the {@link Node}
+	 * runs, so senders are never blocked by it.
+	 */
+	private class SignalHandler implements Runnable {
+
+		/**
+		 * Collects the {@link Signal}s of a batch, created by the first batch.
+		 * Only the thread that runs the handler uses it.
+		 */
+		private Signal[] buffer = null;
 
 		@Override
 		public void run() {
+			InlineFrame frame = inlineFrame.get();
+			frame.running.push(NodeSignalInputInterface.this);
+			try {
+				this.handle();
+			} finally {
+				frame.running.pop();
+			}
+		}
 
-			mainLoop: while (!this.isInterrupted()) {
-				synchronized (signalQueue) {
-					while (signalQueue.isEmpty()) {
-						try {
-							signalQueue.wait();
-						} catch (InterruptedException e) {
-							break mainLoop; // CHECKME other cases?
-						}
+		private void handle() {
+			int handled = 0;
+			while (true) {
+				int count = parent.isBatchExecution() ? this.handleBatch(THROUGHPUT - handled) : this.handleOne();
+				handled += count;
+
+				NodeSignalInputInterface.this.handled += count;
+				if (pending.addAndGet(-count) == 0) {
+					notifyIdle();
+					return;
+				}
+				if (handled >= THROUGHPUT) {
+					// give other nodes a chance to run
+					scheduler.schedule(this);
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Returns <code>true</code> if the entry that was just taken from the
+		 * queue was dropped by DROP_OLDEST. Otherwise its place in the queue is
+		 * freed.
+		 */
+		private boolean dropped(Object e) {
+			if (e != null) {
+				if (e instanceof Queued && NodeMetrics.isEnabled()) {
+					parent.getMetrics().recordWait(System.nanoTime() - ((Queued) e).queuedAt);
+				}
+
+				int current;
+				while ((current = skip.get()) > 0) {
+					if (skip.compareAndSet(current, current - 1)) {
+						return true;
 					}
+				}
+			}
+
+			Semaphore p = permits;
+			if (p != null) {
+				p.release();
+			}
+			return false;
+		}
+
+		private int handleOne() {
+			// the queue is cleared by destroy() or drained after close()
+			if (destroyed) {
+				return 1;
+			}
+			Object entry = signalQueue.poll();
+			if (this.dropped(entry)) {
+				return 1;
+			}
+
+			if (entry != null) {
+				try {
+					parent.start(signal(entry), self);
+				} catch (RuntimeException e) {
+					Logging.logf(LogLevel.SEVERE, parent.getClass().getName(), "Node failed: {}", e);
+				}
+			}
+			return 1;
+		}
+
+		/**
+		 * Takes the next queued {@link Signal} and all directly following
+		 * {@link Signal}s of the same {@link ExecutionContext}. Only as many
+		 * {@link Signal}s as counted by pending are taken, so the count stays
+		 * exact.
+		 * 
+		 * @return the number of taken {@link Signal}s
+		 */
+		private int handleBatch(int max) {
+			if (destroyed) {
+				return 1;
+			}
+			Object first = signalQueue.poll();
+			if (this.dropped(first) || first == null) {
+				return 1;
+			}
 
-					// handle signal
-					parent.start(signalQueue.poll(), self);
+			int limit = Math.min(max, pending.get());
+			ExecutionContext ctx = signal(first).getContext();
+			if (this.buffer == null) {
+				this.buffer = new Signal[THROUGHPUT];
+			}
+			this.buffer[0] = signal(first);
+			int size = 1;
+			int count = 1;
+			while (count < limit) {
+				Object next = signalQueue.peek();
+				if (next == null || signal(next).getContext() != ctx) {
+					break;
+				}
+				next = signalQueue.poll();
+				++count;
+				if (!this.dropped(next)) {
+					this.buffer[size++] = signal(next);
 				}
 			}
 
-			Logging.log(LogLevel.WARNING, "Signal handler thread stopped",
-					parent.getClass().getName());
+			Signal[] batch = Arrays.copyOf(this.buffer, size);
+			Arrays.fill(this.buffer, 0, size, null);
+			try {
+				parent.startBatch(batch, self);
+			} catch (RuntimeException e) {
+				Logging.logf(LogLevel.SEVERE, parent.getClass().getName(), "Node failed: {}", e);
+			}
+			return count;
 		}
 	}
 
 	@Override
 	public void destroy() {
-		this.myThread.interrupt();
+		this.destroyed = true;
+		this.signalQueue.clear();
+		Logging.log(LogLevel.WARNING, "Signal handler stopped", parent.getClass().getName());
 
-		for (SignalOutputInterface o : this.connections) {
-			o.setConnection(null);
-		}
+		this.connections.disconnectAll();
 	}
 
 	@Override
@@ -0,0 +1,27 @@
+package nodes.signals;
+
+import nodes.Node;
+import nodes.signals.scheduler.SignalScheduler;
+
+/**
+ * This enum specifies what a bounded {@link NodeSignalInputInterface} does
+ * with a {@link Signal} it recieves while its queue is full.
+ * 
+ * <ul>
+ * <li>BLOCK - The sender waits until there is space in the queue. A sender
+ * that executes the receiving {@link Node} itself (e.g. a {@link Node} whose
+ * {@link Signal}s lead back to it on the same thread) never waits, and neither
+ * does a sender that runs on the {@link SignalScheduler} of the receiver,
+ * unless it allowsBlocking(): its waiting threads could be the ones the
+ * receiver needs to empty its queue. Such a {@link Signal} is handled like
+ * with EXCEPTION instead of deadlocking.</li>
+ * <li>DROP_OLDEST - The oldest queued {@link Signal} is dropped to make space
+ * for the new one.</li>
+ * <li>DROP_NEWEST - The new {@link Signal} is dropped.</li>
+ * <li>EXCEPTION - The new {@link Signal} is passed to the exception output of
+ * the {@link Node}.</li>
+ * </ul>
+ */
+public enum OverflowPolicy {
+	BLOCK, DROP_OLDEST, DROP_NEWEST, EXCEPTION
+}
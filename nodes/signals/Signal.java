@@ -1,17 +1,210 @@
 package nodes.signals;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import nodes.ExecutionContext;
 import nodes.Node;
 
 /**
  * A {@link Signal} is an object that is used to specify when the code of a
  * {@link Node} should be executed.
  * 
+ * Each {@link Signal} belongs to the run that is described by its
+ * {@link ExecutionContext}.
+ * 
+ * A {@link Signal} can carry attributes, named values that travel with the
+ * token from {@link Node} to {@link Node}. They are immutable: with() returns
+ * a new {@link Signal} and leaves this one untouched, so the same
+ * {@link Signal} is handed over to the next {@link Node}s without copying and
+ * everything written before it was sent is visible to the reciever. This
+ * allows to stream many independent items through one graph, each in a
+ * {@link Signal} of its own.
+ * 
  * @author Roland Wallner
  *
  */
 public class Signal {
+
+	private final ExecutionContext context;
+
+	/**
+	 * The keys and values of the attributes one after another,
+	 * <code>null</code> if there are none. It is never changed.
+	 */
+	private final Object[] attributes;
+
+	/**
+	 * Creates a {@link Signal} without an {@link ExecutionContext}.
+	 */
+	public Signal() {
+		this(null);
+	}
+
+	/**
+	 * @param context
+	 *            the run this {@link Signal} belongs to (<code>null</code> is
+	 *            allowed!)
+	 */
+	public Signal(ExecutionContext context) {
+		this.context = context;
+		this.attributes = null;
+	}
+
+	/**
+	 * @param context
+	 *            the run this {@link Signal} belongs to (<code>null</code> is
+	 *            allowed!)
+	 * @param attributes
+	 *            the attributes, they are copied
+	 */
+	public Signal(ExecutionContext context, Map<String, ?> attributes) {
+		this.context = context;
+		if (attributes.isEmpty()) {
+			this.attributes = null;
+		} else {
+			Object[] a = new Object[attributes.size() * 2];
+			int i = 0;
+			for (Map.Entry<String, ?> e : attributes.entrySet()) {
+				a[i++] = e.getKey();
+				a[i++] = e.getValue();
+			}
+			this.attributes = a;
+		}
+	}
+
+	private Signal(ExecutionContext context, Object[] attributes) {
+		this.context = context;
+		this.attributes = attributes;
+	}
+
+	/**
+	 * Returns the {@link ExecutionContext} of the run this {@link Signal}
+	 * belongs to or <code>null</code>.
+	 */
+	public ExecutionContext getContext() {
+		return this.context;
+	}
+
+	/**
+	 * Returns the value of the attribute or <code>null</code> if it is not
+	 * set.
+	 */
+	public Object get(String key) {
+		int i = this.indexOf(key);
+		return i < 0 ? null : this.attributes[i + 1];
+	}
+
+	/**
+	 * Returns the value of the attribute or <code>null</code> if it is not
+	 * set.
+	 * 
+	 * @throws ClassCastException
+	 *             if the value is not of the given type
+	 */
+	public <T> T get(String key, Class<T> type) {
+		return type.cast(this.get(key));
+	}
+
+	public boolean has(String key) {
+		return this.indexOf(key) >= 0;
+	}
+
+	public boolean hasAttributes() {
+		return this.attributes != null;
+	}
+
+	/**
+	 * Returns all attributes in the order they were set first.
+	 */
+	public Map<String, Object> getAttributes() {
+		if (this.attributes == null)
+			return Collections.emptyMap();
+
+		LinkedHashMap<String, Object> m = new LinkedHashMap<>();
+		for (int i = 0; i < this.attributes.length; i += 2) {
+			m.put((String) this.attributes[i], this.attributes[i + 1]);
+		}
+		return Collections.unmodifiableMap(m);
+	}
+
+	/**
+	 * Returns a {@link Signal} of the same run with the given attribute set.
+	 * This {@link Signal} is not changed.
+	 * 
+	 * @param key
+	 *            the name of the attribute
+	 * @param value
+	 *            the new value (<code>null</code> is allowed!)
+	 * @throws IllegalArgumentException
+	 *             if key is <code>null</code>
+	 */
+	public Signal with(String key, Object value) {
+		if (key == null)
+			throw new IllegalArgumentException("The key must not be null.");
+
+		int i = this.indexOf(key);
+		Object[] a;
+		if (i >= 0) {
+			a = this.attributes.clone();
+		} else if (this.attributes == null) {
+			a = new Object[2];
+			i = 0;
+		} else {
+			i = this.attributes.length;
+			a = Arrays.copyOf(this.attributes, i + 2);
+		}
+		a[i] = key;
+		a[i + 1] = value;
+		return new Signal(this.context, a);
+	}
+
+	/**
+	 * Returns a {@link Signal} of the same run with all attributes of this
+	 * and the given {@link Signal}. If both have an attribute, the value of
+	 * the given {@link Signal} is used.
+	 */
+	public Signal with(Signal other) {
+		if (other.attributes == null)
+			return this;
+		if (this.attributes == null)
+			return new Signal(this.context, other.attributes);
+
+		Signal ret = this;
+		for (int i = 0; i < other.attributes.length; i += 2) {
+			ret = ret.with((String) other.attributes[i], other.attributes[i + 1]);
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns a {@link Signal} with the attributes of this one that belongs to
+	 * the given run.
+	 */
+	public Signal withContext(ExecutionContext context) {
+		return new Signal(context, this.attributes);
+	}
+
+	private int indexOf(String key) {
+		Object[] a = this.attributes;
+		if (a == null)
+			return -1;
+		for (int i = 0; i < a.length; i += 2) {
+			if (a[i].equals(key))
+				return i;
+		}
+		return -1;
+	}
+
+	@Override
+	public String toString() {
+		return this.attributes == null ? "Signal[" + this.context + "]"
+				: "Signal[" + this.context + ", " + this.getAttributes() + "]";
+	}
+
 	/**
 	 * Syncronizes given outputs and inputs
 	 * 
@@ -0,0 +1,52 @@
+package nodes.signals;
+
+import java.util.Arrays;
+
+/**
+ * The {@link SignalOutputInterface}s connected to a {@link SignalReciever}.
+ * 
+ * Each {@link SignalOutputInterface} has at most one target, so it stores its
+ * index within this list. Removing a connection moves the last one into its
+ * place, so adding and removing both take constant time.
+ */
+class SignalConnections {
+
+	private SignalOutputInterface[] outputs = new SignalOutputInterface[2];
+	private int size = 0;
+
+	void add(SignalOutputInterface o) {
+		if (this.size == this.outputs.length) {
+			this.outputs = Arrays.copyOf(this.outputs, this.size * 2);
+		}
+		o.connectionIndex = this.size;
+		this.outputs[this.size++] = o;
+	}
+
+	void remove(SignalOutputInterface o) {
+		int i = o.connectionIndex;
+		if (i < 0 || i >= this.size || this.outputs[i] != o) {
+			return;
+		}
+
+		SignalOutputInterface last = this.outputs[--this.size];
+		this.outputs[i] = last;
+		last.connectionIndex = i;
+		this.outputs[this.size] = null;
+		o.connectionIndex = -1;
+	}
+
+	/**
+	 * Disconnects all {@link SignalOutputInterface}s.
+	 */
+	void disconnectAll() {
+		// setConnection() removes the connection from the list
+		while (this.size > 0) {
+			this.outputs[this.size - 1].setConnection(null);
+		}
+	}
+
+	int size() {
+		return this.size;
+	}
+
+}
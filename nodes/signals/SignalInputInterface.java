@@ -7,5 +7,21 @@ public abstract class SignalInputInterface extends NodeInterface implements Sign
 	public SignalInputInterface(Class<?> c) {
 		super(c);
 	}
-	
+
+	/**
+	 * This method is called when you recieved several {@link Signal}s at once.
+	 * The array must not be kept after this method returned.
+	 * 
+	 * The default implementation calls sendSignal() for each {@link Signal}.
+	 * 
+	 * @param signals
+	 *            the {@link Signal}s in the order they were sent
+	 */
+	public void sendSignals(Signal[] signals) {
+		for (Signal s : signals) {
+			this.sendSignal(s);
+		}
+	}
+
+
 }
@@ -8,18 +8,52 @@ public class SignalOutputInterface extends NodeInterface {
 
 	private SignalInputInterface next;
 
+	/**
+	 * The index of this interface in the connection list of its target, see
+	 * {@link SignalConnections}.
+	 */
+	int connectionIndex = -1;
+
 	public SignalOutputInterface() {
 		super(Signal.class);
 	}
 
 	public void passSignal(Signal s) {
 		if (this.next == null) {
-			Logging.log(LogLevel.INFO, "Token (" + s.toString() + ") lost");
+			Logging.logf(LogLevel.INFO, "Unknown", "Token ({}) lost", s);
 		} else {
 			this.next.sendSignal(s);
 		}
 	}
 
+	/**
+	 * Like passSignal(), but a {@link NodeSignalInputInterface} executes its
+	 * {@link nodes.Node} on the calling thread if it is idle (see
+	 * {@link NodeSignalInputInterface#sendSignalInline(Signal)}).
+	 */
+	public void passSignalInline(Signal s) {
+		if (this.next instanceof NodeSignalInputInterface) {
+			((NodeSignalInputInterface) this.next).sendSignalInline(s);
+		} else {
+			this.passSignal(s);
+		}
+	}
+
+	/**
+	 * Passes several {@link Signal}s at once, so the reciever can queue them
+	 * with a single wake-up.
+	 * 
+	 * @param signals
+	 *            the {@link Signal}s in order
+	 */
+	public void passSignals(Signal[] signals) {
+		if (this.next == null) {
+			Logging.logf(LogLevel.INFO, "Unknown", "{} tokens lost", signals.length);
+		} else {
+			this.next.sendSignals(signals);
+		}
+	}
+
 	/**
 	 * Specifies where the {@link SignalOutputInterface} sends its signal token
 	 * to.
@@ -1,7 +1,12 @@
 package nodes.signals;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Function;
+
+import nodes.ExecutionContext;
 
 /**
  * A {@link SignalSyncronizer} is an object that is used to gather and spread
@@ -11,6 +16,19 @@ import java.util.LinkedList;
  * least one {@link Signal}, one on each input is removed and every output
  * receives a new {@link Signal}-Token.
  * 
+ * Sending a {@link Signal} to a {@link SignalSyncronizer} never blocks.
+ * Surplus tokens are counted per input and used for the next sets. The join
+ * is lock-free: every input has an atomic token counter and a shared counter
+ * holds the number of inputs without a token. The thread that drops this
+ * counter to 0 fires, so each complete set fires exactly once.
+ * 
+ * Tokens are only joined with tokens of the same {@link ExecutionContext}.
+ * The tokens of a run are attached to its context and freed with it.
+ * 
+ * The {@link Signal}s of a set are merged: the outputs recieve one
+ * {@link Signal} with the attributes of all of them. If several carry the
+ * same attribute, the one of the input with the higher index wins.
+ * 
  * @author Roland Wallner
  *
  */
@@ -19,6 +37,16 @@ public class SignalSyncronizer {
 	private ArrayList<SyncronizerInput> sig_ins;
 	private ArrayList<SignalOutputInterface> sig_outs;
 
+	/**
+	 * The tokens of {@link Signal}s without an {@link ExecutionContext}.
+	 */
+	private final JoinState sharedState;
+
+	/**
+	 * Creates the {@link JoinState} of a new {@link ExecutionContext}.
+	 */
+	private final Function<Object, JoinState> stateFactory;
+
 	/**
 	 * 
 	 * @param inputs
@@ -30,9 +58,16 @@ public class SignalSyncronizer {
 
 		this.sig_ins = new ArrayList<>(inputs);
 		this.sig_outs = new ArrayList<>(outputs);
+		this.sharedState = new JoinState(inputs);
+		this.stateFactory = new Function<Object, JoinState>() {
+			@Override
+			public JoinState apply(Object key) {
+				return new JoinState(sig_ins.size());
+			}
+		};
 
 		for (int i = 0; i < inputs; ++i) {
-			this.sig_ins.add(new SyncronizerInput());
+			this.sig_ins.add(new SyncronizerInput(i));
 		}
 
 		for (int i = 0; i < outputs; ++i) {
@@ -71,26 +106,94 @@ public class SignalSyncronizer {
 		return this.sig_ins.get(i);
 	}
 
-	private synchronized void checkContinue() {
-		boolean done = true;
-		for (SyncronizerInput i : this.sig_ins) {
-			if (i.getSignal() == null) {
-				done = false;
-				break;
-			}
+	/**
+	 * Adds the token of the given {@link Signal} to the input.
+	 */
+	private void arrive(int input, Signal s) {
+		ExecutionContext ctx = s.getContext();
+		if (ctx == null) {
+			this.sharedState.arrive(input, s);
+		} else {
+			ctx.getAttachment(this, this.stateFactory).arrive(input, s);
 		}
+	}
 
-		if (done) {
-			// System.out.println("Check done (" + sig_ins.size() + ","
-			// + sig_outs.size() + ")");
-
-			for (SyncronizerInput i : this.sig_ins) {
-				i.reset();
+	/**
+	 * The tokens of one {@link ExecutionContext}.
+	 */
+	private class JoinState {
+
+		/**
+		 * The number of tokens that are waiting on each input.
+		 */
+		private final AtomicIntegerArray tokens;
+
+		/**
+		 * The number of inputs without a token. While a set is consumed, every
+		 * input that has not been processed yet is counted as well, so no
+		 * other thread can fire before the consumption is finished.
+		 */
+		private final AtomicInteger missing;
+
+		/**
+		 * The {@link Signal}s behind the tokens of each input. A
+		 * {@link Signal} is queued before its token is counted, so every
+		 * counted token has one.
+		 */
+		private final ConcurrentLinkedQueue<Signal>[] signals;
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		public JoinState(int inputs) {
+			this.tokens = new AtomicIntegerArray(inputs);
+			this.missing = new AtomicInteger(inputs);
+			this.signals = new ConcurrentLinkedQueue[inputs];
+			for (int i = 0; i < inputs; ++i) {
+				this.signals[i] = new ConcurrentLinkedQueue<>();
 			}
-			for (SignalOutputInterface o : this.sig_outs) {
-				o.passSignal(new Signal()); // CHECKME new?
+		}
+
+		/**
+		 * Adds a token to the given input and fires if this completes a set.
+		 */
+		public void arrive(int input, Signal s) {
+			this.signals[input].offer(s);
+			if (this.tokens.getAndIncrement(input) == 0 && this.missing.decrementAndGet() == 0) {
+				this.fire();
 			}
 		}
+
+		/**
+		 * Consumes one token of every input and passes the merged
+		 * {@link Signal} to each output. This is repeated as long as surplus tokens form another
+		 * complete set.
+		 */
+		private void fire() {
+			int inputs = this.tokens.length();
+			boolean again;
+			do {
+				// every input counts as missing until it is processed
+				this.missing.addAndGet(inputs);
+
+				// the Signals are taken before the tokens are released
+				Signal merged = null;
+				for (int i = 0; i < inputs; ++i) {
+					Signal s = this.signals[i].poll();
+					merged = merged == null ? s : merged.with(s);
+				}
+
+				again = false;
+				for (int i = 0; i < inputs; ++i) {
+					if (this.tokens.decrementAndGet(i) > 0 && this.missing.decrementAndGet() == 0) {
+						// only possible for the last input: all had surplus tokens
+						again = true;
+					}
+				}
+
+				for (SignalOutputInterface o : sig_outs) {
+					o.passSignal(merged);
+				}
+			} while (again);
+		}
 	}
 
 	public void destroy() {
@@ -101,54 +204,33 @@ public class SignalSyncronizer {
 
 	private class SyncronizerInput extends SignalInputInterface {
 
-		private Signal currentSignal = null;
+		private final int index;
 
-		private LinkedList<SignalOutputInterface> connection;
+		private final SignalConnections connections = new SignalConnections();
 
-		public SyncronizerInput() {
+		public SyncronizerInput(int index) {
 			super(Signal.class);
-			this.connection = new LinkedList<>();
+			this.index = index;
 		}
 
 		@Override
-		public synchronized void sendSignal(Signal s) {
-			while (this.currentSignal != null) {
-				try {
-					System.out.println("Starting to wait");
-					wait();
-				} catch (InterruptedException e) {
-					// do nonthing
-				}
-			}
-
-			this.currentSignal = s;
-			checkContinue();
-			this.notifyAll();
-		}
-
-		public Signal getSignal() {
-			return this.currentSignal;
-		}
-
-		public void reset() {
-			this.currentSignal = null;
+		public void sendSignal(Signal s) {
+			arrive(this.index, s);
 		}
 
 		@Override
 		public void registerConnection(SignalOutputInterface o) {
-			this.connection.add(o);
+			this.connections.add(o);
 		}
 
 		@Override
 		public void removeConnection(SignalOutputInterface o) {
-			this.connection.remove(o);
+			this.connections.remove(o);
 		}
 
 		@Override
 		public void destroy() {
-			for (SignalOutputInterface o : this.connection) {
-				o.setConnection(null);
-			}
+			this.connections.disconnectAll();
 		}
 	}
 
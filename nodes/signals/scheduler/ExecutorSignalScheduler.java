@@ -0,0 +1,61 @@
+package nodes.signals.scheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Base class for all {@link SignalScheduler}s that hand their tasks to an
+ * {@link ExecutorService}.
+ */
+public abstract class ExecutorSignalScheduler implements SignalScheduler {
+
+	private final ExecutorService executor;
+
+	protected ExecutorSignalScheduler(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	@Override
+	public void schedule(Runnable task) {
+		this.executor.execute(task);
+	}
+
+	@Override
+	public void shutdown() {
+		this.executor.shutdown();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return this.executor.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * Returns the {@link ExecutorService} the tasks are executed on.
+	 */
+	public ExecutorService getExecutor() {
+		return this.executor;
+	}
+
+	/**
+	 * Creates a {@link ThreadFactory} for daemon threads, so a forgotten
+	 * scheduler does not keep the JVM alive.
+	 * 
+	 * @param prefix
+	 *            the name prefix of the created threads
+	 */
+	protected static ThreadFactory daemonThreads(final String prefix) {
+		return new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, prefix + "-" + this.count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+}
@@ -0,0 +1,26 @@
+package nodes.signals.scheduler;
+
+import java.util.concurrent.Executors;
+
+/**
+ * A {@link SignalScheduler} that executes all tasks on a fixed number of
+ * shared threads.
+ */
+public class FixedPoolSignalScheduler extends ExecutorSignalScheduler {
+
+	/**
+	 * Creates a pool with one thread per available processor.
+	 */
+	public FixedPoolSignalScheduler() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param threads
+	 *            the number of threads in the pool (>= 1)
+	 */
+	public FixedPoolSignalScheduler(int threads) {
+		super(Executors.newFixedThreadPool(threads, daemonThreads("signal-pool")));
+	}
+
+}
@@ -0,0 +1,47 @@
+package nodes.signals.scheduler;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * A {@link SignalScheduler} that executes all tasks on a work-stealing
+ * {@link ForkJoinPool}. The pool runs in async mode, because the tasks are
+ * event-style tasks that are never joined.
+ */
+public class ForkJoinSignalScheduler extends ExecutorSignalScheduler {
+
+	/**
+	 * Creates a pool with one worker per available processor.
+	 */
+	public ForkJoinSignalScheduler() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param parallelism
+	 *            the number of workers in the pool (>= 1)
+	 */
+	public ForkJoinSignalScheduler(int parallelism) {
+		super(new ForkJoinPool(parallelism, new DaemonWorkerFactory(), null, true));
+	}
+
+	private static class DaemonWorkerFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+		@Override
+		public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+			ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			t.setName("signal-fj-" + t.getPoolIndex());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+	/**
+	 * A waiting worker is compensated by the pool (see
+	 * {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)}).
+	 */
+	@Override
+	public boolean allowsBlocking() {
+		return true;
+	}
+
+}
@@ -0,0 +1,67 @@
+package nodes.signals.scheduler;
+
+import java.util.concurrent.TimeUnit;
+
+import nodes.Node;
+import nodes.signals.NodeSignalInputInterface;
+import nodes.signals.Signal;
+
+/**
+ * A {@link SignalScheduler} decides on which thread the code of a {@link Node}
+ * is executed when its {@link NodeSignalInputInterface} recieves a
+ * {@link Signal}.
+ * 
+ * Many {@link Node}s share one {@link SignalScheduler}, so the number of
+ * {@link Node}s does not dictate the number of threads. A
+ * {@link NodeSignalInputInterface} never hands more than one task at a time to
+ * its scheduler, so the code of a single {@link Node} is never executed
+ * concurrently.
+ * 
+ * The values of the ports are published by the {@link Signal}s (see
+ * {@link nodes.NodeOutputInterface}), so an implementation only has to
+ * guarantee that schedule() happens-before the execution of the task, like
+ * every {@link java.util.concurrent.Executor} does.
+ */
+public interface SignalScheduler {
+
+	/**
+	 * Executes the given task at some time in the future.
+	 * 
+	 * @param task
+	 *            the task that handles the queued {@link Signal}s of a
+	 *            {@link Node}
+	 */
+	void schedule(Runnable task);
+
+	/**
+	 * Returns <code>true</code> if a task may wait for another task of this
+	 * scheduler, because the scheduler starts another thread while one waits
+	 * (like a {@link java.util.concurrent.ForkJoinPool} or a thread per task).
+	 * A fixed number of threads could all end up waiting, so
+	 * {@link nodes.signals.OverflowPolicy#BLOCK} does not wait on them.
+	 */
+	default boolean allowsBlocking() {
+		return false;
+	}
+
+	/**
+	 * Stops the scheduler. Tasks that are already scheduled are still
+	 * executed, but no new tasks are accepted.
+	 */
+	void shutdown();
+
+	/**
+	 * Waits until all tasks have finished after shutdown().
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait
+	 * @param unit
+	 *            the unit of the timeout
+	 * @return <code>true</code> if the scheduler terminated,
+	 *         <code>false</code> if the timeout elapsed before
+	 * @throws InterruptedException
+	 *             if the current thread was interrupted while waiting
+	 */
+	boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException;
+
+}
@@ -0,0 +1,44 @@
+package nodes.signals.scheduler;
+
+import nodes.Node;
+
+/**
+ * This class holds the {@link SignalScheduler} that is used by every
+ * {@link Node} that is not bound to a scheduler explicitly.
+ */
+public final class SignalSchedulers {
+
+	private static SignalScheduler defaultScheduler = null;
+
+	private SignalSchedulers() {
+	}
+
+	/**
+	 * Returns the default scheduler. If none was set, a
+	 * {@link FixedPoolSignalScheduler} with one thread per processor is
+	 * created.
+	 */
+	public static synchronized SignalScheduler getDefault() {
+		if (defaultScheduler == null) {
+			defaultScheduler = new FixedPoolSignalScheduler();
+		}
+		return defaultScheduler;
+	}
+
+	/**
+	 * Replaces the default scheduler. {@link Node}s that already exist keep
+	 * their scheduler.
+	 * 
+	 * @param scheduler
+	 *            the new default scheduler
+	 * @throws IllegalArgumentException
+	 *             if scheduler is <code>null</code>
+	 */
+	public static synchronized void setDefault(SignalScheduler scheduler) {
+		if (scheduler == null) {
+			throw new IllegalArgumentException("Scheduler must not be null.");
+		}
+		defaultScheduler = scheduler;
+	}
+
+}
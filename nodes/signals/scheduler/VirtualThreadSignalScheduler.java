@@ -0,0 +1,61 @@
+package nodes.signals.scheduler;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import utils.Logging;
+import utils.Logging.LogLevel;
+
+/**
+ * A {@link SignalScheduler} that starts a new virtual thread for every task.
+ * 
+ * Virtual threads are looked up at runtime, so this class also works on JVMs
+ * that do not provide them. In that case a cached pool of daemon threads is
+ * used instead.
+ */
+public class VirtualThreadSignalScheduler extends ExecutorSignalScheduler {
+
+	public VirtualThreadSignalScheduler() {
+		super(createExecutor());
+	}
+
+	/**
+	 * Returns <code>true</code> if the running JVM supports virtual threads.
+	 */
+	public static boolean isSupported() {
+		return findFactory() != null;
+	}
+
+	private static Method findFactory() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static ExecutorService createExecutor() {
+		Method factory = findFactory();
+		if (factory != null) {
+			try {
+				return (ExecutorService) factory.invoke(null);
+			} catch (ReflectiveOperationException e) {
+				// fall through (e.g. preview features are disabled)
+			}
+		}
+
+		Logging.log(LogLevel.WARNING, "Virtual threads are not available, using a cached thread pool",
+				VirtualThreadSignalScheduler.class.getName());
+		return Executors.newCachedThreadPool(daemonThreads("signal-vt"));
+	}
+
+	/**
+	 * Every task has a thread of its own.
+	 */
+	@Override
+	public boolean allowsBlocking() {
+		return true;
+	}
+
+}
@@ -1,5 +1,8 @@
 package tests;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import nodes.Node;
 import nodes.compositor.Compositor;
 import nodes.signals.Signal;
@@ -11,7 +14,7 @@ import tests.nodes.NumberOutputNode;
 
 public class FirstMathTestMain {
 
-	public static void main(String[] args) throws InterruptedException {
+	public static void main(String[] args) throws InterruptedException, TimeoutException {
 
 		/*
 		 * Enable this if you want to see logging information in stdout.
@@ -73,15 +76,21 @@ public class FirstMathTestMain {
 		// add -> out
 		Signal.route(add, out);
 
+		// out -> end
+		Signal.route(out.getSignalOutput(), comp.getSignalEnd());
+
 		/*
-		 * With start() we send a Signal through the ComositorStartNode.
+		 * With runAndAwait() we send a Signal through the ComositorStartNode
+		 * and wait until it reaches the end of the Compositor. (start() just
+		 * sends the Signal, submit() returns a future instead of waiting)
 		 */
-		comp.start();
+		comp.runAndAwait(2, TimeUnit.SECONDS);
 
 		/*
-		 * Now we "wait" for the program flow to finish and clean up afterwards.
+		 * A Compositor can also be compiled into an ExecutionPlan, which runs
+		 * the whole graph on the current thread.
 		 */
-		Thread.sleep(2000);
+		comp.compile().execute();
 
 		// clean up
 		System.out.println("\nQuitting");
@@ -0,0 +1,190 @@
+package tests.checks;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Random;
+
+import nodes.ExecutionContext;
+import nodes.NodeOutputInterface;
+import nodes.ReturnCode;
+import nodes.batch.BatchOperation;
+import nodes.batch.BatchReduction;
+import nodes.batch.DoubleBatchNode;
+
+/**
+ * Compares the results of the {@link BatchOperation}s and
+ * {@link BatchReduction}s with the same operation computed element by
+ * element, for arrays and for {@link DoubleBuffer}s on the array path, with
+ * positions and array offsets and without arrays (direct buffers). Also
+ * checks that a {@link DoubleBatchNode} reuses its result column within one
+ * {@link ExecutionContext} only.
+ */
+public class BatchKernelCheck extends Check {
+
+	/** Not a multiple of 4, so the tails of unrolled loops are covered. */
+	private static final int N = 1003;
+
+	private static final int OFFSET = 5;
+
+	private final int[] ia = new int[N], ib = new int[N];
+	private final double[] da = new double[N], db = new double[N];
+
+	public BatchKernelCheck() {
+		super("BatchKernel");
+	}
+
+	@Override
+	protected void run() {
+		int[] ia = this.ia, ib = this.ib;
+		double[] da = this.da, db = this.db;
+		Random random = new Random(42);
+		for (int i = 0; i < N; ++i) {
+			ia[i] = random.nextInt();
+			ib[i] = random.nextInt();
+			// whole numbers, so sums do not depend on the order of the additions
+			da[i] = random.nextInt(2000) - 1000;
+			db[i] = random.nextInt(2000) - 1000;
+		}
+
+		for (BatchOperation op : BatchOperation.values()) {
+			int[] ir = new int[N];
+			op.apply(ia, ib, ir, N);
+			for (int i = 0; i < N; ++i) {
+				if (ir[i] != scalar(op, ia[i], ib[i])) {
+					this.expect(false, op + " int[" + i + "]");
+					break;
+				}
+			}
+
+			double[] dr = new double[N];
+			op.apply(da, db, dr, N);
+			this.expectScalar(op, "double[]", dr, 0);
+
+			// the array path
+			DoubleBuffer r = DoubleBuffer.allocate(N);
+			op.apply(DoubleBuffer.wrap(da), DoubleBuffer.wrap(db), r, N);
+			this.expectScalar(op, "heap buffer", r.array(), 0);
+
+			// positions and array offsets
+			DoubleBuffer a = shifted(da, false), b = shifted(db, false);
+			r = DoubleBuffer.allocate(N + OFFSET).position(OFFSET).slice();
+			op.apply(a, b, r, N);
+			this.expectScalar(op, "heap buffer with offsets", r.array(), r.arrayOffset());
+			this.expectEquals(OFFSET, a.position(), op + " position of a");
+
+			// no arrays
+			a = shifted(da, true);
+			b = shifted(db, true);
+			r = direct(N + OFFSET).position(OFFSET);
+			op.apply(a, b, r, N);
+			double[] copy = new double[N];
+			r.get(OFFSET, copy);
+			this.expectScalar(op, "direct buffer", copy, 0);
+			this.expectEquals(OFFSET, r.position(), op + " position of result");
+
+			// a result that is also an operand
+			double[] same = da.clone();
+			op.apply(same, db, same, N);
+			this.expectScalar(op, "result = a", same, 0);
+		}
+
+		for (BatchReduction red : BatchReduction.values()) {
+			long il = red == BatchReduction.SUM ? 0 : red == BatchReduction.MIN ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+			double dl = red == BatchReduction.SUM ? 0
+					: red == BatchReduction.MIN ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < N; ++i) {
+				il = red == BatchReduction.SUM ? il + ia[i] : red == BatchReduction.MIN ? Math.min(il, ia[i]) : Math.max(il, ia[i]);
+				dl = red == BatchReduction.SUM ? dl + da[i] : red == BatchReduction.MIN ? Math.min(dl, da[i]) : Math.max(dl, da[i]);
+			}
+			this.expectEquals(il, red.apply(ia, N), red + " int[]");
+			this.expectEquals(dl, red.apply(da, N), red + " double[]");
+		}
+
+		this.checkColumns();
+	}
+
+	private void checkColumns() {
+		DoubleBatchNode node = new DoubleBatchNode(BatchOperation.ADD);
+		NodeOutputInterface a = new NodeOutputInterface(double[].class, this.da);
+		NodeOutputInterface b = new NodeOutputInterface(double[].class, this.db);
+		node.getInput1().setConnection(a);
+		node.getInput2().setConnection(b);
+
+		ExecutionContext first = new ExecutionContext(), second = new ExecutionContext();
+		double[] r1 = this.runIn(node, first);
+		double[] r2 = this.runIn(node, first);
+		double[] r3 = this.runIn(node, second);
+		this.expect(r1 != null && r1 == r2, "column reused within a context");
+		this.expect(r3 != null && r3 != r1, "column not shared between contexts");
+		this.expectScalar(BatchOperation.ADD, "node", r3, 0);
+
+		this.expectEquals(ReturnCode.SUCCESS, node.execute(), "run outside of a context");
+		double[] r4 = (double[]) node.getResult().getValue();
+		this.expectEquals(ReturnCode.SUCCESS, node.execute(), "run outside of a context");
+		this.expect(r4 != node.getResult().getValue(), "new column outside of a context");
+	}
+
+	private double[] runIn(DoubleBatchNode node, ExecutionContext ctx) {
+		ExecutionContext prev = ExecutionContext.enter(ctx);
+		try {
+			this.expectEquals(ReturnCode.SUCCESS, node.execute(), "run in " + ctx);
+			return (double[]) node.getResult().getValue();
+		} finally {
+			ExecutionContext.restore(prev);
+		}
+	}
+
+	private void expectScalar(BatchOperation op, String what, double[] r, int from) {
+		for (int i = 0; i < N; ++i) {
+			if (r[from + i] != scalar(op, this.da[i], this.db[i])) {
+				this.expect(false, op + " " + what + " [" + i + "]");
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns a buffer with the given values at position OFFSET.
+	 */
+	private static DoubleBuffer shifted(double[] values, boolean direct) {
+		DoubleBuffer buf = direct ? direct(values.length + OFFSET) : DoubleBuffer.allocate(values.length + OFFSET);
+		buf.put(OFFSET, values);
+		return buf.position(OFFSET);
+	}
+
+	private static DoubleBuffer direct(int n) {
+		return ByteBuffer.allocateDirect(n * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+	}
+
+	private static int scalar(BatchOperation op, int a, int b) {
+		switch (op) {
+		case ADD:
+			return a + b;
+		case SUBTRACT:
+			return a - b;
+		case MULTIPLY:
+			return a * b;
+		case MIN:
+			return Math.min(a, b);
+		default:
+			return Math.max(a, b);
+		}
+	}
+
+	private static double scalar(BatchOperation op, double a, double b) {
+		switch (op) {
+		case ADD:
+			return a + b;
+		case SUBTRACT:
+			return a - b;
+		case MULTIPLY:
+			return a * b;
+		case MIN:
+			return Math.min(a, b);
+		default:
+			return Math.max(a, b);
+		}
+	}
+
+}
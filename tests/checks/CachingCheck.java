@@ -0,0 +1,118 @@
+package tests.checks;
+
+import nodes.CachingNode;
+import nodes.ExecutionContext;
+import nodes.Node;
+import nodes.NodeInputInterface;
+import nodes.NodeOutputInterface;
+import nodes.ReturnCode;
+
+/**
+ * Checks that a {@link CachingNode} runs the wrapped {@link Node} once per
+ * distinct input, evicts the least recently used results, writes only the
+ * outputs the remembered run wrote, keeps the results of an
+ * {@link ExecutionContext} within it and destroys the wrapped {@link Node}.
+ */
+public class CachingCheck extends Check {
+
+	public CachingCheck() {
+		super("Caching");
+	}
+
+	@Override
+	protected void run() {
+		SquareNode square = new SquareNode();
+		CachingNode caching = new CachingNode(square, 2);
+		NodeOutputInterface source = new NodeOutputInterface(Integer.class, 0);
+		caching.getInput("In").setConnection(source);
+		NodeOutputInterface squared = caching.getOutput("Square");
+		NodeOutputInterface negative = caching.getOutput("Negative");
+
+		// misses, the second one does not write Negative
+		this.runWith(caching, source, -2);
+		this.runWith(caching, source, 3);
+		this.expectEquals(2, square.runs, "runs after two misses");
+		this.expectEquals(9, squared.getValue(), "square of 3");
+		this.expectEquals(-2, negative.getValue(), "negative after 3");
+
+		// the eldest result (-2) is evicted
+		this.runWith(caching, source, -7);
+		this.expectEquals(1L, caching.getEvictions(), "evictions after a third miss");
+
+		// a hit must not write the remembered Negative (-2) of its first run
+		this.runWith(caching, source, 3);
+		this.expectEquals(3, square.runs, "runs after a hit");
+		this.expectEquals(1L, caching.getHits(), "hits");
+		this.expectEquals(9, squared.getValue(), "square of 3 from the cache");
+		this.expectEquals(-7, negative.getValue(), "negative kept by the hit");
+
+		// -7 is the least recently used result now, -2 was evicted before
+		this.runWith(caching, source, -2);
+		this.expectEquals(4, square.runs, "runs after the evicted input");
+		this.runWith(caching, source, 3);
+		this.expectEquals(4, square.runs, "runs after the recently used input");
+		this.runWith(caching, source, -7);
+		this.expectEquals(5, square.runs, "runs after the least recently used input");
+		this.expectEquals(3L, caching.getEvictions(), "evictions");
+		this.expectEquals(2, caching.size(), "size");
+
+		// a hit within a context writes the context only
+		ExecutionContext ctx = new ExecutionContext();
+		ExecutionContext prev = ExecutionContext.enter(ctx);
+		try {
+			source.setValue(3);
+			this.expectEquals(ReturnCode.SUCCESS, caching.run(), "return code in the context");
+			this.expectEquals(9, squared.getValue(), "square in the context");
+			this.expectEquals(-7, negative.getValue(), "negative in the context");
+		} finally {
+			ExecutionContext.restore(prev);
+		}
+		this.expectEquals(5, square.runs, "runs after the hit in the context");
+		this.expectEquals(49, squared.getValue(), "square outside of the context");
+
+		caching.destroy();
+		this.expect(square.destroyed, "the wrapped node is destroyed");
+		this.expectEquals(0, caching.size(), "size after destroy");
+		this.expectEquals(null, caching.getInput("In").getSource(), "source after destroy");
+	}
+
+	private void runWith(CachingNode caching, NodeOutputInterface source, int value) {
+		source.setValue(value);
+		this.expectEquals(ReturnCode.SUCCESS, caching.run(), "return code for " + value);
+	}
+
+	/**
+	 * Squares its input and writes Negative only for negative inputs.
+	 */
+	private static class SquareNode extends Node {
+		private final NodeInputInterface in = new NodeInputInterface(Integer.class, 0);
+		private final NodeOutputInterface square = new NodeOutputInterface(Integer.class, 0);
+		private final NodeOutputInterface negative = new NodeOutputInterface(Integer.class, 0);
+
+		int runs;
+		boolean destroyed;
+
+		SquareNode() {
+			this.registerInput("In", this.in);
+			this.registerOutput("Square", this.square);
+			this.registerOutput("Negative", this.negative);
+		}
+
+		@Override
+		public ReturnCode run() {
+			this.runs++;
+			int v = (Integer) this.in.getValue();
+			this.square.setValue(v * v);
+			if (v < 0)
+				this.negative.setValue(v);
+			return ReturnCode.SUCCESS;
+		}
+
+		@Override
+		public void destroy() {
+			super.destroy();
+			this.destroyed = true;
+		}
+	}
+
+}
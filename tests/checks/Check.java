@@ -0,0 +1,77 @@
+package tests.checks;
+
+/**
+ * Base class of all checks. A check runs a small scenario once and compares
+ * its results with the expected ones, every mismatch is printed and makes the
+ * check fail. Unlike a {@link tests.stress.StressTest} it does not look for
+ * races, but for wrong results.
+ */
+public abstract class Check {
+
+	private final String name;
+
+	private int failures;
+
+	/**
+	 * @param name
+	 *            the name that is printed
+	 */
+	protected Check(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Runs the scenario and compares the results with expect().
+	 */
+	protected abstract void run() throws Exception;
+
+	/**
+	 * Records a failure if the condition does not hold.
+	 * 
+	 * @param condition
+	 *            the expected condition
+	 * @param what
+	 *            describes the condition in the output
+	 */
+	protected void expect(boolean condition, String what) {
+		if (!condition) {
+			this.failures++;
+			System.out.printf("    failed: %s%n", what);
+		}
+	}
+
+	/**
+	 * Records a failure if the values are not equal.
+	 */
+	protected void expectEquals(Object expected, Object actual, String what) {
+		boolean equal = expected == null ? actual == null : expected.equals(actual);
+		this.expect(equal, what + " (expected " + expected + ", got " + actual + ")");
+	}
+
+	/**
+	 * Runs the check and prints the result to stdout. An exception that is
+	 * thrown by the scenario counts as a failure.
+	 * 
+	 * @return <code>true</code> if all expectations were met
+	 */
+	public boolean check() {
+		this.failures = 0;
+		long start = System.nanoTime();
+		try {
+			this.run();
+		} catch (Exception | AssertionError e) {
+			this.failures++;
+			System.out.printf("    failed: %s%n", e);
+		}
+		long millis = (System.nanoTime() - start) / 1000000;
+
+		boolean ok = this.failures == 0;
+		System.out.printf("%-32s %s (%d ms)%n", this.name, ok ? "OK" : "FAILED", millis);
+		return ok;
+	}
+
+}
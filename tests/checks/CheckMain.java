@@ -0,0 +1,41 @@
+package tests.checks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import utils.Logging;
+import utils.Logging.LogLevel;
+
+/**
+ * Runs all checks of this package.
+ * 
+ * Usage: CheckMain [name filter]
+ * 
+ * Only checks whose name contains the filter are run. Exits with 1 if a check
+ * failed.
+ */
+public class CheckMain {
+
+	public static void main(String[] args) throws Exception {
+		String filter = args.length > 0 ? args[0] : "";
+
+		Logging.setLevel(LogLevel.SEVERE);
+
+		List<Check> checks = new ArrayList<>();
+		checks.add(new BatchKernelCheck());
+		checks.add(new StreamCheck());
+		checks.add(new ShutdownCheck());
+		checks.add(new CachingCheck());
+		checks.add(new GraphIOCheck());
+		checks.add(new IncrementalCheck());
+
+		boolean ok = true;
+		for (Check c : checks) {
+			if (c.getName().contains(filter)) {
+				ok &= c.check();
+			}
+		}
+		System.exit(ok ? 0 : 1);
+	}
+
+}
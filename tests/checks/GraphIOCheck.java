@@ -0,0 +1,141 @@
+package tests.checks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import nodes.NodeInputInterface;
+import nodes.NodeOutputInterface;
+import nodes.compositor.Compositor;
+import nodes.compositor.io.GraphIO;
+import nodes.compositor.io.NodeCodec;
+import nodes.compositor.io.NodeRegistry;
+import nodes.signals.Signal;
+import nodes.signals.SignalSyncronizer;
+import tests.nodes.NumberAddNode;
+import tests.nodes.NumberInputNode;
+
+/**
+ * Writes a small graph in both formats of {@link GraphIO}, reads it back and
+ * checks that the result is the same graph (written as text again) and
+ * computes the same output. Type names and parameters contain characters that
+ * must be escaped in the text format. Also checks that broken escapes are
+ * reported as {@link IOException}s with the line number.
+ */
+public class GraphIOCheck extends Check {
+
+	public GraphIOCheck() {
+		super("GraphIO");
+	}
+
+	@Override
+	protected void run() throws Exception {
+		NodeRegistry registry = registry();
+		Compositor original = build();
+		String text = text(original, registry);
+		this.expectEquals(12, result(original), "result of the original graph");
+
+		Compositor fromText = shell();
+		GraphIO.readText(new StringReader(text), registry, fromText);
+		this.compare(text, fromText, registry, "text");
+
+		Path file = Files.createTempFile("graph", ".bin");
+		try {
+			GraphIO.writeBinary(original, registry, file);
+			Compositor fromBinary = shell();
+			GraphIO.readBinary(file, registry, fromBinary);
+			this.compare(text, fromBinary, registry, "binary");
+		} finally {
+			Files.deleteIfExists(file);
+		}
+
+		this.expectBroken(text.replace("Number%25Input", "Number%G5Input"), "an invalid hex digit");
+		this.expectBroken(text.replace("Number%25Input", "Number%2"), "a truncated escape");
+	}
+
+	private void compare(String text, Compositor read, NodeRegistry registry, String format) throws IOException {
+		this.expectEquals(4, read.getNodes().size(), format + ": nodes");
+		this.expectEquals(1, read.getSyncronizers().size(), format + ": syncronizers");
+		this.expectEquals(text, text(read, registry), format + ": graph written again");
+		this.expectEquals(12, result(read), format + ": result");
+	}
+
+	private void expectBroken(String text, String what) {
+		try {
+			GraphIO.readText(new StringReader(text), registry(), shell());
+			this.expect(false, what + " is accepted");
+		} catch (IOException e) {
+			this.expect(e.getMessage().startsWith("Line "), what + " is reported without a line: " + e.getMessage());
+		} catch (RuntimeException e) {
+			this.expect(false, what + " throws " + e);
+		}
+	}
+
+	/**
+	 * (3 + 4) + Offset, where Offset is an unconnected input of the
+	 * {@link Compositor} with the default value 5.
+	 */
+	private static Compositor build() {
+		Compositor c = shell();
+		NumberInputNode a = new NumberInputNode(3), b = new NumberInputNode(4);
+		NumberAddNode first = new NumberAddNode(), second = new NumberAddNode();
+		c.addNode(a);
+		c.addNode(b);
+		c.addNode(first);
+		c.addNode(second);
+		c.addEdge(a, "Output", first, "Input1");
+		c.addEdge(b, "Output", first, "Input2");
+		c.addEdge(first, "Sum", second, "Input1");
+		second.getInput2().setConnection(c.getInnerInput("Offset"));
+		c.getInnerOutput("Result").setConnection(second.getOutput());
+
+		SignalSyncronizer sync = new SignalSyncronizer(1, 1);
+		c.addSyncronizer(sync);
+		Signal.route(c.getSignalStart(), sync.getInput(0));
+		Signal.route(sync.getOutput(0), first.getSignalInput());
+		Signal.route(first, second);
+		Signal.route(second.getSignalOutput(), c.getSignalEnd());
+		return c;
+	}
+
+	/**
+	 * Returns a {@link Compositor} with the interfaces the graph uses.
+	 */
+	private static Compositor shell() {
+		Compositor c = new Compositor();
+		c.registerInput("Offset", new NodeInputInterface(Integer.class, 5));
+		c.registerOutput("Result", new NodeOutputInterface(Integer.class, 0));
+		return c;
+	}
+
+	private static NodeRegistry registry() {
+		NodeRegistry registry = new NodeRegistry();
+		registry.register("Number Add", NumberAddNode.class, NumberAddNode::new);
+		registry.register("Number%Input", NumberInputNode.class, new NodeCodec<NumberInputNode>() {
+			@Override
+			public String encode(NumberInputNode node) {
+				return "value = " + node.getOutput("Output").getStartValue();
+			}
+
+			@Override
+			public NumberInputNode decode(String parameters) {
+				return new NumberInputNode(Integer.valueOf(parameters.substring("value = ".length())));
+			}
+		});
+		return registry;
+	}
+
+	private static String text(Compositor c, NodeRegistry registry) throws IOException {
+		StringWriter writer = new StringWriter();
+		GraphIO.writeText(c, registry, writer);
+		return writer.toString();
+	}
+
+	private static Object result(Compositor c) {
+		c.compile().execute();
+		return c.getOutput("Result").getValue();
+	}
+
+}
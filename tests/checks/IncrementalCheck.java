@@ -0,0 +1,129 @@
+package tests.checks;
+
+import nodes.CachingNode;
+import nodes.Node;
+import nodes.NodeInputInterface;
+import nodes.NodeOutputInterface;
+import nodes.ReturnCode;
+import nodes.compositor.Compositor;
+import nodes.compositor.ExecutionPlan;
+import nodes.signals.Signal;
+import tests.nodes.NumberAddNode;
+import tests.nodes.NumberInputNode;
+
+/**
+ * Checks that {@link ExecutionPlan#executeIncremental()} skips pure
+ * {@link Node}s whose inputs did not change, executes the pure {@link Node}s
+ * downstream of a changed output again and executes all other {@link Node}s
+ * every time.
+ */
+public class IncrementalCheck extends Check {
+
+	public IncrementalCheck() {
+		super("Incremental");
+	}
+
+	@Override
+	protected void run() {
+		Compositor c = new Compositor();
+		NumberInputNode a = new NumberInputNode(1), b = new NumberInputNode(2), x = new NumberInputNode(10);
+		CountingAddNode first = new CountingAddNode(true), second = new CountingAddNode(true);
+		CountingAddNode other = new CountingAddNode(true), impure = new CountingAddNode(false);
+		CachingNode cached = new CachingNode(new NumberAddNode(), 4);
+		Node[] chain = { a, b, x, first, second, other, impure, cached };
+		for (Node n : chain) {
+			c.addNode(n);
+		}
+		c.addEdge(a, "Output", first, "Input1");
+		c.addEdge(b, "Output", first, "Input2");
+		c.addEdge(first, "Sum", second, "Input1");
+		c.addEdge(b, "Output", second, "Input2");
+		c.addEdge(x, "Output", other, "Input1");
+		c.addEdge(x, "Output", other, "Input2");
+		c.addEdge(a, "Output", impure, "Input1");
+		c.addEdge(b, "Output", impure, "Input2");
+		c.addEdge(other, "Sum", cached, "Input1");
+		c.addEdge(a, "Output", cached, "Input2");
+		Signal.route(c.getSignalStart(), a.getSignalInput());
+		for (int i = 1; i < chain.length; ++i) {
+			Signal.route(chain[i - 1], chain[i]);
+		}
+		Signal.route(cached.getSignalOutput(), c.getSignalEnd());
+		ExecutionPlan plan = c.compile();
+
+		this.step(plan, 0, "first run");
+		this.expectRuns(first, second, other, impure, 1, 1, 1, 1, "first run");
+		this.expectEquals(3, first.out.getValue(), "first");
+		this.expectEquals(5, second.out.getValue(), "second");
+		this.expectEquals(21, cached.getOutput("Sum").getValue(), "cached");
+
+		// the four pure nodes are skipped, the others run again
+		this.step(plan, 4, "unchanged run");
+		this.expectRuns(first, second, other, impure, 1, 1, 1, 2, "unchanged run");
+		this.expectEquals(1L, cached.getMisses(), "runs of the cached node");
+
+		// only the branch of x runs again
+		x.getOutput("Output").setValue(11);
+		this.step(plan, 2, "run after x changed");
+		this.expectRuns(first, second, other, impure, 1, 1, 2, 3, "run after x changed");
+		this.expectEquals(22, other.out.getValue(), "other");
+		this.expectEquals(23, cached.getOutput("Sum").getValue(), "cached after x changed");
+
+		// everything downstream of a except for other
+		a.getOutput("Output").setValue(5);
+		this.step(plan, 1, "run after a changed");
+		this.expectRuns(first, second, other, impure, 2, 2, 2, 4, "run after a changed");
+		this.expectEquals(7, first.out.getValue(), "first after a changed");
+		this.expectEquals(9, second.out.getValue(), "second after a changed");
+		this.expectEquals(27, cached.getOutput("Sum").getValue(), "cached after a changed");
+
+		plan.invalidate(first);
+		this.step(plan, 3, "run after invalidate");
+		this.expectRuns(first, second, other, impure, 3, 2, 2, 5, "run after invalidate");
+	}
+
+	private void step(ExecutionPlan plan, int skipped, String what) {
+		this.expectEquals(ReturnCode.SUCCESS, plan.executeIncremental(), what + ": return code");
+		this.expectEquals(skipped, plan.getSkippedNodes(), what + ": skipped nodes");
+	}
+
+	private void expectRuns(CountingAddNode first, CountingAddNode second, CountingAddNode other,
+			CountingAddNode impure, int f, int s, int o, int i, String what) {
+		this.expectEquals(f, first.runs, what + ": runs of first");
+		this.expectEquals(s, second.runs, what + ": runs of second");
+		this.expectEquals(o, other.runs, what + ": runs of other");
+		this.expectEquals(i, impure.runs, what + ": runs of impure");
+	}
+
+	/**
+	 * Adds two numbers and counts its runs.
+	 */
+	private static class CountingAddNode extends Node {
+		private final NodeInputInterface in1 = new NodeInputInterface(Integer.class, 0);
+		private final NodeInputInterface in2 = new NodeInputInterface(Integer.class, 0);
+		final NodeOutputInterface out = new NodeOutputInterface(Integer.class, 0);
+		private final boolean pure;
+
+		int runs;
+
+		CountingAddNode(boolean pure) {
+			this.pure = pure;
+			this.registerInput("Input1", this.in1);
+			this.registerInput("Input2", this.in2);
+			this.registerOutput("Sum", this.out);
+		}
+
+		@Override
+		public ReturnCode run() {
+			this.runs++;
+			this.out.setValue((Integer) this.in1.getValue() + (Integer) this.in2.getValue());
+			return ReturnCode.SUCCESS;
+		}
+
+		@Override
+		public boolean isPure() {
+			return this.pure;
+		}
+	}
+
+}
@@ -0,0 +1,149 @@
+package tests.checks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nodes.Node;
+import nodes.ReturnCode;
+import nodes.compositor.Compositor;
+import nodes.signals.Signal;
+
+/**
+ * Checks shutdown(), shutdownNow() and awaitTermination() of a
+ * {@link Compositor}: an orderly shutdown finishes the {@link Signal}s in
+ * flight, shutdownNow() returns the queued ones, a loop keeps an orderly
+ * shutdown from terminating, and nested {@link Compositor}s that are shut
+ * down on their own and through their parent both terminate.
+ */
+public class ShutdownCheck extends Check {
+
+	private static final long WORK_MILLIS = 20;
+
+	public ShutdownCheck() {
+		super("Shutdown");
+	}
+
+	@Override
+	protected void run() throws Exception {
+		this.checkIdle();
+		this.checkOrderly();
+		this.checkNow();
+		this.checkLoop();
+		this.checkNested();
+	}
+
+	private void checkIdle() throws Exception {
+		Compositor c = new Compositor();
+		c.addNode(new SlowNode(new AtomicInteger()));
+		this.expect(!c.awaitTermination(10, TimeUnit.MILLISECONDS), "not terminated before shutdown()");
+		c.shutdown();
+		this.expect(c.isShutdown(), "idle: shut down");
+		// no Signal ever arrived, the latch alone has to be enough
+		this.expect(c.awaitTermination(1, TimeUnit.SECONDS), "idle: terminated");
+		this.expect(c.isTerminated(), "idle: isTerminated()");
+	}
+
+	private void checkOrderly() throws Exception {
+		AtomicInteger done = new AtomicInteger();
+		Compositor c = chain(done);
+		for (int i = 0; i < 5; ++i) {
+			c.start();
+		}
+		c.shutdown();
+		c.start();
+		try {
+			c.submit();
+			this.expect(false, "submit() after shutdown() throws");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		this.expect(c.awaitTermination(10, TimeUnit.SECONDS), "orderly: terminated");
+		this.expectEquals(5, done.get(), "orderly: signals in flight finished");
+	}
+
+	private void checkNow() throws Exception {
+		AtomicInteger done = new AtomicInteger();
+		Compositor c = chain(done);
+		for (int i = 0; i < 10; ++i) {
+			c.start();
+		}
+		List<Signal> undelivered = c.shutdownNow();
+		this.expect(c.awaitTermination(10, TimeUnit.SECONDS), "now: terminated");
+		this.expect(!undelivered.isEmpty(), "now: queued signals returned");
+		// a Signal that a node handles at the moment is finished, but the next
+		// node does not accept it anymore, so one per node may be lost
+		int seen = done.get() + undelivered.size();
+		this.expect(seen >= 8 && seen <= 10, "now: finished and returned signals (" + seen + ")");
+	}
+
+	private void checkLoop() throws Exception {
+		Compositor c = new Compositor();
+		Node loop = new SlowNode(new AtomicInteger());
+		c.addNode(loop);
+		Signal.route(c.getSignalStart(), loop.getSignalInput());
+		Signal.route(loop, loop);
+		c.start();
+
+		c.shutdown();
+		this.expect(!c.awaitTermination(200, TimeUnit.MILLISECONDS), "loop: shutdown() does not terminate");
+		this.expect(!c.isTerminated(), "loop: not terminated");
+		c.shutdownNow();
+		this.expect(c.awaitTermination(10, TimeUnit.SECONDS), "loop: shutdownNow() terminates");
+	}
+
+	private void checkNested() throws Exception {
+		AtomicInteger done = new AtomicInteger();
+		Compositor inner = chain(done);
+		Compositor outer = new Compositor();
+		outer.addNode(inner);
+		Signal.route(outer.getSignalStart(), inner.getSignalInput());
+		Signal.route(inner.getSignalOutput(), outer.getSignalEnd());
+		for (int i = 0; i < 3; ++i) {
+			outer.start();
+		}
+
+		// both add an idle listener to the nodes of inner
+		inner.shutdown();
+		outer.shutdown();
+		this.expect(outer.awaitTermination(10, TimeUnit.SECONDS), "nested: outer terminated");
+		this.expect(inner.awaitTermination(10, TimeUnit.SECONDS), "nested: inner terminated");
+	}
+
+	/**
+	 * Returns a {@link Compositor} with two {@link SlowNode}s in a row, the
+	 * second one counts the finished runs.
+	 */
+	private static Compositor chain(AtomicInteger done) {
+		Compositor c = new Compositor();
+		Node first = new SlowNode(new AtomicInteger());
+		Node second = new SlowNode(done);
+		c.addNode(first);
+		c.addNode(second);
+		Signal.route(c.getSignalStart(), first.getSignalInput());
+		Signal.route(first, second);
+		Signal.route(second.getSignalOutput(), c.getSignalEnd());
+		return c;
+	}
+
+	private static class SlowNode extends Node {
+		private final AtomicInteger count;
+
+		SlowNode(AtomicInteger count) {
+			this.count = count;
+		}
+
+		@Override
+		public ReturnCode run() {
+			try {
+				Thread.sleep(WORK_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			this.count.incrementAndGet();
+			return ReturnCode.SUCCESS;
+		}
+	}
+
+}
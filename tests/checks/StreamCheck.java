@@ -0,0 +1,183 @@
+package tests.checks;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import nodes.Node;
+import nodes.NodeInputInterface;
+import nodes.NodeOutputInterface;
+import nodes.ReturnCode;
+import nodes.SinkNode;
+import nodes.SourceNode;
+import nodes.compositor.Compositor;
+import nodes.signals.Signal;
+
+/**
+ * Checks that a {@link SourceNode} never requests more elements from a
+ * publisher than it has credits for, and that the {@link Stream}s of
+ * Compositor.stream() fail instead of waiting forever when the
+ * {@link Compositor} is shut down.
+ */
+public class StreamCheck extends Check {
+
+	private static final int WINDOW = 4;
+	private static final int ELEMENTS = 20000;
+
+	public StreamCheck() {
+		super("Stream");
+	}
+
+	@Override
+	protected void run() throws Exception {
+		this.checkDemand();
+		this.checkShutdown();
+	}
+
+	private void checkDemand() throws Exception {
+		AtomicInteger consumed = new AtomicInteger();
+		CountingPublisher publisher = new CountingPublisher(consumed);
+		SourceNode<Integer> source = new SourceNode<>(Integer.class, publisher, WINDOW);
+		CompletableFuture<Void> done = new CompletableFuture<>();
+		SinkNode<Integer> sink = new SinkNode<>(Integer.class, e -> {
+			if (consumed.incrementAndGet() == ELEMENTS)
+				done.complete(null);
+		});
+		sink.setSource(source);
+		sink.getInput().setConnection(source.getOutput());
+		Signal.route(source.getSignalOutput(), sink.getSignalInput());
+
+		source.getSignalInput().sendSignal(new Signal());
+		try {
+			done.get(30, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			this.expect(false, "all elements consumed (" + consumed.get() + ")");
+		}
+		this.expectEquals(0L, publisher.overdrawn.get(), "requests beyond the credits");
+		// credits that return after the end are not requested anymore
+		long r = publisher.requested.get();
+		this.expect(r >= ELEMENTS && r <= ELEMENTS + WINDOW, "requested elements (" + r + ")");
+		source.destroy();
+		sink.destroy();
+	}
+
+	private void checkShutdown() throws Exception {
+		Compositor c = identity();
+		c.shutdown();
+		try {
+			c.stream(Stream.of(1, 2, 3)).close();
+			this.expect(false, "stream() on a shut down compositor throws");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		c = identity();
+		try (Stream<Object> out = c.stream(IntStream.iterate(0, i -> i + 1).boxed())) {
+			Iterator<Object> it = out.iterator();
+			this.expect(it.hasNext(), "first element");
+			it.next();
+
+			Compositor shut = c;
+			CompletableFuture<Throwable> reader = CompletableFuture.supplyAsync(() -> {
+				try {
+					while (it.hasNext())
+						it.next();
+					return null;
+				} catch (IllegalStateException e) {
+					return e;
+				}
+			});
+			shut.shutdown();
+			Throwable t = null;
+			try {
+				t = reader.get(10, TimeUnit.SECONDS);
+			} catch (TimeoutException e) {
+				this.expect(false, "the stream does not wait forever after shutdown()");
+			}
+			this.expect(t != null, "the stream fails after shutdown()");
+		}
+		this.expect(c.awaitTermination(10, TimeUnit.SECONDS), "terminated");
+	}
+
+	/**
+	 * Returns a {@link Compositor} whose output "Out" is its input "In".
+	 */
+	private static Compositor identity() {
+		Compositor c = new Compositor();
+		c.registerInput("In", new NodeInputInterface(Object.class, null));
+		c.registerOutput("Out", new NodeOutputInterface(Object.class, null));
+		Node n = new Node() {
+			private final NodeInputInterface in = new NodeInputInterface(Object.class, null);
+			private final NodeOutputInterface out = new NodeOutputInterface(Object.class, null);
+			{
+				this.registerInput("In", this.in);
+				this.registerOutput("Out", this.out);
+			}
+
+			@Override
+			public ReturnCode run() {
+				this.out.setValue(this.in.getValue());
+				return ReturnCode.SUCCESS;
+			}
+		};
+		c.addNode(n);
+		n.getInput("In").setConnection(c.getInnerInput("In"));
+		c.getInnerOutput("Out").setConnection(n.getOutput("Out"));
+		Signal.route(c.getSignalStart(), n.getSignalInput());
+		Signal.route(n.getSignalOutput(), c.getSignalEnd());
+		return c;
+	}
+
+	/**
+	 * Publishes ELEMENTS numbers and records whether more were requested
+	 * than the window plus the consumed ones.
+	 */
+	private static final class CountingPublisher implements Flow.Publisher<Integer> {
+		final AtomicLong requested = new AtomicLong();
+		final AtomicLong overdrawn = new AtomicLong();
+		private final AtomicInteger consumed;
+		private final AtomicInteger pumping = new AtomicInteger();
+		private int delivered = 0;
+
+		CountingPublisher(AtomicInteger consumed) {
+			this.consumed = consumed;
+		}
+
+		@Override
+		public void subscribe(Flow.Subscriber<? super Integer> subscriber) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+					long r = requested.addAndGet(n);
+					// consumed elements are counted before their credit returns
+					if (r > WINDOW + consumed.get())
+						overdrawn.incrementAndGet();
+					pump(subscriber);
+				}
+
+				@Override
+				public void cancel() {
+				}
+			});
+		}
+
+		private void pump(Flow.Subscriber<? super Integer> subscriber) {
+			if (this.pumping.getAndIncrement() != 0)
+				return;
+			do {
+				while (this.delivered < this.requested.get() && this.delivered < ELEMENTS) {
+					subscriber.onNext(this.delivered++);
+					if (this.delivered == ELEMENTS)
+						subscriber.onComplete();
+				}
+			} while (this.pumping.decrementAndGet() != 0);
+		}
+	}
+
+}
@@ -0,0 +1,147 @@
+package tests.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nodes.ExecutionContext;
+import nodes.IntInputInterface;
+import nodes.IntOutputInterface;
+import nodes.NodeInputInterface;
+import nodes.NodeOutputInterface;
+import nodes.batch.BatchOperation;
+import nodes.batch.IntBatchNode;
+import nodes.compositor.Compositor;
+import nodes.compositor.ExecutionPlan;
+import nodes.signals.Signal;
+import tests.nodes.IntAddNode;
+
+/**
+ * Measures the addition of two columns with the given number of elements by a
+ * compiled {@link Compositor}. Either every pair of elements is added by its
+ * own run of an {@link IntAddNode}, or all of them by one run of an
+ * {@link IntBatchNode}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchArithmeticBenchmark {
+
+	/**
+	 * The number of elements per column.
+	 */
+	@Param({ "1024", "65536" })
+	public int elements;
+
+	/**
+	 * If one {@link IntBatchNode} adds the columns.
+	 */
+	@Param({ "false", "true" })
+	public boolean batch;
+
+	private Compositor root;
+	private ExecutionPlan plan;
+
+	private int[] a, b;
+	private IntOutputInterface aValue, bValue;
+	private NodeOutputInterface aColumn, bColumn;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.a = new int[this.elements];
+		this.b = new int[this.elements];
+		for (int i = 0; i < this.elements; ++i) {
+			this.a[i] = i;
+			this.b[i] = 2 * i;
+		}
+
+		this.root = new Compositor();
+		if (this.batch) {
+			this.root.registerInput("A", new NodeInputInterface(int[].class, null));
+			this.root.registerInput("B", new NodeInputInterface(int[].class, null));
+			this.root.registerOutput("Sum", new NodeOutputInterface(int[].class, null));
+			IntBatchNode add = new IntBatchNode(BatchOperation.ADD);
+			this.root.addNode(add);
+			add.getInput1().setConnection(this.root.getInnerInput("A"));
+			add.getInput2().setConnection(this.root.getInnerInput("B"));
+			this.root.getInnerOutput("Sum").setConnection(add.getResult());
+			Signal.route(this.root.getSignalStart(), add.getSignalInput());
+			Signal.route(add.getSignalOutput(), this.root.getSignalEnd());
+
+			this.aColumn = new NodeOutputInterface(int[].class, null);
+			this.bColumn = new NodeOutputInterface(int[].class, null);
+			this.root.getInput("A").setConnection(this.aColumn);
+			this.root.getInput("B").setConnection(this.bColumn);
+		} else {
+			this.root.registerInput("A", new IntInputInterface(0));
+			this.root.registerInput("B", new IntInputInterface(0));
+			this.root.registerOutput("Sum", new IntOutputInterface(0));
+			IntAddNode add = new IntAddNode();
+			this.root.addNode(add);
+			add.getInput1().setConnection(this.root.getInnerInput("A"));
+			add.getInput2().setConnection(this.root.getInnerInput("B"));
+			this.root.getInnerOutput("Sum").setConnection(add.getOutput());
+			Signal.route(this.root.getSignalStart(), add.getSignalInput());
+			Signal.route(add.getSignalOutput(), this.root.getSignalEnd());
+
+			this.aValue = new IntOutputInterface(0);
+			this.bValue = new IntOutputInterface(0);
+			this.root.getInput("A").setConnection(this.aValue);
+			this.root.getInput("B").setConnection(this.bValue);
+		}
+		this.plan = this.root.compile();
+	}
+
+	@Benchmark
+	public Object add() {
+		if (this.batch) {
+			ExecutionContext ctx = this.plan.newContext();
+			ExecutionContext prev = ExecutionContext.enter(ctx);
+			try {
+				this.aColumn.setValue(this.a);
+				this.bColumn.setValue(this.b);
+				this.plan.execute(ctx);
+				return this.root.getOutput("Sum").getValue();
+			} finally {
+				ExecutionContext.restore(prev);
+			}
+		}
+
+		long sum = 0;
+		IntOutputInterface result = (IntOutputInterface) this.root.getOutput("Sum");
+		for (int i = 0; i < this.elements; ++i) {
+			ExecutionContext ctx = this.plan.newContext();
+			ExecutionContext prev = ExecutionContext.enter(ctx);
+			try {
+				this.aValue.setInt(this.a[i]);
+				this.bValue.setInt(this.b[i]);
+				this.plan.execute(ctx);
+				sum += result.getInt();
+			} finally {
+				ExecutionContext.restore(prev);
+			}
+		}
+		return sum;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.root.destroy();
+	}
+
+}
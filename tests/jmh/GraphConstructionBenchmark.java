@@ -0,0 +1,75 @@
+package tests.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nodes.compositor.Compositor;
+import tests.nodes.NumberAddNode;
+import tests.nodes.NumberInputNode;
+
+/**
+ * Measures how long it takes to build a {@link Compositor} with the given
+ * number of {@link NumberAddNode}s via addNode() and addEdge() (or addEdges())
+ * and to destroy it again. Each node gets two data edges from its
+ * predecessors, one of them from the same input node, so its output has an
+ * edge to every node.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphConstructionBenchmark {
+
+	@Param({ "100", "1000", "10000" })
+	public int size;
+
+	/**
+	 * If the edges are added with a single addEdges() call.
+	 */
+	@Param({ "false", "true" })
+	public boolean bulk;
+
+	@Benchmark
+	public Compositor build() {
+		Compositor comp = new Compositor();
+		NumberInputNode first = new NumberInputNode(1);
+		comp.addNode(first);
+
+		Compositor.EdgeBuilder edges = new Compositor.EdgeBuilder(this.size * 2);
+		NumberAddNode prev = null;
+		for (int i = 0; i < this.size; ++i) {
+			NumberAddNode add = new NumberAddNode();
+			comp.addNode(add);
+			if (this.bulk) {
+				edges.add(prev == null ? first : prev, prev == null ? "Output" : "Sum", add, "Input1");
+				edges.add(first, "Output", add, "Input2");
+			} else if (prev == null) {
+				comp.addEdge(first, "Output", add, "Input1");
+				comp.addEdge(first, "Output", add, "Input2");
+			} else {
+				comp.addEdge(prev, "Sum", add, "Input1");
+				comp.addEdge(first, "Output", add, "Input2");
+			}
+			prev = add;
+		}
+		if (this.bulk) {
+			comp.addEdges(edges);
+		}
+
+		comp.destroy();
+		return comp;
+	}
+
+}
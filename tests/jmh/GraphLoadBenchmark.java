@@ -0,0 +1,120 @@
+package tests.jmh;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nodes.NodeOutputInterface;
+import nodes.compositor.Compositor;
+import nodes.compositor.io.GraphIO;
+import nodes.compositor.io.NodeCodec;
+import nodes.compositor.io.NodeRegistry;
+import nodes.signals.Signal;
+import tests.nodes.NumberAddNode;
+import tests.nodes.NumberInputNode;
+
+/**
+ * Measures how long it takes to load a stored graph with the given number of
+ * {@link NumberAddNode}s (the same graph as {@link GraphConstructionBenchmark},
+ * with the nodes routed as a chain) from a file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphLoadBenchmark {
+
+	@Param({ "1000", "100000" })
+	public int size;
+
+	/**
+	 * If the text format is used instead of the binary one.
+	 */
+	@Param({ "false", "true" })
+	public boolean text;
+
+	private final NodeRegistry registry = registry();
+	private Path file;
+
+	/**
+	 * Returns a registry that knows the test nodes.
+	 */
+	static NodeRegistry registry() {
+		NodeRegistry registry = new NodeRegistry();
+		registry.register("NumberAdd", NumberAddNode.class, NumberAddNode::new);
+		registry.register("NumberInput", NumberInputNode.class, new NodeCodec<NumberInputNode>() {
+			@Override
+			public String encode(NumberInputNode node) {
+				NodeOutputInterface o = node.getOutput("Output");
+				return String.valueOf(o.getStartValue());
+			}
+
+			@Override
+			public NumberInputNode decode(String parameters) {
+				return new NumberInputNode(Integer.valueOf(parameters));
+			}
+		});
+		return registry;
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		Compositor comp = new Compositor();
+		NumberInputNode first = new NumberInputNode(1);
+		comp.addNode(first);
+		Signal.route(comp.getSignalStart(), first.getSignalInput());
+
+		Compositor.EdgeBuilder edges = new Compositor.EdgeBuilder(this.size * 2);
+		NumberAddNode prev = null;
+		for (int i = 0; i < this.size; ++i) {
+			NumberAddNode add = new NumberAddNode();
+			comp.addNode(add);
+			edges.add(prev == null ? first : prev, prev == null ? "Output" : "Sum", add, "Input1");
+			edges.add(first, "Output", add, "Input2");
+			Signal.route(prev == null ? first.getSignalOutput() : prev.getSignalOutput(), add.getSignalInput());
+			prev = add;
+		}
+		comp.addEdges(edges);
+		Signal.route(prev.getSignalOutput(), comp.getSignalEnd());
+
+		this.file = Files.createTempFile("graph", this.text ? ".txt" : ".bin");
+		if (this.text) {
+			GraphIO.writeText(comp, this.registry, this.file);
+		} else {
+			GraphIO.writeBinary(comp, this.registry, this.file);
+		}
+	}
+
+	@Benchmark
+	public Compositor load() throws Exception {
+		Compositor comp = new Compositor();
+		if (this.text) {
+			GraphIO.readText(this.file, this.registry, comp);
+		} else {
+			GraphIO.readBinary(this.file, this.registry, comp);
+		}
+		return comp;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(this.file);
+	}
+
+}
@@ -0,0 +1,133 @@
+package tests.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nodes.ExecutionContext;
+import nodes.NodeInputInterface;
+import nodes.NodeOutputInterface;
+import nodes.compositor.Compositor;
+import nodes.compositor.ExecutionPlan;
+import nodes.signals.Signal;
+import tests.nodes.NumberAddNode;
+import tests.nodes.NumberInputNode;
+
+/**
+ * Measures one run of a {@link Compositor} whose only work is a
+ * {@link NumberAddNode} that is placed the given number of
+ * {@link Compositor}s deep. The values pass the interfaces of every level on
+ * their way in and out.
+ * 
+ * Compiled, the nested {@link Compositor}s are inlined into one
+ * {@link ExecutionPlan}, so the cost should not depend on the depth.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NestedCompositorBenchmark {
+
+	/**
+	 * The number of nested {@link Compositor}s (>= 1).
+	 */
+	@Param({ "1", "2", "5", "10" })
+	public int depth;
+
+	/**
+	 * If the run is executed by an {@link ExecutionPlan} instead of passing
+	 * {@link Signal}s.
+	 */
+	@Param({ "false", "true" })
+	public boolean compiled;
+
+	private Compositor root;
+	private ExecutionPlan plan;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.root = new Compositor();
+		this.root.registerOutput("Output", new NodeOutputInterface(Integer.class, 0));
+		NumberInputNode source = new NumberInputNode(21);
+		this.root.addNode(source);
+
+		Compositor nested = level(this.depth);
+		this.root.addNode(nested);
+		this.root.addEdge(source, "Output", nested, "Input");
+		this.root.getInnerOutput("Output").setConnection(nested.getOutput("Output"));
+		Signal.route(this.root.getSignalStart(), source.getSignalInput());
+		Signal.route(source, nested);
+		Signal.route(nested.getSignalOutput(), this.root.getSignalEnd());
+
+		if (this.compiled) {
+			this.plan = this.root.compile();
+		}
+	}
+
+	/**
+	 * Creates a {@link Compositor} that contains the given number of levels,
+	 * the innermost one holds the {@link NumberAddNode}.
+	 */
+	private static Compositor level(int depth) {
+		Compositor c = new Compositor();
+		c.registerInput("Input", new NodeInputInterface(Integer.class, 0));
+		c.registerOutput("Output", new NodeOutputInterface(Integer.class, 0));
+
+		if (depth == 1) {
+			NumberAddNode add = new NumberAddNode();
+			c.addNode(add);
+			add.getInput("Input1").setConnection(c.getInnerInput("Input"));
+			add.getInput("Input2").setConnection(c.getInnerInput("Input"));
+			c.getInnerOutput("Output").setConnection(add.getOutput("Sum"));
+			Signal.route(c.getSignalStart(), add.getSignalInput());
+			Signal.route(add.getSignalOutput(), c.getSignalEnd());
+		} else {
+			Compositor inner = level(depth - 1);
+			c.addNode(inner);
+			inner.getInput("Input").setConnection(c.getInnerInput("Input"));
+			c.getInnerOutput("Output").setConnection(inner.getOutput("Output"));
+			Signal.route(c.getSignalStart(), inner.getSignalInput());
+			Signal.route(inner.getSignalOutput(), c.getSignalEnd());
+		}
+		return c;
+	}
+
+	@Benchmark
+	public Object run() throws Exception {
+		ExecutionContext ctx;
+		if (this.compiled) {
+			ctx = this.plan.newContext();
+			this.plan.execute(ctx);
+		} else {
+			ctx = new ExecutionContext();
+			this.root.runAndAwait(ctx, 10, TimeUnit.SECONDS);
+		}
+
+		ExecutionContext prev = ExecutionContext.enter(ctx);
+		try {
+			return this.root.getOutput("Output").getValue();
+		} finally {
+			ExecutionContext.restore(prev);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.root.destroy();
+	}
+
+}
@@ -0,0 +1,86 @@
+package tests.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nodes.NodeInputInterface;
+import nodes.compositor.Compositor;
+import tests.nodes.NumberInputNode;
+import tests.nodes.NumberOutputNode;
+
+/**
+ * Measures NodeInputInterface.getValue() of a {@link NumberOutputNode} whose
+ * value comes from a {@link NumberInputNode} that is placed the given number
+ * of {@link Compositor}s further out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PortAccessBenchmark {
+
+	/**
+	 * The number of nested {@link Compositor}s (0 means that both nodes are
+	 * part of the same {@link Compositor}).
+	 */
+	@Param({ "0", "1", "4", "10" })
+	public int depth;
+
+	private Compositor root;
+	private NodeInputInterface input;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.root = new Compositor();
+		NumberInputNode source = new NumberInputNode(42);
+		this.root.addNode(source);
+
+		Compositor outer = this.root;
+		for (int d = 0; d < this.depth; ++d) {
+			Compositor inner = new Compositor();
+			inner.registerInput("Input", new NodeInputInterface(Integer.class, 0));
+			outer.addNode(inner);
+			if (d == 0) {
+				outer.addEdge(source, "Output", inner, "Input");
+			} else {
+				inner.getInput("Input").setConnection(outer.getInnerInput("Input"));
+			}
+			outer = inner;
+		}
+
+		NumberOutputNode sink = new NumberOutputNode();
+		outer.addNode(sink);
+		this.input = sink.getInput("Input");
+		if (this.depth == 0) {
+			outer.addEdge(source, "Output", sink, "Input");
+		} else {
+			this.input.setConnection(outer.getInnerInput("Input"));
+		}
+	}
+
+	@Benchmark
+	public Object getValue() {
+		return this.input.getValue();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.root.destroy();
+	}
+
+}
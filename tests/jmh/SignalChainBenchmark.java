@@ -0,0 +1,95 @@
+package tests.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nodes.Node;
+import nodes.ReturnCode;
+import nodes.signals.Signal;
+
+/**
+ * Measures the latency of a {@link Signal} that is passed along a chain of
+ * {@link Node}s: the benchmark sends a {@link Signal} to the first
+ * {@link Node} and waits until the last one was executed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignalChainBenchmark {
+
+	@Param({ "1", "10", "100" })
+	public int length;
+
+	@Param({ "false", "true" })
+	public boolean inline;
+
+	private Node[] chain;
+	private final AtomicLong finished = new AtomicLong();
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.chain = new Node[this.length];
+		for (int i = 0; i < this.length - 1; ++i) {
+			this.chain[i] = new Node() {
+			};
+		}
+		this.chain[this.length - 1] = new CountNode(this.finished);
+		for (Node n : this.chain) {
+			n.setInlineExecution(this.inline);
+		}
+
+		for (int i = 1; i < this.length; ++i) {
+			Signal.route(this.chain[i - 1], this.chain[i]);
+		}
+	}
+
+	@Benchmark
+	public long chain() {
+		long expected = this.finished.get() + 1;
+		this.chain[0].getSignalInput().sendSignal(new Signal());
+		long f;
+		while ((f = this.finished.get()) < expected) {
+			Thread.onSpinWait();
+		}
+		return f;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		for (Node n : this.chain) {
+			n.destroy();
+		}
+	}
+
+	static class CountNode extends Node {
+		private final AtomicLong count;
+
+		public CountNode(AtomicLong count) {
+			this.count = count;
+		}
+
+		@Override
+		public ReturnCode run() {
+			this.count.incrementAndGet();
+			return ReturnCode.SUCCESS;
+		}
+	}
+
+}
@@ -0,0 +1,146 @@
+package tests.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nodes.Node;
+import nodes.ReturnCode;
+import nodes.signals.Signal;
+import nodes.signals.scheduler.FixedPoolSignalScheduler;
+import nodes.signals.scheduler.SignalScheduler;
+
+/**
+ * This benchmark routes the signal outputs of several fast producer
+ * {@link Node}s into one slow consumer {@link Node}.
+ * 
+ * The benchmark sends one {@link Signal} to every producer and waits until
+ * all of them have handed their {@link Signal} to the mailbox of the
+ * consumer. The producers only append to the mailbox, so this should take
+ * far less than the work of the consumer. If sending waited for the consumer,
+ * it would take about producers times the work.
+ * 
+ * The consumer has a thread of its own, so the producers are never queued
+ * behind its work in the default {@link SignalScheduler}. After each
+ * invocation the consumer is given time to catch up, which is not measured,
+ * so its queue does not grow from invocation to invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignalFanInBenchmark {
+
+	@Param({ "1", "8" })
+	public int producers;
+
+	/**
+	 * The time the consumer takes per {@link Signal} in microseconds.
+	 */
+	@Param({ "20" })
+	public long workMicros;
+
+	private final AtomicLong passed = new AtomicLong();
+	private final AtomicLong consumed = new AtomicLong();
+
+	private SlowNode consumer;
+	private SignalScheduler consumerScheduler;
+	private FastNode[] fast;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.consumer = new SlowNode(this.workMicros * 1000, this.consumed);
+		this.consumerScheduler = new FixedPoolSignalScheduler(1);
+		this.consumer.setScheduler(this.consumerScheduler);
+		this.fast = new FastNode[this.producers];
+		for (int i = 0; i < this.producers; ++i) {
+			this.fast[i] = new FastNode(this.passed);
+			Signal.route(this.fast[i], this.consumer);
+		}
+	}
+
+	@Benchmark
+	public long fanIn() {
+		long expected = this.passed.get() + this.producers;
+		for (FastNode p : this.fast) {
+			p.getSignalInput().sendSignal(new Signal());
+		}
+		long p;
+		while ((p = this.passed.get()) < expected) {
+			Thread.onSpinWait();
+		}
+		return p;
+	}
+
+	@TearDown(Level.Invocation)
+	public void catchUp() {
+		long expected = this.passed.get();
+		while (this.consumed.get() < expected) {
+			Thread.onSpinWait();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.consumer.destroy();
+		this.consumerScheduler.shutdown();
+		for (FastNode p : this.fast) {
+			p.destroy();
+		}
+	}
+
+	/**
+	 * Passes its {@link Signal} on by itself and counts it once it was handed
+	 * over, so the measured time includes the send.
+	 */
+	static class FastNode extends Node {
+		private final AtomicLong passed;
+
+		public FastNode(AtomicLong passed) {
+			this.passed = passed;
+		}
+
+		@Override
+		public ReturnCode run() {
+			this.getSignalOutput().passSignal(this.getSignal());
+			this.passed.incrementAndGet();
+			return ReturnCode.NOSIGNAL;
+		}
+	}
+
+	static class SlowNode extends Node {
+		private final long workNanos;
+		private final AtomicLong consumed;
+
+		public SlowNode(long workNanos, AtomicLong consumed) {
+			this.workNanos = workNanos;
+			this.consumed = consumed;
+		}
+
+		@Override
+		public ReturnCode run() {
+			// waits like a node that does I/O, so the producers still get the
+			// CPU on small machines
+			LockSupport.parkNanos(this.workNanos);
+			this.consumed.incrementAndGet();
+			return ReturnCode.SUCCESS;
+		}
+	}
+
+}
@@ -0,0 +1,90 @@
+package tests.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nodes.signals.Signal;
+import nodes.signals.SignalInputInterface;
+import nodes.signals.SignalOutputInterface;
+import nodes.signals.SignalSyncronizer;
+
+/**
+ * Measures the throughput of a {@link SignalSyncronizer}: the benchmark sends
+ * one {@link Signal} to each input, so the syncronizer fires once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SyncronizerJoinBenchmark {
+
+	@Param({ "2", "8", "64" })
+	public int fanIn;
+
+	private SignalSyncronizer sync;
+	private SignalInputInterface[] inputs;
+	private CountingReciever reciever;
+	private final Signal signal = new Signal();
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.sync = new SignalSyncronizer(this.fanIn, 1);
+		this.inputs = this.sync.getInputs().toArray(new SignalInputInterface[this.fanIn]);
+		this.reciever = new CountingReciever();
+		this.sync.getOutput(0).setConnection(this.reciever);
+	}
+
+	@Benchmark
+	public long join() {
+		for (SignalInputInterface i : this.inputs) {
+			i.sendSignal(this.signal);
+		}
+		return this.reciever.count;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.sync.destroy();
+	}
+
+	private static class CountingReciever extends SignalInputInterface {
+		private long count;
+
+		public CountingReciever() {
+			super(Signal.class);
+		}
+
+		@Override
+		public void sendSignal(Signal s) {
+			++this.count;
+		}
+
+		@Override
+		public void registerConnection(SignalOutputInterface o) {
+		}
+
+		@Override
+		public void removeConnection(SignalOutputInterface o) {
+		}
+
+		@Override
+		public void destroy() {
+		}
+	}
+
+}
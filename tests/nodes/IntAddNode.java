@@ -0,0 +1,48 @@
+package tests.nodes;
+
+import nodes.IntInputInterface;
+import nodes.IntOutputInterface;
+import nodes.Node;
+import nodes.ReturnCode;
+
+/**
+ * An {@link IntAddNode} is a {@link Node} that adds two numbers like the
+ * {@link NumberAddNode}, but its ports hold <code>int</code> values, so
+ * neither reading nor writing them boxes.
+ */
+public class IntAddNode extends Node {
+
+	private IntInputInterface in1, in2;
+	private IntOutputInterface out;
+
+	public IntAddNode() {
+
+		this.in1 = new IntInputInterface(0);
+		this.in2 = new IntInputInterface(0);
+		this.out = new IntOutputInterface(0);
+
+		this.registerInput("Input1", this.in1);
+		this.registerInput("Input2", this.in2);
+		this.registerOutput("Sum", this.out);
+
+	}
+
+	@Override
+	public ReturnCode run() {
+		this.out.setInt(this.in1.getInt() + this.in2.getInt());
+		return ReturnCode.SUCCESS;
+	}
+
+	public IntInputInterface getInput1() {
+		return this.in1;
+	}
+
+	public IntInputInterface getInput2() {
+		return this.in2;
+	}
+
+	public IntOutputInterface getOutput() {
+		return this.out;
+	}
+
+}
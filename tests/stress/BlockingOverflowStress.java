@@ -0,0 +1,142 @@
+package tests.stress;
+
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import nodes.Node;
+import nodes.ReturnCode;
+import nodes.signals.OverflowPolicy;
+import nodes.signals.Signal;
+import nodes.signals.SignalInputInterface;
+import nodes.signals.SignalOutputInterface;
+import nodes.signals.scheduler.FixedPoolSignalScheduler;
+import nodes.signals.scheduler.SignalScheduler;
+
+/**
+ * Several producers on a pool of two threads pass their {@link Signal}s to a
+ * consumer on the same pool whose queue holds one {@link Signal} and blocks
+ * the sender when it is full. Another {@link Node} with such a queue passes
+ * its {@link Signal}s back to itself. Every {@link Signal} must either be
+ * handled or be rejected to the exception output, none may hang.
+ */
+public class BlockingOverflowStress extends StressTest {
+
+	private static final int PRODUCERS = 4;
+
+	private static final int LOOPS = 2;
+
+	private static final int HOPS = 3;
+
+	public BlockingOverflowStress() {
+		super("BlockingOverflow", Set.of("DEADLOCK"));
+	}
+
+	@Override
+	protected void race(int iterations) throws Exception {
+		SignalScheduler scheduler = new FixedPoolSignalScheduler(2);
+		final Semaphore finished = new Semaphore(0);
+
+		Node consumer = new Node() {
+			@Override
+			public ReturnCode run() {
+				observe("DELIVERED");
+				finished.release();
+				return ReturnCode.NOSIGNAL;
+			}
+		};
+		consumer.setScheduler(scheduler);
+		consumer.getSignalInput().setCapacity(1, OverflowPolicy.BLOCK);
+		consumer.getExceptionOutput().setConnection(new Rejected(finished));
+
+		Node[] producers = new Node[PRODUCERS];
+		for (int i = 0; i < PRODUCERS; ++i) {
+			producers[i] = new Node() {
+			};
+			producers[i].setScheduler(scheduler);
+			Signal.route(producers[i], consumer);
+		}
+
+		Node loop = new Node() {
+			@Override
+			public ReturnCode run() {
+				int hops = (Integer) this.getSignal().get("hops");
+				if (hops == 0) {
+					observe("DELIVERED");
+					finished.release();
+					return ReturnCode.NOSIGNAL;
+				}
+				this.setSignal(this.getSignal().with("hops", hops - 1));
+				return ReturnCode.SUCCESS;
+			}
+		};
+		loop.setScheduler(scheduler);
+		loop.getSignalInput().setCapacity(1, OverflowPolicy.BLOCK);
+		loop.getExceptionOutput().setConnection(new Rejected(finished));
+		Signal.route(loop, loop);
+
+		// the loop is started on the pool, so only its threads may hang
+		Node start = new Node() {
+		};
+		start.setScheduler(scheduler);
+		Signal.route(start, loop);
+
+		try {
+			for (int i = 0; i < iterations; ++i) {
+				for (Node p : producers) {
+					p.getSignalInput().sendSignal(new Signal());
+				}
+				for (int j = 0; j < LOOPS; ++j) {
+					start.getSignalInput().sendSignal(new Signal().with("hops", HOPS));
+				}
+				if (!finished.tryAcquire(PRODUCERS + LOOPS, 5, TimeUnit.SECONDS)) {
+					observe("DEADLOCK");
+					break;
+				}
+			}
+		} finally {
+			for (Node p : producers) {
+				p.destroy();
+			}
+			consumer.destroy();
+			start.destroy();
+			loop.destroy();
+			scheduler.shutdown();
+		}
+	}
+
+	/**
+	 * Counts the {@link Signal}s a full queue rejected.
+	 */
+	private class Rejected extends SignalInputInterface {
+
+		private final Semaphore finished;
+
+		Rejected(Semaphore finished) {
+			super(Signal.class);
+			this.finished = finished;
+		}
+
+		@Override
+		public void sendSignal(Signal s) {
+			observe("REJECTED");
+			this.finished.release();
+		}
+
+		@Override
+		public void removeConnection(SignalOutputInterface o) {
+			// do nothing, the connections are not tracked
+		}
+
+		@Override
+		public void registerConnection(SignalOutputInterface o) {
+			// do nothing, the connections are not tracked
+		}
+
+		@Override
+		public void destroy() {
+			// do nothing, the connections are not tracked
+		}
+	}
+
+}
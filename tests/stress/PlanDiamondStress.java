@@ -0,0 +1,169 @@
+package tests.stress;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nodes.ExecutionContext;
+import nodes.Node;
+import nodes.NodeInputInterface;
+import nodes.NodeOutputInterface;
+import nodes.ReturnCode;
+import nodes.compositor.Compositor;
+import nodes.compositor.ExecutionMode;
+import nodes.signals.SignalSyncronizer;
+
+/**
+ * Runs a diamond shaped graph in {@link ExecutionMode#FORK_JOIN}: a source
+ * writes an object, two branches on different threads read it and write
+ * objects of their own, and a join checks both. Many runs are in flight at
+ * once, each in its own {@link ExecutionContext}, but no {@link Node} may be
+ * executed by two of them at the same time.
+ */
+public class PlanDiamondStress extends StressTest {
+
+	private static final int IN_FLIGHT = 64;
+
+	public PlanDiamondStress() {
+		super("PlanDiamond", Set.of("STALE", "TORN_OBJECT", "OVERLAP"));
+	}
+
+	@Override
+	protected void race(int iterations) throws Exception {
+		Compositor c = new Compositor();
+		Node source = new HolderNode(null, 0);
+		Node left = new HolderNode("In", 1);
+		Node right = new HolderNode("In", 2);
+		Node join = new Node() {
+			private final NodeInputInterface in1 = this.input("Left");
+			private final NodeInputInterface in2 = this.input("Right");
+
+			private NodeInputInterface input(String name) {
+				NodeInputInterface i = new NodeInputInterface(Holder.class, null);
+				this.registerInput(name, i);
+				return i;
+			}
+
+			private final AtomicInteger running = new AtomicInteger();
+
+			@Override
+			public ReturnCode run() {
+				if (this.running.incrementAndGet() != 1)
+					observe("OVERLAP");
+				Thread.yield();
+				try {
+					this.check();
+				} finally {
+					this.running.decrementAndGet();
+				}
+				return ReturnCode.SUCCESS;
+			}
+
+			private void check() {
+				long id = ExecutionContext.current().getId();
+				Holder l = (Holder) this.in1.getValue();
+				Holder r = (Holder) this.in2.getValue();
+				if (l == null || r == null) {
+					observe("STALE");
+				} else if (l.a != l.b || r.a != r.b) {
+					observe("TORN_OBJECT");
+				} else if (l.a != id + 1 || r.a != id + 2) {
+					observe("STALE");
+				} else {
+					observe("OK");
+				}
+			}
+		};
+
+		c.addNode(source);
+		c.addNode(left);
+		c.addNode(right);
+		c.addNode(join);
+		c.addEdge(source, "Out", left, "In");
+		c.addEdge(source, "Out", right, "In");
+		c.addEdge(left, "Out", join, "Left");
+		c.addEdge(right, "Out", join, "Right");
+
+		SignalSyncronizer split = new SignalSyncronizer(1, 2);
+		SignalSyncronizer merge = new SignalSyncronizer(2, 1);
+		c.addSyncronizer(split);
+		c.addSyncronizer(merge);
+		c.getSignalStart().setConnection(source.getSignalInput());
+		source.getSignalOutput().setConnection(split.getInput(0));
+		split.getOutput(0).setConnection(left.getSignalInput());
+		split.getOutput(1).setConnection(right.getSignalInput());
+		left.getSignalOutput().setConnection(merge.getInput(0));
+		right.getSignalOutput().setConnection(merge.getInput(1));
+		merge.getOutput(0).setConnection(join.getSignalInput());
+		join.getSignalOutput().setConnection(c.getSignalEnd());
+
+		ForkJoinPool pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+		c.setForkJoinPool(pool);
+		c.setExecutionMode(ExecutionMode.FORK_JOIN);
+		try {
+			List<CompletableFuture<ReturnCode>> runs = new ArrayList<>(IN_FLIGHT);
+			for (int i = 0; i < iterations; i += IN_FLIGHT) {
+				for (int j = i; j < Math.min(i + IN_FLIGHT, iterations); ++j) {
+					runs.add(c.submit());
+				}
+				for (CompletableFuture<ReturnCode> f : runs) {
+					f.get();
+				}
+				runs.clear();
+			}
+		} finally {
+			c.destroy();
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Writes a new {@link Holder} with the id of the run plus an offset, after
+	 * checking the one on its input (if it has one).
+	 */
+	private class HolderNode extends Node {
+		private final NodeInputInterface in;
+		private final NodeOutputInterface out = new NodeOutputInterface(Holder.class, null);
+		private final long offset;
+		private final AtomicInteger running = new AtomicInteger();
+
+		HolderNode(String input, long offset) {
+			this.offset = offset;
+			if (input != null) {
+				this.in = new NodeInputInterface(Holder.class, null);
+				this.registerInput(input, this.in);
+			} else {
+				this.in = null;
+			}
+			this.registerOutput("Out", this.out);
+		}
+
+		@Override
+		public ReturnCode run() {
+			if (this.running.incrementAndGet() != 1)
+				observe("OVERLAP");
+			Thread.yield();
+			try {
+				this.write();
+			} finally {
+				this.running.decrementAndGet();
+			}
+			return ReturnCode.SUCCESS;
+		}
+
+		private void write() {
+			long id = ExecutionContext.current().getId();
+			if (this.in != null) {
+				Holder h = (Holder) this.in.getValue();
+				if (h == null || h.a != h.b || h.a != id) {
+					observe(h != null && h.a != h.b ? "TORN_OBJECT" : "STALE");
+				}
+			}
+			this.out.setValue(new Holder(id + this.offset));
+		}
+	}
+
+}
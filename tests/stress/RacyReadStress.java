@@ -0,0 +1,58 @@
+package tests.stress;
+
+import java.util.Set;
+
+import nodes.LongInputInterface;
+import nodes.LongOutputInterface;
+import nodes.NodeInputInterface;
+import nodes.NodeOutputInterface;
+import nodes.signals.Signal;
+
+/**
+ * A reader polls two ports without waiting for a {@link Signal} while a writer
+ * changes them. It may see old or new values, but never a <code>long</code>
+ * with bits of two writes or an object whose fields are not set yet.
+ */
+public class RacyReadStress extends StressTest {
+
+	public RacyReadStress() {
+		super("RacyRead", Set.of("TORN_LONG", "TORN_OBJECT"));
+	}
+
+	@Override
+	protected void race(final int iterations) throws Exception {
+		final NodeOutputInterface object = new NodeOutputInterface(Holder.class, new Holder(0));
+		final LongOutputInterface number = new LongOutputInterface(0);
+		final NodeInputInterface objectIn = new NodeInputInterface(Holder.class, null);
+		final LongInputInterface numberIn = new LongInputInterface(0);
+		objectIn.setConnection(object);
+		numberIn.setConnection(number);
+
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 1; i <= iterations; ++i) {
+					object.setValue(new Holder(i));
+					number.setLong((i & 1) == 0 ? 0L : -1L);
+				}
+			}
+		};
+
+		writer.start();
+		while (writer.isAlive()) {
+			for (int i = 0; i < 1000; ++i) {
+				Holder h = (Holder) objectIn.getValue();
+				long n = numberIn.getLong();
+				if (h.a != h.b) {
+					observe("TORN_OBJECT");
+				} else if (n != 0L && n != -1L) {
+					observe("TORN_LONG");
+				} else {
+					observe(n == 0L ? "EVEN" : "ODD");
+				}
+			}
+		}
+		writer.join();
+	}
+
+}
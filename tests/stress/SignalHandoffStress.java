@@ -0,0 +1,100 @@
+package tests.stress;
+
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+
+import nodes.LongInputInterface;
+import nodes.LongOutputInterface;
+import nodes.Node;
+import nodes.NodeInputInterface;
+import nodes.NodeOutputInterface;
+import nodes.ReturnCode;
+import nodes.signals.Signal;
+import nodes.signals.scheduler.FixedPoolSignalScheduler;
+import nodes.signals.scheduler.SignalScheduler;
+
+/**
+ * A writer {@link Node} stores a new object and a <code>long</code> in its
+ * outputs and passes its {@link Signal} to a reader {@link Node} on another
+ * thread. The reader must see both values of this round, fully initialized.
+ */
+public class SignalHandoffStress extends StressTest {
+
+	public SignalHandoffStress() {
+		super("SignalHandoff", Set.of("STALE_OBJECT", "STALE_LONG", "TORN_OBJECT"));
+	}
+
+	@Override
+	protected void race(int iterations) throws Exception {
+		SignalScheduler scheduler = new FixedPoolSignalScheduler(2);
+		final Semaphore done = new Semaphore(0);
+
+		final NodeOutputInterface object = new NodeOutputInterface(Holder.class, null);
+		final LongOutputInterface number = new LongOutputInterface(0);
+		Node writer = new Node() {
+			private long round = 0;
+
+			{
+				this.registerOutput("Object", object);
+				this.registerOutput("Number", number);
+			}
+
+			@Override
+			public ReturnCode run() {
+				++this.round;
+				object.setValue(new Holder(this.round));
+				number.setLong(this.round);
+				return ReturnCode.SUCCESS;
+			}
+		};
+
+		final NodeInputInterface objectIn = new NodeInputInterface(Holder.class, null);
+		final LongInputInterface numberIn = new LongInputInterface(0);
+		Node reader = new Node() {
+			private long round = 0;
+
+			{
+				this.registerInput("Object", objectIn);
+				this.registerInput("Number", numberIn);
+			}
+
+			@Override
+			public ReturnCode run() {
+				++this.round;
+				Holder h = (Holder) objectIn.getValue();
+				long n = numberIn.getLong();
+				if (h == null) {
+					observe("STALE_OBJECT");
+				} else if (h.a != h.b) {
+					observe("TORN_OBJECT");
+				} else if (h.a != this.round) {
+					observe("STALE_OBJECT");
+				} else if (n != this.round) {
+					observe("STALE_LONG");
+				} else {
+					observe("OK");
+				}
+				done.release();
+				return ReturnCode.SUCCESS;
+			}
+		};
+		objectIn.setConnection(object);
+		numberIn.setConnection(number);
+
+		writer.setScheduler(scheduler);
+		reader.setScheduler(scheduler);
+		Signal.route(writer, reader);
+
+		try {
+			for (int i = 0; i < iterations; ++i) {
+				writer.getSignalInput().sendSignal(new Signal());
+				done.acquire();
+			}
+		} finally {
+			writer.destroy();
+			reader.destroy();
+			scheduler.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,41 @@
+package tests.stress;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import utils.Logging;
+import utils.Logging.LogLevel;
+
+/**
+ * Runs all stress tests of this package, which check the memory model of the
+ * ports (see nodes.NodeOutputInterface).
+ * 
+ * Usage: StressMain [name filter] [iterations]
+ * 
+ * Only tests whose name contains the filter are run. Exits with 1 if a
+ * forbidden outcome was observed.
+ */
+public class StressMain {
+
+	public static void main(String[] args) throws Exception {
+		String filter = args.length > 0 ? args[0] : "";
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+
+		Logging.setLevel(LogLevel.SEVERE);
+
+		List<StressTest> tests = new ArrayList<>();
+		tests.add(new SignalHandoffStress());
+		tests.add(new RacyReadStress());
+		tests.add(new PlanDiamondStress());
+		tests.add(new BlockingOverflowStress());
+
+		boolean ok = true;
+		for (StressTest t : tests) {
+			if (t.getName().contains(filter)) {
+				ok &= t.check(iterations);
+			}
+		}
+		System.exit(ok ? 0 : 1);
+	}
+
+}
@@ -0,0 +1,91 @@
+package tests.stress;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Base class of all stress tests. Like a jcstress test, a stress test lets
+ * several threads race many times and counts how often each outcome was
+ * observed. Some outcomes are forbidden by the memory model of the ports; if
+ * one of them shows up, the test fails.
+ * 
+ * A passing test does not prove the absence of a race, it only did not find
+ * one. Run it on a machine with several cores for meaningful results.
+ */
+public abstract class StressTest {
+
+	private final String name;
+
+	private final Set<String> forbidden;
+
+	private final ConcurrentHashMap<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+	/**
+	 * @param name
+	 *            the name that is printed
+	 * @param forbidden
+	 *            the outcomes that must never be observed
+	 */
+	protected StressTest(String name, Set<String> forbidden) {
+		this.name = name;
+		this.forbidden = forbidden;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Executes the racing threads the given number of times and records the
+	 * outcomes with observe().
+	 */
+	protected abstract void race(int iterations) throws Exception;
+
+	/**
+	 * Records an outcome, this may be called by any thread.
+	 */
+	protected void observe(String outcome) {
+		this.outcomes.computeIfAbsent(outcome, k -> new LongAdder()).increment();
+	}
+
+	/**
+	 * Runs the test and prints the outcomes to stdout.
+	 * 
+	 * @param iterations
+	 *            the number of races
+	 * @return <code>true</code> if no forbidden outcome was observed
+	 */
+	public boolean check(int iterations) throws Exception {
+		this.outcomes.clear();
+		long start = System.nanoTime();
+		this.race(iterations);
+		long millis = (System.nanoTime() - start) / 1000000;
+
+		boolean ok = true;
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, LongAdder> e : new TreeMap<>(this.outcomes).entrySet()) {
+			boolean bad = this.forbidden.contains(e.getKey());
+			ok &= !bad;
+			sb.append(String.format("    %-14s %12d%s%n", e.getKey(), e.getValue().sum(), bad ? "  FORBIDDEN" : ""));
+		}
+		System.out.printf("%-32s %s (%d ms)%n%s", this.name, ok ? "OK" : "FAILED", millis, sb);
+		return ok;
+	}
+
+	/**
+	 * An object whose fields are not final, so a reader that does not
+	 * synchronize with the writer could see them unset.
+	 */
+	protected static final class Holder {
+		long a, b;
+
+		Holder(long v) {
+			this.a = v;
+			this.b = v;
+		}
+	}
+
+}
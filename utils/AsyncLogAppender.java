@@ -0,0 +1,194 @@
+package utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import utils.Logging.LogLevel;
+
+/**
+ * An {@link AsyncLogAppender} stores the messages in a bounded ring buffer
+ * and passes them to another {@link LogAppender} on a background thread, so
+ * logging threads never wait for the output.
+ * 
+ * The ring buffer is lock-free: every entry has a sequence number that tells
+ * whether it is free or filled. If the buffer is full, the message is dropped
+ * and counted.
+ */
+public class AsyncLogAppender implements LogAppender {
+
+	private final LogAppender target;
+
+	private final int mask;
+	private final LogLevel[] levels;
+	private final String[] sources;
+	private final String[] messages;
+
+	/**
+	 * The sequence number of each entry. An entry at position p is free if its
+	 * sequence is p and filled if it is p + 1.
+	 */
+	private final AtomicLongArray sequences;
+
+	/**
+	 * The next position a producer claims.
+	 */
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * The next position the writer reads, only changed by the writer. It is
+	 * advanced after the message was written, so flush() knows when it is
+	 * done.
+	 */
+	private volatile long head = 0;
+
+	private final LongAdder dropped = new LongAdder();
+
+	private final Thread writer;
+	private volatile boolean closed = false;
+
+	/**
+	 * Set by the writer before it parks and checks the buffer a last time. A
+	 * producer fills its entry before it reads this flag, so either the writer
+	 * sees the entry or the producer unparks it.
+	 */
+	private volatile boolean parked = false;
+
+	/**
+	 * @param target
+	 *            the appender that writes the messages
+	 * @param capacity
+	 *            the number of messages the buffer can hold, rounded up to a
+	 *            power of two
+	 */
+	public AsyncLogAppender(LogAppender target, int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+
+		this.target = target;
+		this.mask = size - 1;
+		this.levels = new LogLevel[size];
+		this.sources = new String[size];
+		this.messages = new String[size];
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; ++i) {
+			this.sequences.set(i, i);
+		}
+
+		this.writer = new Thread(new Writer(), "async-log-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	@Override
+	public void append(LogLevel level, String from, String msg) {
+		long pos = this.tail.get();
+		int index;
+		while (true) {
+			index = (int) pos & this.mask;
+			long dif = this.sequences.get(index) - pos;
+			if (dif == 0) {
+				if (this.tail.compareAndSet(pos, pos + 1))
+					break;
+				pos = this.tail.get();
+			} else if (dif < 0) {
+				// the writer did not free this entry yet
+				this.dropped.increment();
+				return;
+			} else {
+				pos = this.tail.get();
+			}
+		}
+
+		this.levels[index] = level;
+		this.sources[index] = from;
+		this.messages[index] = msg;
+		this.sequences.set(index, pos + 1);
+
+		if (this.parked)
+			LockSupport.unpark(this.writer);
+	}
+
+	/**
+	 * Returns the number of messages that were dropped because the buffer was
+	 * full.
+	 */
+	public long getDropped() {
+		return this.dropped.sum();
+	}
+
+	/**
+	 * Waits until every message that was appended before is written.
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait
+	 * @param unit
+	 *            the unit of the timeout
+	 * @return <code>false</code> if the time was up
+	 */
+	public boolean flush(long timeout, TimeUnit unit) {
+		long target = this.tail.get();
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (this.head < target) {
+			if (System.nanoTime() > deadline)
+				return false;
+			LockSupport.parkNanos(100000);
+		}
+		return true;
+	}
+
+	/**
+	 * Stops the background thread after all buffered messages are written and
+	 * waits for it. Messages that are appended afterwards may be lost.
+	 */
+	public void close() {
+		this.closed = true;
+		LockSupport.unpark(this.writer);
+
+		if (Thread.currentThread() == this.writer)
+			return;
+		boolean interrupted = false;
+		while (this.writer.isAlive()) {
+			try {
+				this.writer.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	private class Writer implements Runnable {
+
+		@Override
+		public void run() {
+			while (true) {
+				long pos = head;
+				int index = (int) pos & mask;
+				if (sequences.get(index) == pos + 1) {
+					LogLevel level = levels[index];
+					String from = sources[index];
+					String msg = messages[index];
+					messages[index] = null;
+					sequences.set(index, pos + mask + 1);
+
+					try {
+						target.append(level, from, msg);
+					} finally {
+						head = pos + 1;
+					}
+				} else if (closed && tail.get() == pos) {
+					return;
+				} else {
+					parked = true;
+					if (sequences.get(index) != pos + 1 && !closed)
+						LockSupport.park(this);
+					parked = false;
+				}
+			}
+		}
+	}
+
+}
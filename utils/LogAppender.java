@@ -0,0 +1,24 @@
+package utils;
+
+import utils.Logging.LogLevel;
+
+/**
+ * A {@link LogAppender} writes the messages that pass the thresholds of
+ * {@link Logging}.
+ */
+public interface LogAppender {
+
+	/**
+	 * Writes a message. This method may be called by many threads
+	 * concurrently.
+	 * 
+	 * @param level
+	 *            the level of the message
+	 * @param from
+	 *            the source of the message
+	 * @param msg
+	 *            the message
+	 */
+	void append(LogLevel level, String from, String msg);
+
+}
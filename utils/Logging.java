@@ -1,11 +1,22 @@
 package utils;
 
-import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * This Logging-Class is used by this Compositor-Project so if you want to show
  * some debug-information just set the active-variable to <code>true</code>.
  * 
+ * Only messages whose {@link LogLevel} reaches the threshold are written. The
+ * threshold can be set globally and for single sources. Messages that are
+ * passed as a {@link Supplier} or as a pattern with arguments are only built
+ * if they are written, so disabled logging does not allocate.
+ * 
+ * The messages are written by a {@link LogAppender}. By default they are
+ * printed to stdout by the calling thread; an {@link AsyncLogAppender} moves
+ * this work to a background thread.
+ * 
  * @author Roland Wallner
  *
  */
@@ -14,18 +25,147 @@ public final class Logging {
 	public static boolean active = false;
 
 	public enum LogLevel {
-		SEVERE, INFO, WARNING
+		SEVERE(3), INFO(1), WARNING(2);
+
+		private final int severity;
+
+		private LogLevel(int severity) {
+			this.severity = severity;
+		}
+
+		/**
+		 * Returns <code>true</code> if this level is at least as severe as the
+		 * given one.
+		 */
+		public boolean reaches(LogLevel threshold) {
+			return this.severity >= threshold.severity;
+		}
+	}
+
+	private static volatile LogLevel threshold = LogLevel.INFO;
+
+	private static final Map<String, LogLevel> sourceThresholds = new ConcurrentHashMap<>();
+
+	private static volatile LogAppender appender = new PrintStreamAppender(System.out);
+
+	private Logging() {
+	}
+
+	/**
+	 * Sets the minimum level of the messages that are written.
+	 */
+	public static void setLevel(LogLevel level) {
+		threshold = level;
 	}
 
-	private static PrintStream logger = System.out;
+	/**
+	 * Sets the minimum level of the messages of a single source, which
+	 * overrides the global level.
+	 * 
+	 * @param from
+	 *            the source
+	 * @param level
+	 *            the minimum level (<code>null</code> removes the override)
+	 */
+	public static void setLevel(String from, LogLevel level) {
+		if (level == null) {
+			sourceThresholds.remove(from);
+		} else {
+			sourceThresholds.put(from, level);
+		}
+	}
+
+	/**
+	 * Replaces the {@link LogAppender} that writes the messages.
+	 */
+	public static void setAppender(LogAppender a) {
+		if (a == null) {
+			throw new IllegalArgumentException("Appender must not be null.");
+		}
+		appender = a;
+	}
+
+	public static LogAppender getAppender() {
+		return appender;
+	}
+
+	/**
+	 * Returns <code>true</code> if messages of this level are written.
+	 */
+	public static boolean isEnabled(LogLevel level) {
+		return active && level.reaches(threshold);
+	}
+
+	/**
+	 * Returns <code>true</code> if messages of this level and source are
+	 * written.
+	 */
+	public static boolean isEnabled(LogLevel level, String from) {
+		if (!active) {
+			return false;
+		}
+		if (!sourceThresholds.isEmpty()) {
+			LogLevel l = sourceThresholds.get(from);
+			if (l != null) {
+				return level.reaches(l);
+			}
+		}
+		return level.reaches(threshold);
+	}
 
 	public static void log(LogLevel level, String msg) {
 		log(level, msg, "Unknown");
 	}
 
 	public static void log(LogLevel level, String msg, String from) {
-		if (active)
-			logger.println("[" + from + "] [" + level.toString() + "] " + msg);
+		if (isEnabled(level, from))
+			appender.append(level, from, msg);
+	}
+
+	/**
+	 * Logs a message that is only built if it is written.
+	 */
+	public static void log(LogLevel level, Supplier<String> msg, String from) {
+		if (isEnabled(level, from))
+			appender.append(level, from, msg.get());
+	}
+
+	/**
+	 * Logs a message whose first "{}" is replaced by the argument. The message
+	 * is only built if it is written.
+	 */
+	public static void logf(LogLevel level, String from, String pattern, Object arg) {
+		if (isEnabled(level, from))
+			appender.append(level, from, format(pattern, arg, null, 1));
+	}
+
+	/**
+	 * Logs a message whose first two "{}" are replaced by the arguments. The
+	 * message is only built if it is written.
+	 */
+	public static void logf(LogLevel level, String from, String pattern, Object arg1, Object arg2) {
+		if (isEnabled(level, from))
+			appender.append(level, from, format(pattern, arg1, arg2, 2));
+	}
+
+	private static String format(String pattern, Object arg1, Object arg2, int args) {
+		StringBuilder sb = new StringBuilder(pattern.length() + 32);
+		int from = 0;
+		for (int i = 0; i < args; ++i) {
+			int at = pattern.indexOf("{}", from);
+			if (at < 0)
+				break;
+			sb.append(pattern, from, at).append(i == 0 ? arg1 : arg2);
+			from = at + 2;
+		}
+		return sb.append(pattern, from, pattern.length()).toString();
+	}
+
+	/**
+	 * Builds the line that is written for a message.
+	 */
+	static String line(LogLevel level, String from, String msg) {
+		return "[" + from + "] [" + level.toString() + "] " + msg;
 	}
 
 }
@@ -0,0 +1,23 @@
+package utils;
+
+import java.io.PrintStream;
+
+import utils.Logging.LogLevel;
+
+/**
+ * Prints every message to a {@link PrintStream} on the calling thread.
+ */
+public class PrintStreamAppender implements LogAppender {
+
+	private final PrintStream out;
+
+	public PrintStreamAppender(PrintStream out) {
+		this.out = out;
+	}
+
+	@Override
+	public void append(LogLevel level, String from, String msg) {
+		this.out.println(Logging.line(level, from, msg));
+	}
+
+}